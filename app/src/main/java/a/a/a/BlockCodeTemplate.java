@@ -0,0 +1,129 @@
+package a.a.a;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A block's code format string, split once into literal text and arguments, so that formatting it
+ * is only appending. Supports <code>%s</code>, <code>%1$s</code>, <code>%%</code> and <code>%n</code>,
+ * which is all that built-in blocks use; Custom Blocks' code using anything else gets formatted
+ * by {@link String#format(String, Object...)} like before.
+ */
+final class BlockCodeTemplate {
+    /**
+     * Templates by format string. Built-in blocks' code is constant, and Custom Blocks' code is
+     * limited by the number of Custom Blocks, so this doesn't grow indefinitely.
+     */
+    private static final Map<String, BlockCodeTemplate> templates = new ConcurrentHashMap<>();
+
+    private final String format;
+    /**
+     * Literal text before every argument, followed by the text after the last one
+     */
+    private final String[] literals;
+    /**
+     * Indices of arguments to insert, or <code>null</code> if the format string isn't supported
+     */
+    private final int[] argumentIndices;
+    private final int argumentCount;
+
+    private BlockCodeTemplate(String format) {
+        this.format = format;
+
+        ArrayList<String> literals = new ArrayList<>();
+        ArrayList<Integer> argumentIndices = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int ordinaryIndex = 0;
+        int argumentCount = 0;
+        boolean supported = true;
+
+        for (int i = 0; i < format.length() && supported; i++) {
+            char c = format.charAt(i);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+
+            int conversion = i + 1;
+            int explicitIndex = -1;
+            while (conversion < format.length() && Character.isDigit(format.charAt(conversion))) {
+                conversion++;
+            }
+            if (conversion > i + 1 && conversion < format.length() && format.charAt(conversion) == '$') {
+                try {
+                    explicitIndex = Integer.parseInt(format.substring(i + 1, conversion)) - 1;
+                } catch (NumberFormatException e) {
+                    supported = false;
+                    break;
+                }
+                if (explicitIndex < 0) {
+                    supported = false;
+                    break;
+                }
+                conversion++;
+            } else {
+                conversion = i + 1;
+            }
+            if (conversion >= format.length()) {
+                supported = false;
+                break;
+            }
+
+            char type = format.charAt(conversion);
+            if (type == 's') {
+                int index = explicitIndex >= 0 ? explicitIndex : ordinaryIndex++;
+                literals.add(literal.toString());
+                literal.setLength(0);
+                argumentIndices.add(index);
+                argumentCount = Math.max(argumentCount, index + 1);
+            } else if (type == '%' && explicitIndex < 0) {
+                literal.append('%');
+            } else if (type == 'n' && explicitIndex < 0) {
+                literal.append(System.lineSeparator());
+            } else {
+                supported = false;
+            }
+            i = conversion;
+        }
+        literals.add(literal.toString());
+
+        if (supported) {
+            this.literals = literals.toArray(new String[0]);
+            this.argumentIndices = new int[argumentIndices.size()];
+            for (int i = 0; i < this.argumentIndices.length; i++) {
+                this.argumentIndices[i] = argumentIndices.get(i);
+            }
+        } else {
+            this.literals = null;
+            this.argumentIndices = null;
+        }
+        this.argumentCount = argumentCount;
+    }
+
+    static BlockCodeTemplate of(String format) {
+        return templates.computeIfAbsent(format, BlockCodeTemplate::new);
+    }
+
+    /**
+     * Same as {@link String#format(String, Object...)}, including exceptions, but with the format string parsed only once.
+     */
+    static String format(String format, Object... args) {
+        StringBuilder out = new StringBuilder();
+        of(format).appendTo(out, args);
+        return out.toString();
+    }
+
+    void appendTo(StringBuilder out, Object... args) {
+        if (argumentIndices == null || argumentCount > args.length) {
+            // Let String.format() deal with it, to get the same exceptions
+            out.append(String.format(format, args));
+            return;
+        }
+
+        for (int i = 0; i < argumentIndices.length; i++) {
+            out.append(literals[i]).append(args[argumentIndices[i]]);
+        }
+        out.append(literals[literals.length - 1]);
+    }
+}
@@ -0,0 +1,124 @@
+package a.a.a;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A block's spec, parsed once into its parameters' class infos and types, and shared by all blocks
+ * with the same spec. Parsing used to happen for every {@link com.besome.sketch.beans.BlockBean}
+ * created, copied or unparceled, and again for every block generated.
+ * <p>
+ * Everything returned is shared and unmodifiable. Class infos of Custom Components depend on the
+ * Custom Components, so {@link #clear()} has to be called when they change.
+ */
+public final class BlockSpec {
+    private static final Pattern PARAM_TYPE_WITH_SELECTOR_PATTERN = Pattern.compile("%\\w+(?:\\.\\w+)?|%\\w"); // Supports %m.word.word, %m.word and %word
+
+    /**
+     * Parsed specs by spec. Built-in blocks' specs are constant, and others are limited by the number of
+     * Custom Blocks and More Blocks, so this doesn't grow indefinitely.
+     */
+    private static final Map<String, BlockSpec> specs = new ConcurrentHashMap<>();
+    private static final Map<String, Gx> classInfos = new ConcurrentHashMap<>();
+
+    private final List<Gx> paramClassInfo;
+    private final List<String> paramTypes;
+    private final int[] blockTypes;
+
+    private BlockSpec(String spec) {
+        ArrayList<Gx> paramClassInfo = new ArrayList<>();
+        for (String params : FB.c(spec)) {
+            if (params.charAt(0) == '%' && params.length() >= 2) {
+                String type = String.valueOf(params.charAt(1));
+                String typeName;
+                if (params.length() > 3) {
+                    typeName = params.substring(3);
+                } else {
+                    typeName = "";
+                }
+                paramClassInfo.add(getClassInfo(type, typeName));
+            }
+        }
+        this.paramClassInfo = Collections.unmodifiableList(paramClassInfo);
+
+        ArrayList<String> paramTypes = new ArrayList<>();
+        Matcher matcher = PARAM_TYPE_WITH_SELECTOR_PATTERN.matcher(spec);
+        while (matcher.find()) {
+            paramTypes.add(matcher.group().toLowerCase());
+        }
+        this.paramTypes = Collections.unmodifiableList(paramTypes);
+
+        blockTypes = new int[paramClassInfo.size()];
+        for (int i = 0; i < blockTypes.length; i++) {
+            Gx gx = paramClassInfo.get(i);
+            if (gx == null) {
+                blockTypes[i] = 3;
+            } else if (gx.b("boolean")) {
+                blockTypes[i] = 0;
+            } else if (gx.b("double")) {
+                blockTypes[i] = 1;
+            } else if (gx.b("String")) {
+                blockTypes[i] = 2;
+            } else {
+                blockTypes[i] = 3;
+            }
+        }
+    }
+
+    public static BlockSpec of(String spec) {
+        return specs.computeIfAbsent(spec, BlockSpec::new);
+    }
+
+    /**
+     * Same as {@link mq#a(String, String)}, but returns the same {@link Gx} for the same type and type name.
+     */
+    public static Gx getClassInfo(String type, String typeName) {
+        if (type == null || typeName == null) {
+            return mq.a(type, typeName);
+        }
+        String key = type + ':' + typeName;
+        Gx gx = classInfos.get(key);
+        if (gx == null) {
+            gx = mq.a(type, typeName);
+            if (gx != null) {
+                Gx existing = classInfos.putIfAbsent(key, gx);
+                if (existing != null) gx = existing;
+            }
+        }
+        return gx;
+    }
+
+    /**
+     * Drops all parsed specs and class infos, for when Custom Components changed.
+     */
+    public static void clear() {
+        specs.clear();
+        classInfos.clear();
+    }
+
+    /**
+     * @return Class infos of the spec's parameters, in order
+     */
+    public List<Gx> getParamClassInfo() {
+        return paramClassInfo;
+    }
+
+    /**
+     * @return The spec's parameters' types in lowercase, with their selector if any, e.g. <code>%m.view</code> or <code>%s</code>
+     */
+    public List<String> getParamTypes() {
+        return paramTypes;
+    }
+
+    /**
+     * @return 0 for boolean, 1 for double, 2 for String, and 3 for any other parameter
+     */
+    public int getBlockType(int parameterIndex) {
+        return blockTypes[parameterIndex];
+    }
+}
@@ -19,6 +19,7 @@ import java.util.Set;
 
 import mod.agus.jcoderz.editor.manifest.EditorManifest;
 import mod.hey.studios.build.BuildSettings;
+import mod.hey.studios.project.ProjectConfigSnapshot;
 import mod.hey.studios.project.ProjectSettings;
 import mod.hey.studios.util.Helper;
 import mod.hilal.saif.android_manifest.AndroidManifestInjector;
@@ -33,11 +34,10 @@ public class Ix {
     private final BuiltInLibraryManager builtInLibraryManager;
     public XmlBuilder a = new XmlBuilder("manifest");
     public ArrayList<ProjectFileBean> b;
-    public BuildSettings buildSettings;
     public jq c;
     public FilePathUtil fpu = new FilePathUtil();
     public FileResConfig frc;
-    public ProjectSettings settings;
+    public ProjectConfigSnapshot config;
     private boolean targetsSdkVersion31OrHigher = false;
     private String packageName;
 
@@ -45,7 +45,7 @@ public class Ix {
         c = jq;
         b = projectFileBeans;
         this.builtInLibraryManager = builtInLibraryManager;
-        buildSettings = new BuildSettings(jq.sc_id);
+        config = jq.getConfig();
         frc = new FileResConfig(c.sc_id);
         a.addAttribute("xmlns", "android", "http://schemas.android.com/apk/res/android");
     }
@@ -407,8 +407,7 @@ public class Ix {
     }
 
     public void setYq(yq yqVar) {
-        settings = new ProjectSettings(yqVar.sc_id);
-        targetsSdkVersion31OrHigher = Integer.parseInt(settings.getValue(ProjectSettings.SETTING_TARGET_SDK_VERSION, String.valueOf(VAR_DEFAULT_TARGET_SDK_VERSION))) >= 31;
+        targetsSdkVersion31OrHigher = Integer.parseInt(config.getProjectSetting(ProjectSettings.SETTING_TARGET_SDK_VERSION, String.valueOf(VAR_DEFAULT_TARGET_SDK_VERSION))) >= 31;
         packageName = yqVar.packageName;
     }
 
@@ -420,7 +419,7 @@ public class Ix {
     public String a() {
         int targetSdkVersion;
         try {
-            targetSdkVersion = Integer.parseInt(settings.getValue(ProjectSettings.SETTING_TARGET_SDK_VERSION, String.valueOf(VAR_DEFAULT_TARGET_SDK_VERSION)));
+            targetSdkVersion = Integer.parseInt(config.getProjectSetting(ProjectSettings.SETTING_TARGET_SDK_VERSION, String.valueOf(VAR_DEFAULT_TARGET_SDK_VERSION)));
         } catch (NumberFormatException ignored) {
             targetSdkVersion = VAR_DEFAULT_TARGET_SDK_VERSION;
         }
@@ -555,12 +554,12 @@ public class Ix {
         applicationTag.addAttribute("android", "icon", "@mipmap/ic_launcher");
         applicationTag.addAttribute("android", "label", "@string/app_name");
 
-        String applicationClassName = settings.getValue(ProjectSettings.SETTING_APPLICATION_CLASS, ".SketchApplication");
+        String applicationClassName = config.getProjectSetting(ProjectSettings.SETTING_APPLICATION_CLASS, ".SketchApplication");
         applicationTag.addAttribute("android", "name", applicationClassName);
         if (addRequestLegacyExternalStorage) {
             applicationTag.addAttribute("android", "requestLegacyExternalStorage", "true");
         }
-        if (!buildSettings.getValue(BuildSettings.SETTING_NO_HTTP_LEGACY, BuildSettings.SETTING_GENERIC_VALUE_FALSE)
+        if (!config.getBuildSetting(BuildSettings.SETTING_NO_HTTP_LEGACY, BuildSettings.SETTING_GENERIC_VALUE_FALSE)
                 .equals(BuildSettings.SETTING_GENERIC_VALUE_TRUE)) {
             applicationTag.addAttribute("android", "usesCleartextTraffic", "true");
         }
@@ -707,7 +706,7 @@ public class Ix {
                 writeJava(applicationTag, activityName, activityAttrs);
             }
         }
-        if (buildSettings.getValue(BuildSettings.SETTING_NO_HTTP_LEGACY, BuildSettings.SETTING_GENERIC_VALUE_FALSE)
+        if (config.getBuildSetting(BuildSettings.SETTING_NO_HTTP_LEGACY, BuildSettings.SETTING_GENERIC_VALUE_FALSE)
                 .equals(BuildSettings.SETTING_GENERIC_VALUE_FALSE)) {
             writeLegacyLibrary(applicationTag);
         }
@@ -1,7 +1,5 @@
 package a.a.a;
 
-import static dev.aldi.sayuti.block.ExtraBlockFile.getExtraBlockData;
-
 import android.text.TextUtils;
 import android.util.Pair;
 
@@ -14,6 +12,7 @@ import com.besome.sketch.editor.manage.library.material3.Material3LibraryManager
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -22,6 +21,7 @@ import mod.agus.jcoderz.beans.ViewBeans;
 import mod.agus.jcoderz.editor.manage.library.locallibrary.ManageLocalLibrary;
 import mod.agus.jcoderz.handle.component.ConstVarComponent;
 import mod.hey.studios.build.BuildSettings;
+import mod.hey.studios.project.ProjectConfigSnapshot;
 import mod.hey.studios.project.ProjectSettings;
 import mod.hilal.saif.android_manifest.AndroidManifestInjector;
 import mod.hilal.saif.blocks.CommandBlock;
@@ -33,7 +33,7 @@ public class Jx {
 
     public static final String EOL = "\r\n";
     public static final Pattern WIDGET_NAME_PATTERN = Pattern.compile("\\w*\\..*\\.");
-    private final ProjectSettings settings;
+    private final ProjectConfigSnapshot config;
     private final PermissionManager permissionManager;
     private final String packageName;
     private final ProjectFileBean projectFileBean;
@@ -80,25 +80,24 @@ public class Jx {
      */
     private final ArrayList<String> filePickerRequestCodes = new ArrayList<>();
 
-    private final ArrayList<HashMap<String, Object>> extraBlocks;
+    private final List<HashMap<String, Object>> extraBlocks;
     private Hx eventManager;
     private ArrayList<String> imports = new ArrayList<>();
     private String onCreateEventCode = "";
-    private Material3LibraryManager materialLibraryManager;
+    private final Material3LibraryManager materialLibraryManager;
 
     public Jx(jq jqVar, ProjectFileBean projectFileBean, eC eCVar) {
         packageName = jqVar.packageName;
         this.projectFileBean = projectFileBean;
         projectDataManager = eCVar;
         buildConfig = jqVar;
-        mll = new ManageLocalLibrary(eCVar.a);
-        settings = new ProjectSettings(eCVar.a);
-        permissionManager = new PermissionManager(eCVar.a, projectFileBean.getJavaName());
+        config = jqVar.getConfig();
+        mll = config.getLocalLibraries();
+        permissionManager = new PermissionManager(config.getBlockPermissions(projectFileBean.getJavaName()));
         ox = new Ox(buildConfig, projectFileBean);
-        extraBlocks = getExtraBlockData();
-        isViewBindingEnabled = settings.getValue(ProjectSettings.SETTING_ENABLE_VIEWBINDING, BuildSettings.SETTING_GENERIC_VALUE_FALSE)
-                .equals(BuildSettings.SETTING_GENERIC_VALUE_TRUE);
-        materialLibraryManager = new Material3LibraryManager(projectDataManager.a);
+        extraBlocks = config.getExtraBlocks();
+        isViewBindingEnabled = config.isViewBindingEnabled();
+        materialLibraryManager = config.getMaterial3LibraryManager();
     }
 
     public String activityResult() {
@@ -575,7 +574,7 @@ public class Jx {
                 sb.append(EOL);
             }
         }
-        if (!isFragment && !settings.getValue(ProjectSettings.SETTING_DISABLE_OLD_METHODS, BuildSettings.SETTING_GENERIC_VALUE_TRUE)
+        if (!isFragment && !config.getProjectSetting(ProjectSettings.SETTING_DISABLE_OLD_METHODS, BuildSettings.SETTING_GENERIC_VALUE_TRUE)
                 .equals(BuildSettings.SETTING_GENERIC_VALUE_TRUE)) {
             sb.append(getDeprecatedMethodsCode());
         }
@@ -609,13 +608,13 @@ public class Jx {
 
     private String getListDeclarationAndAddImports(int listType, String listName) {
         String typeName = mq.b(listType);
-        addImports(mq.getImportsByTypeName(projectDataManager.a, typeName, null));
+        addImports(mq.getImportsByTypeName(config, typeName, null));
         return Lx.a(typeName, listName, Lx.AccessModifier.PRIVATE);
     }
 
     private String getComponentDeclarationAndAddImports(ComponentBean componentBean) {
         String typeName = mq.a(componentBean.type);
-        addImports(mq.getImportsByTypeName(projectDataManager.a, typeName, null));
+        addImports(mq.getImportsByTypeName(config, typeName, null));
         return Lx.a(typeName, componentBean.componentId, Lx.AccessModifier.PRIVATE, componentBean.param1, componentBean.param2, componentBean.param3);
     }
 
@@ -624,7 +623,7 @@ public class Jx {
         if (viewType.isEmpty()) {
             viewType = viewBean.getClassInfo().getClassName();
         }
-        addImports(mq.getImportsByTypeName(projectDataManager.a, viewType, null));
+        addImports(mq.getImportsByTypeName(config, viewType, null));
         return Lx.a(viewType, "_drawer_" + viewBean.id, Lx.AccessModifier.PRIVATE);
     }
 
@@ -633,7 +632,7 @@ public class Jx {
      */
     private String getVariableDeclarationAndAddImports(int variableType, String name) {
         String variableTypeName = mq.c(variableType);
-        addImports(mq.getImportsByTypeName(projectDataManager.a, variableTypeName, null));
+        addImports(mq.getImportsByTypeName(config, variableTypeName, null));
         return Lx.a(variableTypeName, name, Lx.AccessModifier.PRIVATE);
     }
 
@@ -643,7 +642,7 @@ public class Jx {
             viewType = viewBean.getClassInfo().getClassName();
         }
         if (requireImports(viewBean)) {
-            addImports(mq.getImportsByTypeName(projectDataManager.a, viewType, viewBean.convert));
+            addImports(mq.getImportsByTypeName(config, viewType, viewBean.convert));
         }
         return Lx.a(viewType, viewBean.id, Lx.AccessModifier.PRIVATE, isViewBindingEnabled);
     }
@@ -818,7 +817,7 @@ public class Jx {
                             "LinearLayout _nav_view = findViewById(R.id._nav_view);" + EOL
                     );
                 }
-                addImports(mq.getImportsByTypeName(projectDataManager.a, "LinearLayout", null));
+                addImports(mq.getImportsByTypeName(config, "LinearLayout", null));
             }
         }
         addImport("android.app.*");
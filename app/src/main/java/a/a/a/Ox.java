@@ -16,23 +16,13 @@ import com.besome.sketch.beans.TextBean;
 import com.besome.sketch.beans.ViewBean;
 import com.besome.sketch.editor.manage.library.material3.Material3LibraryManager;
 
-import org.xmlpull.v1.XmlPullParser;
-import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlPullParserFactory;
-
-import java.io.IOException;
-import java.io.StringReader;
 import java.nio.CharBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Pattern;
 
 import dev.aldi.sayuti.editor.injection.AppCompatInjection;
 import mod.agus.jcoderz.beans.ViewBeans;
-import mod.jbk.util.LogUtil;
 import pro.sketchware.managers.inject.InjectRootLayoutManager;
 import pro.sketchware.utility.InjectAttributeHandler;
 import pro.sketchware.xml.XmlBuilder;
@@ -127,7 +117,7 @@ public class Ox {
                     rootLayout = coordinatorLayoutTag;
                 }
                 if (projectFile.hasActivityOption(ProjectFileBean.OPTION_ACTIVITY_TOOLBAR)) {
-                    Material3LibraryManager materialLibraryManager = new Material3LibraryManager(buildConfig.sc_id);
+                    Material3LibraryManager materialLibraryManager = buildConfig.getConfig().getMaterial3LibraryManager();
 
                     XmlBuilder toolbarTag = new XmlBuilder(
                             (materialLibraryManager.isMaterial3Enabled()) ? "com.google.android.material.appbar.MaterialToolbar" : "androidx.appcompat.widget.Toolbar"
@@ -985,40 +975,10 @@ public class Ox {
      * check whether the attribute (attrName) is injected to the ViewBean or not.
      */
     private boolean hasAttr(String attrName, ViewBean bean) {
-        String inject = bean.inject;
-        if (inject == null || inject.isEmpty()) return false;
-        return Pattern.compile("(android|app) *?: *?" + attrName).matcher(inject).find();
+        return bean.getInjectAttributes().mentions(attrName);
     }
 
     public Set<String> readAttributesToReplace(ViewBean viewBean) {
-        Set<String> toReplace = new HashSet<>();
-
-        try {
-            XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
-            factory.setNamespaceAware(true);
-            XmlPullParser parser = factory.newPullParser();
-            parser.setInput(new StringReader("<tag xmlns:android=\"http://schemas.android.com/apk/res/android\" " +
-                    "xmlns:app=\"http://schemas.android.com/apk/res-auto\" " +
-                    "xmlns:tools=\"http://schemas.android.com/tools\"" +
-                    viewBean.inject + "></tag>"));
-
-            int eventType = parser.getEventType();
-            while (eventType != XmlPullParser.END_DOCUMENT) {
-                if (eventType == XmlPullParser.START_TAG) {
-                    for (int i = 0; i < parser.getAttributeCount(); i++) {
-                        if ("http://schemas.android.com/tools".equals(parser.getAttributeNamespace(i)) &&
-                                "replace".equals(parser.getAttributeName(i))) {
-                            toReplace.addAll(Arrays.asList(parser.getAttributeValue(i).split("\\s*,\\s*")));
-                        }
-                    }
-                }
-
-                eventType = parser.next();
-            }
-        } catch (XmlPullParserException | IOException | RuntimeException e) {
-            LogUtil.e("a.a.a.Ox", "Failed to parse inject property of View " + viewBean.id, e);
-        }
-
-        return toReplace;
+        return viewBean.getInjectAttributes().getAttributesToReplace();
     }
 }
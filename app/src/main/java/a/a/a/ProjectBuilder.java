@@ -29,28 +29,31 @@ import com.iyxan23.zipalignjava.ZipAlign;
 import org.xml.sax.SAXException;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.RandomAccessFile;
+import java.io.StringWriter;
 import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import mod.agus.jcoderz.dex.Dex;
-import mod.agus.jcoderz.dex.FieldId;
-import mod.agus.jcoderz.dex.MethodId;
-import mod.agus.jcoderz.dex.ProtoId;
 import mod.agus.jcoderz.dx.command.dexer.DxContext;
 import mod.agus.jcoderz.dx.command.dexer.Main;
 import mod.agus.jcoderz.dx.merge.CollisionPolicy;
@@ -64,8 +67,13 @@ import mod.hey.studios.project.proguard.ProguardHandler;
 import mod.hey.studios.util.SystemLogPrinter;
 import mod.jbk.build.BuildProgressReceiver;
 import mod.jbk.build.BuiltInLibraries;
+import mod.jbk.build.compiler.dex.ClassDexCache;
 import mod.jbk.build.compiler.dex.DexCompiler;
+import mod.jbk.build.compiler.dex.DexMergePlanner;
+import mod.jbk.build.compiler.dex.LibraryDexCache;
 import mod.jbk.build.compiler.resource.ResourceCompiler;
+import mod.jbk.build.incremental.BuildGraph;
+import mod.jbk.build.incremental.JavaDependencyIndex;
 import mod.jbk.util.LogUtil;
 import mod.jbk.util.TestkeySignBridge;
 import mod.pranav.build.JarBuilder;
@@ -97,6 +105,10 @@ public class ProjectBuilder {
     private BuildProgressReceiver progressReceiver;
     private boolean buildAppBundle = false;
     private ArrayList<File> dexesToAddButNotMerge = new ArrayList<>();
+    /**
+     * The project's build graph if building incrementally, <code>null</code> otherwise.
+     */
+    private BuildGraph buildGraph;
 
     /**
      * Timestamp keeping track of when compiling the project's resources started, needed for stats of how long compiling took.
@@ -182,13 +194,55 @@ public class ProjectBuilder {
      */
     public void compileResources() throws Exception {
         timestampResourceCompilationStarted = System.currentTimeMillis();
+        if (buildGraph != null) {
+            if (buildGraph.isUpToDate(BuildGraph.STAGE_RESOURCES, getResourcesFingerprint())) {
+                LogUtil.d(TAG, "Skipped compiling resources as they're up-to-date");
+                return;
+            }
+            /* Don't keep R.java files of libraries which aren't used anymore */
+            FileUtil.deleteFile(yq.rJavaDirectoryPath);
+            FileUtil.makeDir(yq.rJavaDirectoryPath);
+        }
+
         ResourceCompiler compiler = new ResourceCompiler(
                 this,
                 aapt2Binary,
                 buildAppBundle,
                 progressReceiver);
         compiler.compile();
+        deleteRJavaWithoutPackage();
         LogUtil.d(TAG, "Compiling resources took " + (System.currentTimeMillis() - timestampResourceCompilationStarted) + " ms");
+
+        if (buildGraph != null) {
+            buildGraph.markBuilt(BuildGraph.STAGE_RESOURCES, new File(yq.resourcesApkPath),
+                    new File(yq.rJavaDirectoryPath), new File(yq.proguardAaptRules));
+        }
+    }
+
+    private BuildGraph.Fingerprint getResourcesFingerprint() {
+        BuildGraph.Fingerprint fingerprint = buildGraph.newFingerprint()
+                .add("appBundle", buildAppBundle)
+                .add("minSdk", settings.getMinSdkVersion())
+                .add("targetSdk", settings.getValue(ProjectSettings.SETTING_TARGET_SDK_VERSION, ""))
+                .add("versionCode", yq.versionCode)
+                .add("versionName", yq.versionName)
+                .add("extraPackages", getLibraryPackageNames())
+                .addPath(new File(build_settings.getValue(BuildSettings.SETTING_ANDROID_JAR_PATH, androidJarPath)))
+                .addPath(new File(yq.androidManifestPath))
+                .addPath(new File(yq.resDirectoryPath))
+                .addPath(new File(yq.assetsPath))
+                .addPath(new File(fpu.getPathAssets(yq.sc_id)))
+                .addPath(new File(fpu.getPathResource(yq.sc_id)));
+        for (Jp library : builtInLibraryManager.getLibraries()) {
+            fingerprint.add("builtInLibrary", library.getName());
+        }
+        for (String localLibraryResDirectory : mll.getResLocalLibrary()) {
+            fingerprint.addPath(new File(localLibraryResDirectory));
+        }
+        for (String localLibraryAssetsDirectory : mll.getAssets()) {
+            fingerprint.addPath(new File(localLibraryAssetsDirectory));
+        }
+        return fingerprint;
     }
 
     public void generateViewBinding() throws IOException, SAXException {
@@ -228,7 +282,35 @@ public class ProjectBuilder {
         FileUtil.makeDir(yq.binDirectoryPath + File.separator + "dex");
         if (proguard.isShrinkingEnabled() && proguard.isR8Enabled()) return;
 
-        if (isD8Enabled()) {
+        File dexOutputDirectory = new File(yq.binDirectoryPath, "dex");
+        String dexingConfiguration = null;
+        if (buildGraph != null) {
+            dexingConfiguration = buildGraph.newFingerprint()
+                    .add("dexer", isD8Enabled() ? BuildSettings.SETTING_DEXER_D8 : BuildSettings.SETTING_DEXER_DX)
+                    .add("minSdk", settings.getValue(ProjectSettings.SETTING_MINIMUM_SDK_VERSION, "21"))
+                    .addPaths(getClasspath(), new File(yq.compiledClassesPath))
+                    .get();
+            BuildGraph.Fingerprint inputs = buildGraph.newFingerprint()
+                    .add("configuration", dexingConfiguration)
+                    .addPath(new File(proguard.isShrinkingEnabled() ? yq.proguardClassesPath : yq.compiledClassesPath));
+            if (buildGraph.isUpToDate(BuildGraph.STAGE_DEX, inputs)) {
+                LogUtil.d(TAG, "Skipped dexing classes as they're up-to-date");
+                return;
+            }
+            FileUtil.deleteFile(dexOutputDirectory.getAbsolutePath());
+            FileUtil.makeDir(dexOutputDirectory.getAbsolutePath());
+        }
+
+        if (dexingConfiguration != null && !proguard.isShrinkingEnabled()) {
+            long savedTimeMillis = System.currentTimeMillis();
+            try {
+                dexClassesIncrementally(dexOutputDirectory, dexingConfiguration);
+                LogUtil.d(TAG, (isD8Enabled() ? "D8" : "Dx") + " took " + (System.currentTimeMillis() - savedTimeMillis) + " ms");
+            } catch (Exception e) {
+                LogUtil.e(TAG, (isD8Enabled() ? "D8" : "Dx") + " failed to process .class files", e);
+                throw e;
+            }
+        } else if (isD8Enabled()) {
             long savedTimeMillis = System.currentTimeMillis();
             try {
                 DexCompiler.compileDexFiles(this);
@@ -243,6 +325,7 @@ public class ProjectBuilder {
                     "--debug",
                     "--verbose",
                     "--multi-dex",
+                    "--num-threads=" + build_settings.getDxThreads(),
                     "--output=" + yq.binDirectoryPath + File.separator + "dex",
                     proguard.isShrinkingEnabled() ? yq.proguardClassesPath : yq.compiledClassesPath
             );
@@ -251,18 +334,120 @@ public class ProjectBuilder {
                 LogUtil.d(TAG, "Running Dx with these arguments: " + args);
 
                 Main.clearInternTables();
-                Main.Arguments arguments = new Main.Arguments();
-                Method parseMethod = Main.Arguments.class.getDeclaredMethod("parse", String[].class);
-                parseMethod.setAccessible(true);
-                parseMethod.invoke(arguments, (Object) args.toArray(new String[0]));
-
-                Main.run(arguments);
+                Main.run(parseDxArguments(args));
                 LogUtil.d(TAG, "Dx took " + (System.currentTimeMillis() - savedTimeMillis) + " ms");
             } catch (Exception e) {
                 LogUtil.e(TAG, "Dx failed to process .class files", e);
                 throw e;
             }
         }
+
+        if (buildGraph != null) {
+            buildGraph.markBuilt(BuildGraph.STAGE_DEX, dexOutputDirectory);
+        }
+    }
+
+    /**
+     * Dexes only classes whose DEX files aren't cached yet, one DEX file per class, and then
+     * merges all classes' DEX files to <code>bin/dex</code>.
+     */
+    private void dexClassesIncrementally(File dexOutputDirectory, String configuration) throws Exception {
+        File classesDirectory = new File(yq.compiledClassesPath);
+        ClassDexCache cache = new ClassDexCache(new File(buildGraph.getDirectory(), "dex_cache"),
+                buildGraph.getHasher(), configuration);
+
+        List<File> classFiles = FileUtil.listFilesRecursively(classesDirectory, ".class");
+        classFiles.sort(Comparator.comparing(File::getAbsolutePath));
+        List<String> keys = cache.getKeys(classesDirectory, classFiles);
+        HashMap<File, String> uncached = new HashMap<>();
+        for (int i = 0; i < classFiles.size(); i++) {
+            String key = keys.get(i);
+            if (cache.get(key) == null) {
+                uncached.put(classFiles.get(i), key);
+            }
+        }
+        LogUtil.d(TAG, "Dexing " + uncached.size() + " of " + classFiles.size() + " classes, the others' DEX files are cached");
+
+        if (!uncached.isEmpty()) {
+            File temporaryDirectory = new File(buildGraph.getDirectory(), "dex_cache_tmp");
+            FileUtil.deleteFile(temporaryDirectory.getAbsolutePath());
+            FileUtil.makeDir(temporaryDirectory.getAbsolutePath());
+            try {
+                if (isD8Enabled()) {
+                    DexCompiler.compileDexFilesPerClass(this, uncached.keySet(), temporaryDirectory);
+                    for (var entry : uncached.entrySet()) {
+                        String relativePath = classesDirectory.toPath().relativize(entry.getKey().toPath()).toString();
+                        cache.put(entry.getValue(), new File(temporaryDirectory,
+                                relativePath.substring(0, relativePath.length() - ".class".length()) + ".dex"));
+                    }
+                } else {
+                    dexClassesWithDx(classesDirectory, uncached, temporaryDirectory, cache);
+                }
+            } finally {
+                FileUtil.deleteFile(temporaryDirectory.getAbsolutePath());
+            }
+        }
+
+        List<File> classDexes = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            classDexes.add(cache.get(key));
+        }
+        if (!classDexes.isEmpty()) {
+            if (isD8Enabled()) {
+                DexCompiler.mergeDexFiles(this, classDexes, dexOutputDirectory);
+            } else {
+                dexLibraries(dexOutputDirectory, classDexes, 0);
+            }
+        }
+        cache.retainOnly(keys);
+    }
+
+    /**
+     * Runs Dx once per class, with as many classes at once as {@link BuildSettings#SETTING_DX_THREADS} allows.
+     */
+    private void dexClassesWithDx(File classesDirectory, Map<File, String> classFiles, File temporaryDirectory, ClassDexCache cache) throws Exception {
+        Main.clearInternTables();
+        ExecutorService executor = Executors.newFixedThreadPool(build_settings.getDxThreads());
+        try {
+            List<Future<?>> results = new ArrayList<>(classFiles.size());
+            for (var entry : classFiles.entrySet()) {
+                results.add(executor.submit(() -> {
+                    File dex = new File(temporaryDirectory, entry.getValue() + ".dex");
+                    // Dx checks class names against paths, which start after "/./"
+                    String relativePath = classesDirectory.toPath().relativize(entry.getKey().toPath()).toString();
+                    int exitCode = Main.run(parseDxArguments(Arrays.asList(
+                            "--debug",
+                            "--output=" + dex.getAbsolutePath(),
+                            classesDirectory.getAbsolutePath() + File.separator + "." + File.separator + relativePath
+                    )));
+                    if (exitCode != 0 || !dex.isFile()) {
+                        throw new IOException("Dx failed to dex " + entry.getKey().getAbsolutePath());
+                    }
+                    cache.put(entry.getValue(), dex);
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception exception) {
+                        throw exception;
+                    }
+                    throw e;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Main.Arguments parseDxArguments(List<String> args) throws ReflectiveOperationException {
+        Main.Arguments arguments = new Main.Arguments();
+        Method parseMethod = Main.Arguments.class.getDeclaredMethod("parse", String[].class);
+        parseMethod.setAccessible(true);
+        parseMethod.invoke(arguments, (Object) args.toArray(new String[0]));
+        return arguments;
     }
 
     public String getClasspath() {
@@ -361,129 +546,37 @@ public class ProjectBuilder {
 
     /**
      * Dexes libraries.
+     * <p>
+     * If several DEX files define a class of the same name, the one passed first is kept, as that is what
+     * {@link CollisionPolicy#KEEP_FIRST} does within a merged DEX file, and the runtime does across
+     * <code>classesN.dex</code> files.
      *
+     * @param mainDexCount How many of the first DEX files to place into <code>classes.dex</code> first, e.g. AndroidX
+     *                     MultiDex and the project's own classes, so that it has the app's entry points
      * @return List of result DEX files which were merged or couldn't be merged with others.
      * @throws Exception Thrown if merging had problems
      */
-    private Collection<File> dexLibraries(File outputDirectory, List<File> dexes) throws Exception {
-        int lastDexNumber = 1;
-        String nextMergedDexFilename;
+    private Collection<File> dexLibraries(File outputDirectory, List<File> dexes, int mainDexCount) throws Exception {
         Collection<File> resultDexFiles = new LinkedList<>();
-        LinkedList<Dex> dexObjects = new LinkedList<>();
-        Iterator<File> toMergeIterator = dexes.iterator();
-
-        List<FieldId> mergedDexFields;
-        List<MethodId> mergedDexMethods;
-        List<ProtoId> mergedDexProtos;
-        List<Integer> mergedDexTypes;
-
-        {
-            // Closable gets closed automatically
-            Dex firstDex = new Dex(new FileInputStream(toMergeIterator.next()));
-            dexObjects.add(firstDex);
-            mergedDexFields = new LinkedList<>(firstDex.fieldIds());
-            mergedDexMethods = new LinkedList<>(firstDex.methodIds());
-            mergedDexProtos = new LinkedList<>(firstDex.protoIds());
-            mergedDexTypes = new LinkedList<>(firstDex.typeIds());
-        }
-
-        while (toMergeIterator.hasNext()) {
-            File dexFile = toMergeIterator.next();
-            nextMergedDexFilename = lastDexNumber == 1 ? "classes.dex" : "classes" + lastDexNumber + ".dex";
-
-            // Closable gets closed automatically
-            Dex dex = new Dex(new FileInputStream(dexFile));
-
-            boolean canMerge = true;
-            List<FieldId> newDexFieldIds = new LinkedList<>();
-            List<MethodId> newDexMethodIds = new LinkedList<>();
-            List<ProtoId> newDexProtoIds = new LinkedList<>();
-            List<Integer> newDexTypeIds = new LinkedList<>();
-
-            bruh:
-            {
-                for (FieldId fieldId : dex.fieldIds()) {
-                    if (!mergedDexFields.contains(fieldId)) {
-                        if (mergedDexFields.size() + newDexFieldIds.size() + 1 > 0xffff) {
-                            LogUtil.d(TAG, "Can't merge DEX file to " + nextMergedDexFilename +
-                                    " because it has too many new field IDs. "
-                                    + nextMergedDexFilename + " will have " + mergedDexFields.size() + " field IDs");
-                            canMerge = false;
-                            break bruh;
-                        } else {
-                            newDexFieldIds.add(fieldId);
-                        }
-                    }
-                }
-
-                for (MethodId methodId : dex.methodIds()) {
-                    if (!newDexMethodIds.contains(methodId)) {
-                        if (mergedDexMethods.size() + newDexMethodIds.size() + 1 > 0xffff) {
-                            LogUtil.d(TAG, "Can't merge DEX file to " + nextMergedDexFilename +
-                                    " because it has too many new method IDs. "
-                                    + nextMergedDexFilename + " will have " + mergedDexMethods.size() + " method IDs");
-                            canMerge = false;
-                            break bruh;
-                        } else {
-                            newDexMethodIds.add(methodId);
-                        }
-                    }
-                }
-
-                for (ProtoId protoId : dex.protoIds()) {
-                    if (!newDexProtoIds.contains(protoId)) {
-                        if (mergedDexProtos.size() + newDexProtoIds.size() + 1 > 0xffff) {
-                            LogUtil.d(TAG, "Can't merge DEX file to " + nextMergedDexFilename +
-                                    " because it has too many new proto IDs. "
-                                    + nextMergedDexFilename + " will have " + mergedDexProtos.size() + " proto IDs");
-                            canMerge = false;
-                            break bruh;
-                        } else {
-                            newDexProtoIds.add(protoId);
-                        }
-                    }
-                }
-
-                for (Integer typeId : dex.typeIds()) {
-                    if (!newDexTypeIds.contains(typeId)) {
-                        if (mergedDexTypes.size() + newDexProtoIds.size() + 1 > 0xffff) {
-                            LogUtil.d(TAG, "Can't merge DEX file to " + nextMergedDexFilename +
-                                    " because it has too many new type IDs. "
-                                    + nextMergedDexFilename + " will have " + mergedDexTypes.size() + " type IDs");
-                            canMerge = false;
-                            break bruh;
-                        } else {
-                            newDexTypeIds.add(typeId);
-                        }
-                    }
-                }
-            }
-
-            if (canMerge) {
-                LogUtil.d(TAG, "Merging DEX #" + dexes.indexOf(dexFile) + " as well to " + nextMergedDexFilename);
-                dexObjects.add(dex);
-                mergedDexFields.addAll(newDexFieldIds);
-                mergedDexMethods.addAll(newDexMethodIds);
-                mergedDexProtos.addAll(newDexProtoIds);
-                mergedDexTypes.addAll(newDexTypeIds);
-            } else {
-                File target = new File(outputDirectory, nextMergedDexFilename);
-                mergeDexes(target, dexObjects);
+        List<List<File>> plan = new DexMergePlanner().plan(dexes, mainDexCount);
+
+        for (int i = 0; i < plan.size(); i++) {
+            File target = new File(outputDirectory, i == 0 ? "classes.dex" : "classes" + (i + 1) + ".dex");
+            if (plan.get(i).size() == 1) {
+                // Nothing to merge it with, e.g. already merged built-in libraries
+                LogUtil.d(TAG, "Copying " + plan.get(i).get(0) + " to " + target.getName());
+                Files.copy(plan.get(i).get(0).toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
                 resultDexFiles.add(target);
-                dexObjects.clear();
-                dexObjects.add(dex);
-
-                mergedDexFields = new ArrayList<>(dex.fieldIds());
-                mergedDexMethods = new ArrayList<>(dex.methodIds());
-                mergedDexProtos = new ArrayList<>(dex.protoIds());
-                mergedDexTypes = new ArrayList<>(dex.typeIds());
-                lastDexNumber++;
+                continue;
             }
-        }
-        if (!dexObjects.isEmpty()) {
-            File file = new File(outputDirectory, lastDexNumber == 1 ? "classes.dex" : "classes" + lastDexNumber + ".dex");
-            mergeDexes(file, dexObjects);
-            resultDexFiles.add(file);
+            List<Dex> dexObjects = new ArrayList<>();
+            for (File dexFile : plan.get(i)) {
+                // Memory-mapped, so that DEX files to merge aren't all on the heap at once
+                dexObjects.add(new Dex(dexFile));
+            }
+            LogUtil.d(TAG, "Merging " + dexObjects.size() + " DEX files to " + target.getName());
+            mergeDexes(target, dexObjects);
+            resultDexFiles.add(target);
         }
 
         return resultDexFiles;
@@ -508,38 +601,47 @@ public class ProjectBuilder {
     public void compileJavaCode() throws zy, IOException {
         long savedTimeMillis = System.currentTimeMillis();
 
-        class EclipseOutOutputStream extends OutputStream {
-
-            private final StringBuffer mBuffer = new StringBuffer();
-
-            @Override
-            public void write(int b) {
-                mBuffer.append((char) b);
+        deleteRJavaWithoutPackage();
+
+        ArrayList<File> sourceDirectories = new ArrayList<>();
+        sourceDirectories.add(new File(yq.javaFilesPath));
+        sourceDirectories.add(new File(yq.rJavaDirectoryPath));
+        sourceDirectories.add(new File(fpu.getPathJava(yq.sc_id)));
+        sourceDirectories.add(new File(fpu.getPathBroadcast(yq.sc_id)));
+        sourceDirectories.add(new File(fpu.getPathService(yq.sc_id)));
+
+        JavaDependencyIndex dependencyIndex = null;
+        String configuration = null;
+        List<File> sourcesToCompile = null;
+        if (buildGraph != null) {
+            configuration = buildGraph.newFingerprint()
+                    .add("javaVersion", build_settings.getValue(BuildSettings.SETTING_JAVA_VERSION, BuildSettings.SETTING_JAVA_VERSION_1_7))
+                    .add("noWarnings", build_settings.getValue(BuildSettings.SETTING_NO_WARNINGS, BuildSettings.SETTING_GENERIC_VALUE_TRUE))
+                    .addPaths(getClasspath(), new File(yq.compiledClassesPath))
+                    .get();
+            BuildGraph.Fingerprint inputs = buildGraph.newFingerprint()
+                    .add("configuration", configuration);
+            for (File sourceDirectory : sourceDirectories) {
+                inputs.addPath(sourceDirectory);
             }
-
-            public String getOut() {
-                return mBuffer.toString();
+            if (buildGraph.isUpToDate(BuildGraph.STAGE_JAVA, inputs)) {
+                LogUtil.d(TAG, "Skipped compiling Java files as they're up-to-date");
+                return;
             }
-        }
-
-        class EclipseErrOutputStream extends OutputStream {
 
-            private final StringBuffer mBuffer = new StringBuffer();
-
-            @Override
-            public void write(int b) {
-                mBuffer.append((char) b);
-            }
-
-            public String getOut() {
-                return mBuffer.toString();
+            dependencyIndex = new JavaDependencyIndex(buildGraph, new File(yq.compiledClassesPath));
+            sourcesToCompile = dependencyIndex.getSourcesToCompile(configuration, sourceDirectories);
+            if (sourcesToCompile == null) {
+                /* Don't keep classes of deleted source files */
+                FileUtil.deleteFile(yq.compiledClassesPath);
+                FileUtil.makeDir(yq.compiledClassesPath);
             }
         }
 
-        try (EclipseOutOutputStream outOutputStream = new EclipseOutOutputStream();
-             PrintWriter outWriter = new PrintWriter(outOutputStream);
-             EclipseErrOutputStream errOutputStream = new EclipseErrOutputStream();
-             PrintWriter errWriter = new PrintWriter(errOutputStream)) {
+        StringWriter outBuffer = new StringWriter();
+        StringWriter errBuffer = new StringWriter();
+        try (PrintWriter outWriter = new PrintWriter(outBuffer);
+             PrintWriter errWriter = new PrintWriter(errBuffer)) {
 
             ArrayList<String> args = new ArrayList<>();
             args.add("-" + build_settings.getValue(BuildSettings.SETTING_JAVA_VERSION,
@@ -552,46 +654,101 @@ public class ProjectBuilder {
             args.add("-d");
             args.add(yq.compiledClassesPath);
             args.add("-cp");
-            args.add(getClasspath());
-            args.add("-proc:none");
-            args.add(yq.javaFilesPath);
-            args.add(yq.rJavaDirectoryPath);
-            String pathJava = fpu.getPathJava(yq.sc_id);
-            if (FileUtil.isExistFile(pathJava)) {
-                args.add(pathJava);
-            }
-            String pathBroadcast = fpu.getPathBroadcast(yq.sc_id);
-            if (FileUtil.isExistFile(pathBroadcast)) {
-                args.add(pathBroadcast);
-            }
-            String pathService = fpu.getPathService(yq.sc_id);
-            if (FileUtil.isExistFile(pathService)) {
-                args.add(pathService);
+            if (sourcesToCompile == null) {
+                args.add(getClasspath());
+            } else {
+                /* Classes of unaffected source files are used as they are */
+                args.add(getClasspath() + ":" + yq.compiledClassesPath);
             }
-
-            /* Avoid "package ;" line in that file causing issues while compiling */
-            File rJavaFileWithoutPackage = new File(yq.rJavaDirectoryPath, "R.java");
-            if (rJavaFileWithoutPackage.exists() && !rJavaFileWithoutPackage.delete()) {
-                LogUtil.w(TAG, "Failed to delete file " + rJavaFileWithoutPackage.getAbsolutePath());
+            args.add("-proc:none");
+            if (sourcesToCompile == null) {
+                args.add(yq.javaFilesPath);
+                args.add(yq.rJavaDirectoryPath);
+                String pathJava = fpu.getPathJava(yq.sc_id);
+                if (FileUtil.isExistFile(pathJava)) {
+                    args.add(pathJava);
+                }
+                String pathBroadcast = fpu.getPathBroadcast(yq.sc_id);
+                if (FileUtil.isExistFile(pathBroadcast)) {
+                    args.add(pathBroadcast);
+                }
+                String pathService = fpu.getPathService(yq.sc_id);
+                if (FileUtil.isExistFile(pathService)) {
+                    args.add(pathService);
+                }
+            } else {
+                for (File source : sourcesToCompile) {
+                    args.add(source.getAbsolutePath());
+                }
             }
 
             /* Start compiling */
-            org.eclipse.jdt.internal.compiler.batch.Main main = new org.eclipse.jdt.internal.compiler.batch.Main(outWriter, errWriter, false, null, null);
-            LogUtil.d(TAG, "Running Eclipse compiler with these arguments: " + args);
-            main.compile(args.toArray(new String[0]));
-
-            LogUtil.d(TAG, "System.out of Eclipse compiler: " + outOutputStream.getOut());
-            if (main.globalErrorsCount <= 0) {
-                LogUtil.d(TAG, "System.err of Eclipse compiler: " + errOutputStream.getOut());
-                LogUtil.d(TAG, "Compiling Java files took " + (System.currentTimeMillis() - savedTimeMillis) + " ms");
-            } else {
-                LogUtil.e(TAG, "Failed to compile Java files");
-                throw new zy(errOutputStream.getOut());
+            if (sourcesToCompile == null || !sourcesToCompile.isEmpty()) {
+                org.eclipse.jdt.internal.compiler.batch.Main main = new org.eclipse.jdt.internal.compiler.batch.Main(outWriter, errWriter, false, null, null);
+                LogUtil.d(TAG, "Running Eclipse compiler with these arguments: " + args);
+                main.compile(args.toArray(new String[0]));
+                outWriter.flush();
+                errWriter.flush();
+
+                LogUtil.d(TAG, "System.out of Eclipse compiler: " + outBuffer);
+                if (main.globalErrorsCount <= 0) {
+                    LogUtil.d(TAG, "System.err of Eclipse compiler: " + errBuffer);
+                    LogUtil.d(TAG, "Compiling Java files took " + (System.currentTimeMillis() - savedTimeMillis) + " ms");
+                } else {
+                    LogUtil.e(TAG, "Failed to compile Java files");
+                    if (dependencyIndex != null) {
+                        dependencyIndex.invalidate();
+                    }
+                    throw new zy(errBuffer.toString());
+                }
             }
         }
+
+        if (buildGraph != null) {
+            dependencyIndex.update(configuration, sourceDirectories);
+            buildGraph.markBuilt(BuildGraph.STAGE_JAVA, new File(yq.compiledClassesPath));
+        }
+    }
+
+    /**
+     * Avoids the "package ;" line in AAPT2's top-level R.java causing issues while compiling.
+     */
+    private void deleteRJavaWithoutPackage() {
+        File rJavaFileWithoutPackage = new File(yq.rJavaDirectoryPath, "R.java");
+        if (rJavaFileWithoutPackage.exists() && !rJavaFileWithoutPackage.delete()) {
+            LogUtil.w(TAG, "Failed to delete file " + rJavaFileWithoutPackage.getAbsolutePath());
+        }
     }
 
     public void buildApk() throws By {
+        if (buildGraph != null) {
+            BuildGraph.Fingerprint inputs = buildGraph.newFingerprint()
+                    .addPath(new File(yq.resourcesApkPath))
+                    .addPath(new File(fpu.getPathNativelibs(yq.sc_id)))
+                    .addPaths(mll.getJarLocalLibrary());
+            if (dexesToAddButNotMerge.isEmpty()) {
+                ArrayList<String> dexFiles = FileUtil.listFiles(yq.binDirectoryPath, "dex");
+                dexFiles.sort(String::compareTo);
+                for (String dexFile : dexFiles) {
+                    inputs.addPath(new File(dexFile));
+                }
+            } else {
+                for (File dexFile : dexesToAddButNotMerge) {
+                    inputs.addPath(dexFile);
+                }
+            }
+            for (Jp library : builtInLibraryManager.getLibraries()) {
+                inputs.add("builtInLibrary", library.getName());
+            }
+            for (String nativeLibraryDirectory : mll.getNativeLibs()) {
+                inputs.addPath(new File(nativeLibraryDirectory));
+            }
+            if (buildGraph.isUpToDate(BuildGraph.STAGE_APK, inputs)) {
+                LogUtil.d(TAG, "Skipped building the APK as it's up-to-date");
+                return;
+            }
+        }
+
         String firstDexPath = dexesToAddButNotMerge.isEmpty() ? yq.classesDexPath : dexesToAddButNotMerge.remove(0).getAbsolutePath();
         try {
             ApkBuilder apkBuilder = new ApkBuilder(new File(yq.unsignedUnalignedApkPath), new File(yq.resourcesApkPath), new File(firstDexPath), null, null, System.out);
@@ -646,6 +803,10 @@ public class ProjectBuilder {
         }
         LogUtil.d(TAG, "Time passed since starting to compile resources until building the unsigned APK: " +
                 (System.currentTimeMillis() - timestampResourceCompilationStarted) + " ms");
+
+        if (buildGraph != null) {
+            buildGraph.markBuilt(BuildGraph.STAGE_APK, new File(yq.unsignedUnalignedApkPath));
+        }
     }
 
     /**
@@ -660,21 +821,25 @@ public class ProjectBuilder {
     public void getDexFilesReady() throws Exception {
         long savedTimeMillis = System.currentTimeMillis();
         ArrayList<File> dexes = new ArrayList<>();
+        ArrayList<String> builtInLibraryNames = new ArrayList<>();
 
         /* Add AndroidX MultiDex library if needed */
         if (settings.getMinSdkVersion() < 21) {
-            dexes.add(BuiltInLibraries.getLibraryDexFile(BuiltInLibraries.ANDROIDX_MULTIDEX));
+            builtInLibraryNames.add(BuiltInLibraries.ANDROIDX_MULTIDEX);
         }
 
         /* Add HTTP legacy files if wanted */
         if (!build_settings.getValue(BuildSettings.SETTING_NO_HTTP_LEGACY, ProjectSettings.SETTING_GENERIC_VALUE_FALSE)
                 .equals(ProjectSettings.SETTING_GENERIC_VALUE_TRUE)) {
-            dexes.add(BuiltInLibraries.getLibraryDexFile(BuiltInLibraries.HTTP_LEGACY_ANDROID));
+            builtInLibraryNames.add(BuiltInLibraries.HTTP_LEGACY_ANDROID);
         }
 
         /* Add used built-in libraries' DEX files */
         for (Jp builtInLibrary : builtInLibraryManager.getLibraries()) {
-            dexes.add(BuiltInLibraries.getLibraryDexFile(builtInLibrary.getName()));
+            builtInLibraryNames.add(builtInLibrary.getName());
+        }
+        for (String builtInLibraryName : builtInLibraryNames) {
+            dexes.add(BuiltInLibraries.getLibraryDexFile(builtInLibraryName));
         }
 
         /* Add local libraries' main DEX files */
@@ -715,15 +880,54 @@ public class ProjectBuilder {
             }
         }
 
+        ArrayList<File> projectDexes = new ArrayList<>();
         for (String file : FileUtil.listFiles(yq.binDirectoryPath + File.separator + "dex", "dex")) {
-            dexes.add(new File(file));
+            projectDexes.add(new File(file));
         }
+        dexes.addAll(projectDexes);
 
         LogUtil.d(TAG, "Will merge these " + dexes.size() + " DEX files to classes.dex: " + dexes);
 
         if (settings.getMinSdkVersion() < 21 || !yq.N.isDebugBuild) {
-            dexLibraries(new File(yq.binDirectoryPath), dexes);
+            if (buildGraph != null) {
+                BuildGraph.Fingerprint inputs = buildGraph.newFingerprint();
+                for (File dex : dexes) {
+                    inputs.addPath(dex);
+                }
+                if (buildGraph.isUpToDate(BuildGraph.STAGE_MERGE, inputs)) {
+                    LogUtil.d(TAG, "Skipped merging DEX files as they're up-to-date");
+                    return;
+                }
+                /* Don't keep merged DEX files of an earlier build with more of them */
+                for (String mergedDex : FileUtil.listFiles(yq.binDirectoryPath, "dex")) {
+                    FileUtil.deleteFile(mergedDex);
+                }
+            }
+
+            /* AndroidX MultiDex and project classes come first, so that they end up in classes.dex, where
+               pre-Lollipop devices need MultiDex, and project classes win over libraries' classes of the same
+               name. They're followed by the other built-in libraries, merged by an earlier build with the same
+               libraries, and local libraries */
+            List<File> dexesToMerge = new ArrayList<>();
+            List<String> libraryNamesToCache = builtInLibraryNames;
+            if (!builtInLibraryNames.isEmpty() && builtInLibraryNames.get(0).equals(BuiltInLibraries.ANDROIDX_MULTIDEX)) {
+                dexesToMerge.add(dexes.get(0));
+                libraryNamesToCache = builtInLibraryNames.subList(1, builtInLibraryNames.size());
+            }
+            dexesToMerge.addAll(projectDexes);
+            int mainDexCount = dexesToMerge.size();
+            if (!libraryNamesToCache.isEmpty()) {
+                dexesToMerge.addAll(new LibraryDexCache(BuiltInLibraries.MERGED_DEX_FILES_PATH)
+                        .getMerged(libraryNamesToCache));
+            }
+            dexesToMerge.addAll(dexes.subList(builtInLibraryNames.size(), dexes.size() - projectDexes.size()));
+
+            Collection<File> mergedDexes = dexLibraries(new File(yq.binDirectoryPath), dexesToMerge, mainDexCount);
             LogUtil.d(TAG, "Merging DEX files took " + (System.currentTimeMillis() - savedTimeMillis) + " ms");
+
+            if (buildGraph != null) {
+                buildGraph.markBuilt(BuildGraph.STAGE_MERGE, mergedDexes.toArray(new File[0]));
+            }
         } else {
             dexesToAddButNotMerge = dexes;
             LogUtil.d(TAG, "Skipped merging DEX files due to debug build with minSdkVersion >= 21");
@@ -814,6 +1018,7 @@ public class ProjectBuilder {
 
     private void mergeDexes(File target, List<Dex> dexes) throws IOException {
         DexMerger merger = new DexMerger(dexes.toArray(new Dex[0]), CollisionPolicy.KEEP_FIRST, new DxContext());
+        merger.setThreads(BuildSettings.getDexMergerThreads());
         merger.merge().writeTo(target);
     }
 
@@ -1010,4 +1215,16 @@ public class ProjectBuilder {
     public void setBuildAppBundle(boolean buildAppBundle) {
         this.buildAppBundle = buildAppBundle;
     }
+
+    /**
+     * Makes this builder skip stages that are up-to-date according to {@code buildGraph},
+     * or build everything if it's <code>null</code>.
+     */
+    public void setBuildGraph(BuildGraph buildGraph) {
+        this.buildGraph = buildGraph;
+    }
+
+    public BuildGraph getBuildGraph() {
+        return buildGraph;
+    }
 }
@@ -0,0 +1,217 @@
+package a.a.a;
+
+import android.util.Log;
+
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the decrypted <code>project</code> files of all projects, so that listing projects only
+ * has to decrypt files that changed since. The index is stored encrypted like the files themselves.
+ * <p>
+ * Changes are written shortly after the last one, in the background, as the index holds every project
+ * and e.g. saving a project and reading it back would otherwise write it twice.
+ */
+class ProjectIndex {
+    private static final String TAG = "ProjectIndex";
+    private static final String PROJECT_FILENAME = "project";
+    private static final int FORMAT_VERSION = 1;
+    private static final long SAVE_DELAY_MILLIS = 2000;
+
+    private static final Object lock = new Object();
+    private static final ScheduledExecutorService saver = Executors.newSingleThreadScheduledExecutor();
+    private static HashMap<String, Entry> entries;
+    /**
+     * Whether {@link #entries} changed since the index was last written
+     */
+    private static boolean dirty;
+    private static boolean saveScheduled;
+
+    /**
+     * @return All projects whose <code>project</code> file belongs to the directory it's in,
+     * in the order of {@link File#listFiles()} like before
+     */
+    static ArrayList<HashMap<String, Object>> getProjects() {
+        ArrayList<HashMap<String, Object>> projects = new ArrayList<>();
+        File[] directories = new File(wq.n()).listFiles();
+        if (directories == null) {
+            return projects;
+        }
+
+        synchronized (lock) {
+            loadIfNeeded();
+            boolean changed = false;
+            Set<String> existing = new HashSet<>();
+            for (File directory : directories) {
+                File projectFile = new File(directory, PROJECT_FILENAME);
+                if (!projectFile.exists()) continue;
+                existing.add(directory.getName());
+
+                Entry entry = entries.get(directory.getName());
+                if (entry == null || !entry.isUpToDate(projectFile)) {
+                    entry = read(directory.getName(), projectFile);
+                    if (entry == null) continue;
+                    entries.put(directory.getName(), entry);
+                    changed = true;
+                }
+                HashMap<String, Object> project = entry.getProject();
+                if (project != null) {
+                    projects.add(project);
+                }
+            }
+            changed |= entries.keySet().retainAll(existing);
+
+            if (changed) {
+                markDirty();
+            }
+        }
+        return projects;
+    }
+
+    /**
+     * @return The project with that sc_id, or <code>null</code> if it doesn't exist or couldn't be read
+     */
+    static HashMap<String, Object> getProject(String sc_id) {
+        File projectFile = new File(wq.c(sc_id), PROJECT_FILENAME);
+        if (!projectFile.exists()) {
+            return null;
+        }
+
+        synchronized (lock) {
+            loadIfNeeded();
+            Entry entry = entries.get(sc_id);
+            if (entry == null || !entry.isUpToDate(projectFile)) {
+                entry = read(sc_id, projectFile);
+                if (entry == null) return null;
+                entries.put(sc_id, entry);
+                markDirty();
+            }
+            return entry.getProject();
+        }
+    }
+
+    /**
+     * Forgets a project, e.g. because its <code>project</code> file was just written. Its size and
+     * modification time might not have changed visibly if written in quick succession.
+     */
+    static void invalidate(String sc_id) {
+        synchronized (lock) {
+            if (entries != null && entries.remove(sc_id) != null) {
+                markDirty();
+            }
+        }
+    }
+
+    private static Entry read(String sc_id, File projectFile) {
+        Entry entry = new Entry();
+        // Stamp before reading, so that changes while reading make the entry outdated
+        entry.length = projectFile.length();
+        entry.lastModified = projectFile.lastModified();
+        try {
+            oB oB = new oB();
+            String project = oB.a(oB.h(projectFile.getAbsolutePath()));
+            HashMap<String, Object> parsed = vB.a(project);
+            if (yB.c(parsed, "sc_id").equals(sc_id)) {
+                entry.project = project;
+                entry.parsed = parsed;
+            }
+            return entry;
+        } catch (Throwable e) {
+            Log.e(TAG, "Failed to read project " + sc_id, e);
+            return null;
+        }
+    }
+
+    private static File getIndexFile() {
+        return new File(wq.q(), "project_index");
+    }
+
+    private static void loadIfNeeded() {
+        if (entries != null) return;
+
+        File indexFile = getIndexFile();
+        if (indexFile.exists()) {
+            try {
+                oB oB = new oB();
+                Index index = new Gson().fromJson(oB.a(oB.h(indexFile.getAbsolutePath())), Index.class);
+                if (index != null && index.version == FORMAT_VERSION && index.entries != null) {
+                    entries = index.entries;
+                    return;
+                }
+            } catch (Throwable e) {
+                Log.e(TAG, "Failed to read project index, re-reading all projects", e);
+            }
+        }
+        entries = new HashMap<>();
+    }
+
+    /**
+     * Schedules writing the index, unless it's already scheduled. Must hold {@link #lock}.
+     */
+    private static void markDirty() {
+        dirty = true;
+        if (!saveScheduled) {
+            saveScheduled = true;
+            saver.schedule(ProjectIndex::save, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the index if it changed. Runs on {@link #saver}, so writes don't overlap.
+     */
+    private static void save() {
+        String json;
+        synchronized (lock) {
+            saveScheduled = false;
+            if (!dirty) return;
+            dirty = false;
+            Index index = new Index();
+            index.entries = entries;
+            json = new Gson().toJson(index);
+        }
+        try {
+            oB oB = new oB();
+            oB.a(getIndexFile().getAbsolutePath(), oB.d(json));
+        } catch (Throwable e) {
+            Log.e(TAG, "Failed to save project index", e);
+        }
+    }
+
+    private static class Index {
+        int version = FORMAT_VERSION;
+        HashMap<String, Entry> entries;
+    }
+
+    private static class Entry {
+        long length;
+        long lastModified;
+        /**
+         * The decrypted <code>project</code> file, or <code>null</code> if it belongs to another sc_id.
+         */
+        String project;
+        transient HashMap<String, Object> parsed;
+
+        /**
+         * @return A copy of the project, as callers may modify it
+         */
+        private HashMap<String, Object> getProject() {
+            if (project == null) return null;
+            if (parsed == null) {
+                parsed = vB.a(project);
+            }
+            return new HashMap<>(parsed);
+        }
+
+        private boolean isUpToDate(File projectFile) {
+            return projectFile.length() == length && projectFile.lastModified() == lastModified;
+        }
+    }
+}
@@ -11,6 +11,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 
 import mod.agus.jcoderz.handle.component.ConstVarComponent;
+import mod.hey.studios.project.ProjectConfigSnapshot;
 
 public class jq {
 
@@ -207,6 +208,12 @@ public class jq {
 
     public String sc_id = "";
 
+    /**
+     * The project's configuration for this build, shared by all code generators.
+     * Set by {@link yq}, otherwise read on first use.
+     */
+    public ProjectConfigSnapshot config;
+
     public boolean isDynamicLinkUsed = false;
 
     public ArrayList<Pair<String, String>> dlDataList = new ArrayList<>();
@@ -229,6 +236,13 @@ public class jq {
     public HashMap<String, a> w = new HashMap<>();
     public ConstVarComponent x = new ConstVarComponent();
 
+    public ProjectConfigSnapshot getConfig() {
+        if (config == null) {
+            config = ProjectConfigSnapshot.get(sc_id);
+        }
+        return config;
+    }
+
     public boolean hasPermissions() {
         return q == 0;
     }
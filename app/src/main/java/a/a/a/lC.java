@@ -11,28 +11,11 @@ import java.util.HashMap;
 public class lC {
     public static DB a;
 
+    /**
+     * @return All projects, only decrypting <code>project</code> files that changed since last time
+     */
     public static ArrayList<HashMap<String, Object>> a() {
-        String str = "project";
-        ArrayList<HashMap<String, Object>> arrayList = new ArrayList<>();
-        oB oBVar = new oB();
-        File[] listFiles = new File(wq.n()).listFiles();
-        if (listFiles == null) {
-            return arrayList;
-        }
-        for (File file : listFiles) {
-            try {
-                if (new File(file, str).exists()) {
-                    String path = file.getAbsolutePath() + File.separator + str;
-                    HashMap<String, Object> a = vB.a(oBVar.a(oBVar.h(path)));
-                    if (yB.c(a, "sc_id").equals(file.getName())) {
-                        arrayList.add(a);
-                    }
-                }
-            } catch (Throwable e) {
-                Log.e("ERROR", e.getMessage(), e);
-            }
-        }
-        return arrayList;
+        return ProjectIndex.getProjects();
     }
 
     public static HashMap<String, Object> a(String str) {
@@ -49,6 +32,7 @@ public class lC {
         if (file.exists()) {
             oB oBVar = new oB();
             oBVar.a(file);
+            ProjectIndex.invalidate(str);
             oBVar.b(wq.d(str));
             StringBuilder stringBuilder = new StringBuilder();
             stringBuilder.append(wq.g());
@@ -102,15 +86,15 @@ public class lC {
         if (!file.exists()) {
             file.mkdirs();
         }
-        str = wq.c(str);
-        str = str + File.separator + "project";
+        String path = wq.c(str) + File.separator + "project";
         String a = vB.a(hashMap);
         oB oBVar = new oB();
         try {
-            oBVar.a(str, oBVar.d(a));
+            oBVar.a(path, oBVar.d(a));
         } catch (Throwable e) {
             Log.e("ERROR", e.getMessage(), e);
         }
+        ProjectIndex.invalidate(str);
     }
 
     public static String b() {
@@ -122,29 +106,7 @@ public class lC {
     }
 
     public static HashMap<String, Object> b(String str) {
-        Throwable e;
-        oB oBVar = new oB();
-        HashMap<String, Object> hashMap = null;
-        try {
-            String c = wq.c(str);
-            if (!new File(c).exists()) {
-                return null;
-            }
-            String path = c + File.separator + "project";
-            HashMap<String, Object> a = vB.a(oBVar.a(oBVar.h(path)));
-            try {
-                return !yB.c(a, "sc_id").equals(str) ? null : a;
-            } catch (Exception e2) {
-                e = e2;
-                hashMap = a;
-                Log.e("ERROR", e.getMessage(), e);
-                return hashMap;
-            }
-        } catch (Exception e3) {
-            e = e3;
-            Log.e("ERROR", e.getMessage(), e);
-            return hashMap;
-        }
+        return ProjectIndex.getProject(str);
     }
 
     public static void b(String str, HashMap<String, Object> hashMap) {
@@ -173,6 +135,7 @@ public class lC {
                     a.put("color_control_highlight", hashMap.get("color_control_highlight"));
                     a.put("color_control_normal", hashMap.get("color_control_normal"));
                     fileUtil.a(path, fileUtil.d(vB.a(a)));
+                    ProjectIndex.invalidate(str);
                 }
             } catch (Throwable e) {
                 Log.e("DEBUG", e.getMessage(), e);
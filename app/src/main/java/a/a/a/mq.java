@@ -1,10 +1,10 @@
 package a.a.a;
 
 import com.besome.sketch.beans.ComponentBean;
-import com.besome.sketch.editor.manage.library.material3.Material3LibraryManager;
 
 import java.util.ArrayList;
 
+import mod.hey.studios.project.ProjectConfigSnapshot;
 import mod.hilal.saif.components.ComponentsHandler;
 import mod.hilal.saif.events.EventsHandler;
 import pro.sketchware.menu.DefaultExtraMenuBean;
@@ -102,21 +102,7 @@ public class mq {
      * @return A parameter class info ({@link Gx}) list
      */
     public static ArrayList<Gx> a(String spec) {
-        ArrayList<Gx> paramClass = new ArrayList<>();
-        ArrayList<String> specList = FB.c(spec);
-        for (String params : specList) {
-            if (params.charAt(0) == '%' && params.length() >= 2) {
-                String type = String.valueOf(params.charAt(1));
-                String typeName;
-                if (params.length() > 3) {
-                    typeName = params.substring(3);
-                } else {
-                    typeName = "";
-                }
-                paramClass.add(a(type, typeName));
-            }
-        }
-        return paramClass;
+        return new ArrayList<>(BlockSpec.of(spec).getParamClassInfo());
     }
 
     /**
@@ -246,12 +232,12 @@ public class mq {
     }
 
     /**
+     * @param config The configuration of the project the type is used in
      * @return Imports needed for a type
      */
-    public static ArrayList<String> getImportsByTypeName(String scId, String name, String convert) {
+    public static ArrayList<String> getImportsByTypeName(ProjectConfigSnapshot config, String name, String convert) {
         ArrayList<String> importList = new ArrayList<>();
         ComponentsHandler.getImports(name, importList);
-        Material3LibraryManager materialLibraryManager = new Material3LibraryManager(scId);
 
         switch (name) {
             case "Map":
@@ -429,7 +415,7 @@ public class mq {
 
             case "Toolbar":
                 importList.add(
-                        (materialLibraryManager.isMaterial3Enabled()) ? "com.google.android.material.appbar.MaterialToolbar" : "androidx.appcompat.widget.Toolbar"
+                        (config.getMaterial3LibraryManager().isMaterial3Enabled()) ? "com.google.android.material.appbar.MaterialToolbar" : "androidx.appcompat.widget.Toolbar"
                 );
                 importList.add("androidx.annotation.NonNull");
                 return importList;
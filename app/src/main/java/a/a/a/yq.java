@@ -14,7 +14,6 @@ import com.besome.sketch.beans.ProjectFileBean;
 import com.besome.sketch.beans.ProjectLibraryBean;
 import com.besome.sketch.beans.SrcCodeBean;
 import com.besome.sketch.beans.ViewBean;
-import com.besome.sketch.editor.manage.library.material3.Material3LibraryManager;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -22,9 +21,14 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 import mod.hey.studios.build.BuildSettings;
+import mod.hey.studios.project.ProjectConfigSnapshot;
 import mod.hey.studios.project.ProjectSettings;
 import mod.hey.studios.util.ProjectFile;
 import mod.hilal.saif.blocks.CommandBlock;
@@ -137,10 +141,6 @@ public class yq {
      * e.g. /storage/emulated/0/.sketchware/mysc/605/bin/usage.txt
      */
     public final String proguardUsagePath;
-    /**
-     * Current project's ProjectSettings object
-     */
-    public final ProjectSettings projectSettings;
     /**
      * Example content: /storage/emulated/0/.sketchware/mysc/605/app/src/main/AndroidManifest.xml
      */
@@ -183,8 +183,6 @@ public class yq {
      */
     public final String importedSoundsPath;
 
-    private final Material3LibraryManager material3LibraryManager;
-
     private final oB fileUtil;
     private final Context context;
 
@@ -213,7 +211,6 @@ public class yq {
         this.metadata = metadata;
         N = new jq();
         sc_id = yB.c(metadata, "sc_id");
-        material3LibraryManager = new Material3LibraryManager(sc_id);
         N.sc_id = sc_id;
         projectMyscPath = myscFolderPath.endsWith(File.separator) ? myscFolderPath : myscFolderPath + File.separator;
         packageName = yB.c(metadata, "my_sc_pkg_name");
@@ -228,7 +225,6 @@ public class yq {
         colorControlHighlight = yB.a(metadata, ProjectFile.COLOR_CONTROL_HIGHLIGHT, getDefaultColor(ProjectFile.COLOR_CONTROL_HIGHLIGHT));
         colorControlNormal = yB.a(metadata, ProjectFile.COLOR_CONTROL_NORMAL, getDefaultColor(ProjectFile.COLOR_CONTROL_NORMAL));
 
-        projectSettings = new ProjectSettings(sc_id);
         fileUtil = new oB(true);
         packageNameAsFolders = packageName.replaceAll("\\.", File.separator);
         binDirectoryPath = projectMyscPath + "bin";
@@ -307,7 +303,7 @@ public class yq {
      */
     public void h() {
         fileUtil.b(projectMyscPath + File.separator + "app" + File.separator + "build.gradle",
-                Lx.getBuildGradleString(VAR_DEFAULT_TARGET_SDK_VERSION, VAR_DEFAULT_MIN_SDK_VERSION, projectSettings.getValue(ProjectSettings.SETTING_TARGET_SDK_VERSION, String.valueOf(VAR_DEFAULT_TARGET_SDK_VERSION)), N, projectSettings.getValue(ProjectSettings.SETTING_ENABLE_VIEWBINDING, ProjectSettings.SETTING_GENERIC_VALUE_FALSE).equals(ProjectSettings.SETTING_GENERIC_VALUE_TRUE)));
+                Lx.getBuildGradleString(VAR_DEFAULT_TARGET_SDK_VERSION, VAR_DEFAULT_MIN_SDK_VERSION, N.getConfig().getProjectSetting(ProjectSettings.SETTING_TARGET_SDK_VERSION, String.valueOf(VAR_DEFAULT_TARGET_SDK_VERSION)), N, N.getConfig().isViewBindingEnabled()));
         fileUtil.b(projectMyscPath + File.separator + "settings.gradle", Lx.a());
         fileUtil.b(projectMyscPath + File.separator + "build.gradle", Lx.c("8.12.0", "4.4.3"));
 
@@ -368,7 +364,7 @@ public class yq {
      * Generates DebugActivity.java, SketchApplication.java, and SketchLogger.java, if necessary.
      */
     public void a(Context context) {
-        boolean logcatEnabled = N.isDebugBuild && new BuildSettings(sc_id).getValue(
+        boolean logcatEnabled = N.isDebugBuild && N.getConfig().getBuildSetting(
                         BuildSettings.SETTING_ENABLE_LOGCAT, BuildSettings.SETTING_GENERIC_VALUE_TRUE)
                 .equals(BuildSettings.SETTING_GENERIC_VALUE_TRUE);
 
@@ -384,7 +380,7 @@ public class yq {
             fileUtil.b(javaFilesPath + File.separator + packageNameAsFolders + File.separator + "DebugActivity.java", debugActivityContent);
         }
 
-        String customApplicationClassName = new ProjectSettings(sc_id).getValue(
+        String customApplicationClassName = N.getConfig().getProjectSetting(
                 ProjectSettings.SETTING_APPLICATION_CLASS, ".SketchApplication");
         boolean notUsingCustomApplicationClass = customApplicationClassName.equals(".SketchApplication");
 
@@ -403,7 +399,7 @@ public class yq {
                 customApplicationClassName.substring(1).replace('.', '/') + ".java");
 
         if (!targetApplicationFile.exists()) {
-            boolean applyMultiDex = projectSettings.getMinSdkVersion() < 21;
+            boolean applyMultiDex = N.getConfig().getMinSdkVersion() < 21;
             String sketchApplicationFileContent = fileUtil.b(
                     context,
                     "debug" + File.separator + "SketchApplication.java"
@@ -422,7 +418,7 @@ public class yq {
                                         "                    Process.killProcess(Process.myPid());"
                         );
             }
-            if (new Material3LibraryManager(sc_id).isDynamicColorsEnabled()) {
+            if (N.getConfig().getMaterial3LibraryManager().isDynamicColorsEnabled()) {
                 sketchApplicationFileContent = sketchApplicationFileContent.replace(
                                 "mApplicationContext = getApplicationContext();",
                                 "mApplicationContext = getApplicationContext();\n        DynamicColors.applyToActivitiesIfAvailable(this);")
@@ -506,6 +502,8 @@ public class yq {
         N.versionCode = versionCode;
         N.versionName = versionName;
         N.sc_id = sc_id;
+        // Read the configuration once for all code generators of this build
+        N.config = ProjectConfigSnapshot.get(sc_id);
         N.isDebugBuild = exportingType == ExportType.DEBUG_APP;
         isAndroidStudioExport = exportingType == ExportType.ANDROID_STUDIO;
         generateDataBindingClasses = !(exportingType == ExportType.DEBUG_APP || exportingType == ExportType.ANDROID_STUDIO);
@@ -790,66 +788,77 @@ public class yq {
             layoutFiles = Arrays.asList(files);
         }
 
-        // Generate Activities unless a custom version of it exists already
-        // at /Internal storage/.sketchware/data/<sc_id>/files/java/
         ArrayList<SrcCodeBean> srcCodeBeans = new ArrayList<>();
-        for (ProjectFileBean activity : projectFileManager.b()) {
-            if (!javaFiles.contains(new File(javaDir + activity.getJavaName()))) {
-                srcCodeBeans.add(new SrcCodeBean(activity.getJavaName(),
-                        new Jx(N, activity, projectDataManager).generateCode(isAndroidStudioExport, sc_id)));
-            }
+        ArrayList<ProjectFileBean> activities = projectFileManager.b();
+        ArrayList<ProjectFileBean> regularLayouts = projectFileManager.b();
+        ArrayList<ProjectFileBean> customViewFiles = projectFileManager.c();
+        // Per-Activity build config entries get created on first access, so do that before going concurrent
+        for (ProjectFileBean activity : activities) {
+            N.a(activity.getActivityName());
         }
 
-        var path = wq.b(sc_id) + "/command";
-        var newXMLCommand = Boolean.parseBoolean(projectSettings.getValue(ProjectSettings.SETTING_NEW_XML_COMMAND, ProjectSettings.SETTING_GENERIC_VALUE_FALSE));
-        if (newXMLCommand && FileUtil.isExistFile(path)) {
-            FileUtil.copyFile(path, FileUtil.getExternalStorageDir().concat("/.sketchware/temp/commands"));
-        }
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+                Math.max(activities.size(), regularLayouts.size() + customViewFiles.size())));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            // Generate Activities unless a custom version of it exists already
+            // at /Internal storage/.sketchware/data/<sc_id>/files/java/
+            ArrayList<Future<Pair<SrcCodeBean, ArrayList<HashMap<String, Object>>>>> activityResults = new ArrayList<>();
+            for (ProjectFileBean activity : activities) {
+                if (!javaFiles.contains(new File(javaDir + activity.getJavaName()))) {
+                    activityResults.add(executor.submit(() -> {
+                        String code;
+                        ArrayList<HashMap<String, Object>> activityXmlCommands;
+                        CommandBlock.startCollectingXmlCommands();
+                        try {
+                            code = new Jx(N, activity, projectDataManager).generateCode(isAndroidStudioExport, sc_id);
+                        } finally {
+                            activityXmlCommands = CommandBlock.stopCollectingXmlCommands();
+                        }
+                        return new Pair<>(new SrcCodeBean(activity.getJavaName(), code), activityXmlCommands);
+                    }));
+                }
+            }
+            // XML commands of all Activities have to be known before any XML file is generated,
+            // and are written in Activity order, just like when generating Activities one after another
+            ArrayList<HashMap<String, Object>> xmlCommands = new ArrayList<>();
+            for (Future<Pair<SrcCodeBean, ArrayList<HashMap<String, Object>>>> result : activityResults) {
+                Pair<SrcCodeBean, ArrayList<HashMap<String, Object>>> activity = getGenerationResult(result);
+                srcCodeBeans.add(activity.first);
+                xmlCommands.addAll(activity.second);
+            }
+            if (!xmlCommands.isEmpty()) {
+                CommandBlock.writeXmlCommands(xmlCommands);
+            }
+
+            var path = wq.b(sc_id) + "/command";
+            var newXMLCommand = Boolean.parseBoolean(N.getConfig().getProjectSetting(ProjectSettings.SETTING_NEW_XML_COMMAND, ProjectSettings.SETTING_GENERIC_VALUE_FALSE));
+            if (newXMLCommand && FileUtil.isExistFile(path)) {
+                CommandBlock.replaceCommands(path);
+            }
 
-        var viewBindingBuilder = new ViewBindingBuilder(List.of(), new File("."), packageName);
+            var viewBindingBuilder = new ViewBindingBuilder(List.of(), new File("."), packageName);
 
-        // Generate layouts unless a custom version of it exists already
-        // at /Internal storage/.sketchware/data/<sc_id>/files/resource/layout/
-        ArrayList<ProjectFileBean> regularLayouts = projectFileManager.b();
-        for (ProjectFileBean layout : regularLayouts) {
-            String xmlName = layout.getXmlName();
-            Ox ox = new Ox(N, layout);
-            ox.a(eC.a(projectDataManager.d(xmlName)), projectDataManager.h(xmlName));
-            var ogFile = new File(layoutDir + xmlName);
-            if (!layoutFiles.contains(ogFile)) {
-                srcCodeBeans.add(new SrcCodeBean(xmlName, CommandBlock.applyCommands(xmlName, ox.b())));
-
-                if (isViewBindingEnable()) {
-                    var privFile = new File(context.getCacheDir(), xmlName);
-                    FileUtil.writeFile(privFile.getAbsolutePath(), CommandBlock.applyCommands(xmlName, ox.b()));
-                    var code = viewBindingBuilder.generateBindingForLayout(privFile);
-                    srcCodeBeans.add(new SrcCodeBean(
-                            ViewBindingBuilder.generateFileNameForLayout(xmlName.replace(".xml", "")) + ".java",
-                            CommandBlock.applyCommands(xmlName, code)
-                    ));
+            // Generate layouts unless a custom version of it exists already
+            // at /Internal storage/.sketchware/data/<sc_id>/files/resource/layout/
+            ArrayList<Future<ArrayList<SrcCodeBean>>> layoutResults = new ArrayList<>();
+            for (ProjectFileBean layout : regularLayouts) {
+                if (!layoutFiles.contains(new File(layoutDir + layout.getXmlName()))) {
+                    layoutResults.add(executor.submit(() ->
+                            generateLayout(layout, false, projectDataManager, viewBindingBuilder)));
                 }
             }
-        }
-
-        ArrayList<ProjectFileBean> customViewFiles = projectFileManager.c();
-        for (ProjectFileBean customViewFile : customViewFiles) {
-            String xmlName = customViewFile.getXmlName();
-            Ox ox = new Ox(N, customViewFile);
-            ox.a(eC.a(projectDataManager.d(xmlName)));
-            var ogFile = new File(layoutDir + xmlName);
-            if (!layoutFiles.contains(ogFile)) {
-                srcCodeBeans.add(new SrcCodeBean(xmlName, CommandBlock.applyCommands(xmlName, ox.b())));
-
-                if (isViewBindingEnable()) {
-                    var privFile = new File(context.getCacheDir(), xmlName);
-                    FileUtil.writeFile(privFile.getAbsolutePath(), CommandBlock.applyCommands(xmlName, ox.b()));
-                    var code = viewBindingBuilder.generateBindingForLayout(privFile);
-                    srcCodeBeans.add(new SrcCodeBean(
-                            ViewBindingBuilder.generateFileNameForLayout(xmlName.replace(".xml", "")) + ".java",
-                            CommandBlock.applyCommands(xmlName, code)
-                    ));
+            for (ProjectFileBean customViewFile : customViewFiles) {
+                if (!layoutFiles.contains(new File(layoutDir + customViewFile.getXmlName()))) {
+                    layoutResults.add(executor.submit(() ->
+                            generateLayout(customViewFile, true, projectDataManager, viewBindingBuilder)));
                 }
             }
+            for (Future<ArrayList<SrcCodeBean>> result : layoutResults) {
+                srcCodeBeans.addAll(getGenerationResult(result));
+            }
+        } finally {
+            executor.shutdownNow();
         }
 
         Ix ix = new Ix(N, projectFileManager.b(), builtInLibraryManager);
@@ -858,7 +867,7 @@ public class yq {
         // Make generated classes viewable
         if (!javaFiles.contains(new File(javaDir + "SketchwareUtil.java"))) {
             srcCodeBeans.add(new SrcCodeBean("SketchwareUtil.java",
-                    Lx.i(packageName, material3LibraryManager.isMaterial3Enabled())));
+                    Lx.i(packageName, N.getConfig().getMaterial3LibraryManager().isMaterial3Enabled())));
         }
 
         if (!javaFiles.contains(new File(javaDir + "FileUtil.java"))) {
@@ -901,8 +910,57 @@ public class yq {
         return srcCodeBeans;
     }
 
+    /**
+     * Generates a layout, and its View Binding class if enabled.
+     * Called concurrently for all layouts of a project, so it must only read shared state.
+     */
+    private ArrayList<SrcCodeBean> generateLayout(ProjectFileBean layout, boolean isCustomView, eC projectDataManager,
+                                                  ViewBindingBuilder viewBindingBuilder) {
+        ArrayList<SrcCodeBean> srcCodeBeans = new ArrayList<>();
+        String xmlName = layout.getXmlName();
+        Ox ox = new Ox(N, layout);
+        if (isCustomView) {
+            ox.a(eC.a(projectDataManager.d(xmlName)));
+        } else {
+            ox.a(eC.a(projectDataManager.d(xmlName)), projectDataManager.h(xmlName));
+        }
+        String layoutCode = CommandBlock.applyCommands(xmlName, ox.b());
+        srcCodeBeans.add(new SrcCodeBean(xmlName, layoutCode));
+
+        if (isViewBindingEnable()) {
+            var privFile = new File(context.getCacheDir(), xmlName);
+            FileUtil.writeFile(privFile.getAbsolutePath(), layoutCode);
+            var code = viewBindingBuilder.generateBindingForLayout(privFile);
+            srcCodeBeans.add(new SrcCodeBean(
+                    ViewBindingBuilder.generateFileNameForLayout(xmlName.replace(".xml", "")) + ".java",
+                    CommandBlock.applyCommands(xmlName, code)
+            ));
+        }
+        return srcCodeBeans;
+    }
+
+    /**
+     * Waits for a concurrently generated file, re-throwing any exception that occurred while generating it.
+     */
+    private static <T> T getGenerationResult(Future<T> result) {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Failed to generate source code", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating source code", e);
+        }
+    }
+
     private boolean isViewBindingEnable() {
-        return generateDataBindingClasses && projectSettings.getValue(ProjectSettings.SETTING_ENABLE_VIEWBINDING, ProjectSettings.SETTING_GENERIC_VALUE_FALSE).equals(ProjectSettings.SETTING_GENERIC_VALUE_TRUE);
+        return generateDataBindingClasses && N.getConfig().isViewBindingEnabled();
     }
 
     /**
@@ -920,9 +978,9 @@ public class yq {
         files.addAll(new ArrayList<>(projectFileManager.c()));
         if (isXmlFile) {
             var path = wq.b(sc_id) + "/command";
-            var newXMLCommand = Boolean.parseBoolean(projectSettings.getValue(ProjectSettings.SETTING_NEW_XML_COMMAND, ProjectSettings.SETTING_GENERIC_VALUE_FALSE));
+            var newXMLCommand = Boolean.parseBoolean(N.getConfig().getProjectSetting(ProjectSettings.SETTING_NEW_XML_COMMAND, ProjectSettings.SETTING_GENERIC_VALUE_FALSE));
             if (newXMLCommand && FileUtil.isExistFile(path)) {
-                FileUtil.copyFile(path, FileUtil.getExternalStorageDir().concat("/.sketchware/temp/commands"));
+                CommandBlock.replaceCommands(path);
             } else {
                 /*
                  Generating every java file is necessary to make command blocks for xml work
@@ -997,9 +1055,9 @@ public class yq {
         if (FileUtil.isExistFile(filePath) && exportingType == ExportType.SOURCE_CODE_VIEWING) {
             return FileUtil.readFile(filePath);
         }
-        if (material3LibraryManager.isMaterial3Enabled()) {
+        if (N.getConfig().getMaterial3LibraryManager().isMaterial3Enabled()) {
             XmlBuilderHelper stylesFileBuilder = new XmlBuilderHelper();
-            stylesFileBuilder.addStyle("AppTheme", String.format("Theme.Material3.%s.NoActionBar", material3LibraryManager.getTheme()));
+            stylesFileBuilder.addStyle("AppTheme", String.format("Theme.Material3.%s.NoActionBar", N.getConfig().getMaterial3LibraryManager().getTheme()));
             stylesFileBuilder.addItemToStyle("AppTheme", "android:statusBarColor", "@android:color/transparent");
             stylesFileBuilder.addItemToStyle("AppTheme", "android:navigationBarColor", "@android:color/transparent");
             stylesFileBuilder.addItemToStyle("AppTheme", "android:windowLightStatusBar", "?attr/isLightTheme");
@@ -1013,7 +1071,7 @@ public class yq {
             stylesFileBuilder.addItemToStyle("AppTheme.DebugActivity", "windowNoTitle", "false");
             return CommandBlock.applyCommands("styles.xml", stylesFileBuilder.toCode());
         } else if (N.g) {
-            boolean useNewMaterialComponentsTheme = projectSettings.getValue(ProjectSettings.SETTING_ENABLE_BRIDGELESS_THEMES,
+            boolean useNewMaterialComponentsTheme = N.getConfig().getProjectSetting(ProjectSettings.SETTING_ENABLE_BRIDGELESS_THEMES,
                     BuildSettings.SETTING_GENERIC_VALUE_FALSE).equals(BuildSettings.SETTING_GENERIC_VALUE_TRUE);
             XmlBuilderHelper stylesFileBuilder = new XmlBuilderHelper();
             stylesFileBuilder.addStyle("AppTheme", "Theme.MaterialComponents.Light.NoActionBar" + (useNewMaterialComponentsTheme ? "" : ".Bridge"));
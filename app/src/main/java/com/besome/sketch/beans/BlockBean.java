@@ -9,8 +9,8 @@ import com.google.gson.annotations.Expose;
 
 import java.util.ArrayList;
 
+import a.a.a.BlockSpec;
 import a.a.a.Gx;
-import a.a.a.mq;
 
 public class BlockBean extends SelectableBean implements Parcelable {
     public static final Parcelable.Creator<BlockBean> CREATOR = new Parcelable.Creator<>() {
@@ -72,7 +72,6 @@ public class BlockBean extends SelectableBean implements Parcelable {
         subStack1 = -1;
         subStack2 = -1;
         nextBlock = -1;
-        buildClassInfo();
     }
 
     public BlockBean(Parcel parcel) {
@@ -86,16 +85,19 @@ public class BlockBean extends SelectableBean implements Parcelable {
         subStack1 = parcel.readInt();
         subStack2 = parcel.readInt();
         nextBlock = parcel.readInt();
-        buildClassInfo();
     }
 
     public static Parcelable.Creator<BlockBean> getCreator() {
         return CREATOR;
     }
 
+    /**
+     * Class infos are built lazily from the shared {@link BlockSpec}, as most blocks
+     * (e.g. ones just loaded from a project) never need them.
+     */
     private void buildClassInfo() {
-        classInfo = mq.a(type, typeName);
-        paramClassInfo = mq.a(spec);
+        classInfo = BlockSpec.getClassInfo(type, typeName);
+        paramClassInfo = new ArrayList<>(BlockSpec.of(spec).getParamClassInfo());
     }
 
     public void copy(BlockBean other) {
@@ -109,7 +111,9 @@ public class BlockBean extends SelectableBean implements Parcelable {
         subStack1 = other.subStack1;
         subStack2 = other.subStack2;
         nextBlock = other.nextBlock;
-        buildClassInfo();
+        // Built again from the new spec and type when needed
+        classInfo = null;
+        paramClassInfo = null;
     }
 
     @Override
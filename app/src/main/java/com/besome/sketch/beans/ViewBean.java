@@ -13,6 +13,7 @@ import a.a.a.Gx;
 import a.a.a.nA;
 import mod.agus.jcoderz.beans.ViewBeans;
 import pro.sketchware.R;
+import pro.sketchware.utility.InjectAttributes;
 
 public class ViewBean extends nA implements Parcelable {
     public static final Parcelable.Creator<ViewBean> CREATOR = new Parcelable.Creator<>() {
@@ -134,6 +135,7 @@ public class ViewBean extends nA implements Parcelable {
     @Expose
     public HashMap<String, String> parentAttributes;
     public boolean isCustomWidget;
+    private transient volatile InjectAttributes injectAttributes;
 
     public ViewBean() {
         parent = null;
@@ -296,6 +298,19 @@ public class ViewBean extends nA implements Parcelable {
         };
     }
 
+    /**
+     * @return The parsed attributes of {@link #inject}, parsed again only after it changed
+     */
+    public InjectAttributes getInjectAttributes() {
+        String inject = this.inject;
+        InjectAttributes attributes = injectAttributes;
+        if (attributes == null || !attributes.isParsedFrom(inject)) {
+            attributes = InjectAttributes.parse(inject, id);
+            injectAttributes = attributes;
+        }
+        return attributes;
+    }
+
     public Gx buildClassInfo(int type) {
         String name = switch (type) {
             case VIEW_TYPE_LAYOUT_LINEAR -> "LinearLayout";
@@ -109,6 +109,7 @@ import mod.hilal.saif.activities.android_manifest.AndroidManifestInjection;
 import mod.hilal.saif.activities.tools.ConfigActivity;
 import mod.jbk.build.BuildProgressReceiver;
 import mod.jbk.build.BuiltInLibraries;
+import mod.jbk.build.incremental.BuildGraph;
 import mod.jbk.diagnostic.CompileErrorSaver;
 import mod.jbk.diagnostic.MissingFileException;
 import mod.jbk.util.LogUtil;
@@ -1075,7 +1076,12 @@ public class DesignActivity extends BaseAppCompatActivity implements View.OnClic
                 var q = activity.q;
                 var sc_id = DesignActivity.sc_id;
                 onProgress("Deleting temporary files...", 1);
-                FileUtil.deleteFile(q.projectMyscPath);
+                BuildGraph buildGraph = BuildGraph.canBuildIncrementally(q) ? BuildGraph.load(q) : null;
+                if (buildGraph != null) {
+                    BuildGraph.deleteGeneratedSources(q);
+                } else {
+                    FileUtil.deleteFile(q.projectMyscPath);
+                }
 
                 q.c(activity.getApplicationContext());
                 q.a();
@@ -1104,6 +1110,7 @@ public class DesignActivity extends BaseAppCompatActivity implements View.OnClic
                 kC.a(q.assetsPath + File.separator + "fonts");
 
                 ProjectBuilder builder = new ProjectBuilder(this, activity.getApplicationContext(), q);
+                builder.setBuildGraph(buildGraph);
 
                 var fileManager = jC.b(sc_id);
                 var dataManager = jC.a(sc_id);
@@ -1111,7 +1118,9 @@ public class DesignActivity extends BaseAppCompatActivity implements View.OnClic
                 q.a(libraryManager, fileManager, dataManager);
                 builder.buildBuiltInLibraryInformation();
                 q.b(fileManager, dataManager, libraryManager, builder.getBuiltInLibraryManager());
-                q.f();
+                if (buildGraph == null) {
+                    q.f();
+                }
                 q.e();
 
                 builder.maybeExtractAapt2();
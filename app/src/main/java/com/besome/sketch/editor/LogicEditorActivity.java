@@ -747,12 +747,9 @@ public class LogicEditorActivity extends BaseAppCompatActivity implements View.O
                         Glide.with(getContext()).load(fromFile).signature(kC.n()).error(R.drawable.ic_remove_grey600_24dp).into(imageView);
                     }
                 } else {
-                    try {
-                        XmlToSvgConverter xmlToSvgConverter = new XmlToSvgConverter();
-                        xmlToSvgConverter.setImageVectorFromFile(imageView, xmlToSvgConverter.getVectorFullPath(DesignActivity.sc_id, str));
-                    } catch (Exception e) {
-                        imageView.setImageResource(R.drawable.ic_remove_grey600_24dp);
-                    }
+                    XmlToSvgConverter xmlToSvgConverter = new XmlToSvgConverter();
+                    xmlToSvgConverter.setVectorBitmap(imageView, xmlToSvgConverter.getVectorFullPath(DesignActivity.sc_id, str),
+                            () -> imageView.setImageResource(R.drawable.ic_remove_grey600_24dp));
                 }
             }
         }
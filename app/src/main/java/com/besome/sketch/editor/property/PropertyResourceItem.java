@@ -260,12 +260,9 @@ public class PropertyResourceItem extends RelativeLayout implements View.OnClick
                         Glide.with(getContext()).load(fromFile).signature(kC.n()).error(R.drawable.ic_remove_grey600_24dp).into(imageView);
                     }
                 } else {
-                    try {
-                        XmlToSvgConverter xmlToSvgConverter = new XmlToSvgConverter();
-                        xmlToSvgConverter.setImageVectorFromFile(imageView, xmlToSvgConverter.getVectorFullPath(DesignActivity.sc_id, str));
-                    } catch (Exception e) {
-                        imageView.setImageResource(R.drawable.ic_remove_grey600_24dp);
-                    }
+                    XmlToSvgConverter xmlToSvgConverter = new XmlToSvgConverter();
+                    xmlToSvgConverter.setVectorBitmap(imageView, xmlToSvgConverter.getVectorFullPath(DesignActivity.sc_id, str),
+                            () -> imageView.setImageResource(R.drawable.ic_remove_grey600_24dp));
                 }
             }
             imageView.setBackgroundResource(R.drawable.bg_outline);
@@ -2,7 +2,6 @@ package com.besome.sketch.editor.view;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Color;
 import android.graphics.NinePatch;
 import android.graphics.Rect;
@@ -29,7 +28,6 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.content.res.AppCompatResources;
-import androidx.appcompat.widget.AppCompatImageView;
 
 import com.besome.sketch.beans.ImageBean;
 import com.besome.sketch.beans.LayoutBean;
@@ -89,6 +87,7 @@ import pro.sketchware.activities.resourceseditor.components.utils.StringsEditorM
 import pro.sketchware.managers.inject.InjectRootLayoutManager;
 import pro.sketchware.utility.FilePathUtil;
 import pro.sketchware.utility.FileUtil;
+import pro.sketchware.utility.ImageCache;
 import pro.sketchware.utility.InjectAttributeHandler;
 import pro.sketchware.utility.InvokeUtil;
 import pro.sketchware.utility.PropertiesUtil;
@@ -370,6 +369,7 @@ public class ViewPane extends RelativeLayout {
             if (viewBean.getClassInfo().b("FloatingActionButton") && (imageBean = viewBean.image) != null && (str = imageBean.resName) != null && !str.isEmpty()) {
                 try {
                     FloatingActionButton fab = (FloatingActionButton) view;
+                    XmlToSvgConverter.cancelVectorBitmap(fab);
                     if (resourcesManager.h(viewBean.image.resName) == ProjectResourceBean.PROJECT_RES_TYPE_RESOURCE) {
                         int resourceId = getContext().getResources().getIdentifier(viewBean.image.resName, "drawable", getContext().getPackageName());
                         if (resourceId != 0) {
@@ -386,33 +386,13 @@ public class ViewPane extends RelativeLayout {
 
                             if (imagePath.endsWith(".xml")) {
                                 FilePathUtil fpu = new FilePathUtil();
-                                svgUtils.loadScaledSvgIntoImageView(new AppCompatImageView(getContext()) {
-                                    @Override
-                                    public void setImageBitmap(Bitmap bitmap) {
-                                        fab.setImageBitmap(bitmap);
-                                    }
-                                }, fpu.getSvgFullPath(sc_id, viewBean.image.resName), scaleFactor);
+                                fab.setImageBitmap(svgUtils.getScaledSvgBitmap(fpu.getSvgFullPath(sc_id, viewBean.image.resName), scaleFactor));
                             } else {
-                                Bitmap bitmap = BitmapFactory.decodeFile(imagePath);
-                                if (bitmap != null) {
-                                    Bitmap scaledBitmap = Bitmap.createScaledBitmap(
-                                            bitmap,
-                                            bitmap.getWidth() * scaleFactor,
-                                            bitmap.getHeight() * scaleFactor,
-                                            true
-                                    );
-                                    fab.setImageBitmap(scaledBitmap);
-                                }
+                                fab.setImageBitmap(ImageCache.getScaledBitmap(imagePath, scaleFactor));
                             }
                         } else {
                             XmlToSvgConverter xmlToSvgConverter = new XmlToSvgConverter();
-                            ImageView tempImageView = new AppCompatImageView(getContext()) {
-                                @Override
-                                public void setImageDrawable(android.graphics.drawable.Drawable drawable) {
-                                    fab.setImageDrawable(drawable);
-                                }
-                            };
-                            xmlToSvgConverter.setImageVectorFromFile(tempImageView, xmlToSvgConverter.getVectorFullPath(DesignActivity.sc_id, viewBean.image.resName));
+                            xmlToSvgConverter.setVectorBitmap(fab, xmlToSvgConverter.getVectorFullPath(DesignActivity.sc_id, viewBean.image.resName), null);
                         }
                     }
                 } catch (Exception ignored) {
@@ -451,9 +431,8 @@ public class ViewPane extends RelativeLayout {
                             view.setBackground(new BitmapDrawable(getResources(), backgroundRes));
                         }
                     } else {
-                        Bitmap decodeFile2 = BitmapFactory.decodeFile(backgroundRes);
                         int round2 = Math.round(getResources().getDisplayMetrics().density / 2.0f);
-                        view.setBackground(new BitmapDrawable(getResources(), Bitmap.createScaledBitmap(decodeFile2, decodeFile2.getWidth() * round2, decodeFile2.getHeight() * round2, true)));
+                        view.setBackground(new BitmapDrawable(getResources(), ImageCache.getScaledBitmap(backgroundRes, round2)));
                     }
                 }
             } catch (Exception e) {
@@ -490,6 +469,7 @@ public class ViewPane extends RelativeLayout {
             updateEditText((EditText) view, viewBean);
         }
         if (classInfo.a("ImageView")) {
+            XmlToSvgConverter.cancelVectorBitmap((ImageView) view);
             if (resourcesManager.h(viewBean.image.resName) == ProjectResourceBean.PROJECT_RES_TYPE_RESOURCE) {
                 ((ImageView) view).setImageResource(getContext().getResources().getIdentifier(viewBean.image.resName, "drawable", getContext().getPackageName()));
             } else if (viewBean.image.resName.equals("default_image")) {
@@ -504,12 +484,16 @@ public class ViewPane extends RelativeLayout {
                             FilePathUtil fpu = new FilePathUtil();
                             svgUtils.loadScaledSvgIntoImageView((ImageView) view, fpu.getSvgFullPath(sc_id, viewBean.image.resName), round3);
                         } else {
-                            Bitmap decodeFile3 = BitmapFactory.decodeFile(imagelocation);
-                            ((ImageView) view).setImageBitmap(Bitmap.createScaledBitmap(decodeFile3, decodeFile3.getWidth() * round3, decodeFile3.getHeight() * round3, true));
+                            ((ImageView) view).setImageBitmap(ImageCache.getScaledBitmap(imagelocation, round3));
                         }
                     } else {
                         XmlToSvgConverter xmlToSvgConverter = new XmlToSvgConverter();
-                        xmlToSvgConverter.setImageVectorFromFile(((ImageView) view), xmlToSvgConverter.getVectorFullPath(DesignActivity.sc_id, viewBean.image.resName));
+                        String vectorPath = xmlToSvgConverter.getVectorFullPath(DesignActivity.sc_id, viewBean.image.resName);
+                        xmlToSvgConverter.setVectorBitmap((ImageView) view, vectorPath, () -> {
+                            FileUtil.deleteFile(vectorPath);
+                            viewBean.image.resName = "default_image";
+                            ((ImageView) view).setImageResource(R.drawable.default_image);
+                        });
                     }
                 } catch (Exception unused2) {
                     FileUtil.deleteFile(new XmlToSvgConverter().getVectorFullPath(DesignActivity.sc_id, viewBean.image.resName));
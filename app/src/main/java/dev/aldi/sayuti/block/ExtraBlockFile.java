@@ -19,14 +19,20 @@ public class ExtraBlockFile {
     public static final File EXTRA_BLOCKS_PALETTE_FILE = new File(Environment.getExternalStorageDirectory(),
             ".sketchware/resources/block/My Block/palette.json");
 
-    public static ArrayList<HashMap<String, Object>> buildInBlocks = new ArrayList<>();
+    /**
+     * Built-in blocks as of the last {@link #getExtraBlockData()} call. Never modified once published,
+     * only replaced, so that it can be read while code generators on other threads load blocks.
+     */
+    public static volatile ArrayList<HashMap<String, Object>> buildInBlocks = new ArrayList<>();
 
     public static ArrayList<HashMap<String, Object>> getExtraBlockData() {
         ArrayList<HashMap<String, Object>> extraBlocks = new Gson().fromJson(getExtraBlockFile(), Helper.TYPE_MAP_LIST);
 
-        buildInBlocks.clear();
-        BlocksHandler.builtInBlocks(buildInBlocks);
-        extraBlocks.addAll(buildInBlocks);
+        // Collected into a list of this call's own, as Activities may get generated concurrently
+        ArrayList<HashMap<String, Object>> builtInBlocks = new ArrayList<>();
+        BlocksHandler.builtInBlocks(builtInBlocks);
+        buildInBlocks = builtInBlocks;
+        extraBlocks.addAll(builtInBlocks);
 
         return extraBlocks;
     }
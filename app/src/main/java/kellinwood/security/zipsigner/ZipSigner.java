@@ -28,6 +28,7 @@
 
 package kellinwood.security.zipsigner;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.File;
@@ -62,6 +63,10 @@ import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
@@ -87,7 +92,7 @@ import kellinwood.zipio.ZipOutput;
 public class ZipSigner 
 {
 
-    private boolean canceled = false;
+    private volatile boolean canceled = false;
 
     private final ProgressHelper progressHelper = new ProgressHelper();
     private ResourceAdapter resourceAdapter = new DefaultResourceAdapter();
@@ -97,6 +102,10 @@ public class ZipSigner
     private static final String CERT_SF_NAME = "META-INF/CERT.SF";
     private static final String CERT_RSA_NAME = "META-INF/CERT.RSA";
 
+    // Entries are read and digested concurrently, as inflating and hashing them is what takes the most time.
+    private static final int DIGEST_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private static final int BUFFER_SIZE = 65536;
+
     // Files matching this pattern are not copied to the output.
     private static final Pattern stripPattern =
         Pattern.compile("^META-INF/(.*)[.](SF|RSA|DSA)$");
@@ -409,11 +418,6 @@ public class ZipSigner
             main.putValue("Created-By", "1.0 (Android SignApk)");
         }
 
-        // BASE64Encoder base64 = new BASE64Encoder();
-        MessageDigest md = MessageDigest.getInstance("SHA1");
-        byte[] buffer = new byte[512];
-        int num;
-
         // We sort the input entries by name, and add them to the
         // output manifest in sorted order.  We expect that the output
         // map will be deterministic.
@@ -421,38 +425,89 @@ public class ZipSigner
         TreeMap<String, ZioEntry> byName = new TreeMap<String, ZioEntry>();
         byName.putAll( entries);
 
-        boolean debug = log.isDebugEnabled();
-        if (debug) log.debug("Manifest entries:");
-        for (ZioEntry entry: byName.values()) {
-            if (canceled) break;
-            String name = entry.getName();
-            if (debug) log.debug(name);
-            if (!entry.isDirectory() && !name.equals(JarFile.MANIFEST_NAME) &&
-                    !name.equals(CERT_SF_NAME) && !name.equals(CERT_RSA_NAME) &&
-                    (stripPattern == null ||
-                     !stripPattern.matcher(name).matches()))
-            {
+        // Digests are computed concurrently, but added to the manifest in order.
+        List<ZioEntry> toDigest = new ArrayList<ZioEntry>();
+        List<Future<byte[]>> digests = new ArrayList<Future<byte[]>>();
+        ExecutorService executor = Executors.newFixedThreadPool(DIGEST_THREADS);
+        try {
+            boolean debug = log.isDebugEnabled();
+            if (debug) log.debug("Manifest entries:");
+            for (final ZioEntry entry: byName.values()) {
+                String name = entry.getName();
+                if (debug) log.debug(name);
+                if (!entry.isDirectory() && !name.equals(JarFile.MANIFEST_NAME) &&
+                        !name.equals(CERT_SF_NAME) && !name.equals(CERT_RSA_NAME) &&
+                        (stripPattern == null ||
+                         !stripPattern.matcher(name).matches()))
+                {
+                    toDigest.add(entry);
+                    digests.add(executor.submit(() -> digest(entry)));
+                }
+            }
 
+            for (int i = 0; i < toDigest.size(); i++) {
+                if (canceled) break;
+                String name = toDigest.get(i).getName();
                 progressHelper.progress( ProgressEvent.PRORITY_NORMAL, resourceAdapter.getString(ResourceAdapter.Item.GENERATING_MANIFEST));
-                InputStream data = entry.getInputStream();
-                while ((num = data.read(buffer)) > 0) {
-                    md.update(buffer, 0, num);
-                }
-                    
+                byte[] digest = getDigest(digests.get(i));
+                if (digest == null) break; // canceled
+
                 Attributes attr = null;
                 if (input != null) {
                     java.util.jar.Attributes inAttr = input.getAttributes(name); 
                     if (inAttr != null) attr = new Attributes( inAttr);
                 }
                 if (attr == null) attr = new Attributes();
-                attr.putValue("SHA1-Digest", Base64.encode(md.digest()));
+                attr.putValue("SHA1-Digest", Base64.encode(digest));
                 output.getEntries().put(name, attr);
             }
         }
+        finally {
+            executor.shutdownNow();
+        }
 
         return output;
     }
 
+    /** Compute the SHA1 of an entry's data, or return null if signing was canceled. */
+    private byte[] digest(ZioEntry entry)
+        throws IOException, GeneralSecurityException
+    {
+        if (canceled) return null;
+        MessageDigest md = MessageDigest.getInstance("SHA1");
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int num;
+        InputStream data = entry.getInputStream();
+        try {
+            while ((num = data.read(buffer)) > 0) {
+                if (canceled) return null;
+                md.update(buffer, 0, num);
+            }
+        }
+        finally {
+            data.close();
+        }
+        return md.digest();
+    }
+
+    private static byte[] getDigest(Future<byte[]> digest)
+        throws IOException, GeneralSecurityException
+    {
+        try {
+            return digest.get();
+        } catch (ExecutionException x) {
+            Throwable cause = x.getCause();
+            if (cause instanceof IOException) throw (IOException)cause;
+            if (cause instanceof GeneralSecurityException) throw (GeneralSecurityException)cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+            if (cause instanceof Error) throw (Error)cause;
+            throw new RuntimeException(cause.getMessage(), cause);
+        } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while computing digests", x);
+        }
+    }
+
 
     /** Write the signature file to the given output stream. */
     private void generateSignatureFile(Manifest manifest, OutputStream out)
@@ -641,7 +696,7 @@ public class ZipSigner
         throws IOException, GeneralSecurityException
     {
         progressHelper.initProgress();        
-        signZip( zioEntries, new FileOutputStream(outputZipFilename), outputZipFilename);
+        signZip( zioEntries, new BufferedOutputStream(new FileOutputStream(outputZipFilename), BUFFER_SIZE), outputZipFilename);
     }
     
 
@@ -664,7 +719,12 @@ public class ZipSigner
         progressHelper.progress( ProgressEvent.PRORITY_IMPORTANT, resourceAdapter.getString(ResourceAdapter.Item.PARSING_CENTRAL_DIRECTORY));
         
         ZipInput input = ZipInput.read( inputZipFilename);
-        signZip( input.getEntries(), new FileOutputStream( outputZipFilename), outputZipFilename);
+        try {
+            signZip( input.getEntries(), new BufferedOutputStream(new FileOutputStream( outputZipFilename), BUFFER_SIZE), outputZipFilename);
+        }
+        finally {
+            input.close();
+        }
     }
     
     /** Sign the 
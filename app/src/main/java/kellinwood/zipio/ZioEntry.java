@@ -59,6 +59,9 @@ public class ZioEntry implements Cloneable {
     
 
     private static final byte[] alignBytes = new byte[4];
+
+    private static final int COPY_BUFFER_SIZE = 65536;
+    private static final int INFLATE_BUFFER_SIZE = 65536;
     
     private static final Logger log = Logger.getLogger(ZipEntry.class);
 
@@ -222,10 +225,39 @@ public class ZioEntry implements Cloneable {
 
     }
 
+    /** Returns the file position of this entry's data, reading the local header if it's not
+     *  known yet.  Unlike readLocalHeader(), this doesn't move the input's file pointer, so
+     *  entries of the same input may be located and read concurrently.
+     */
+    public long locateData() throws IOException
+    {
+        if (dataPosition >= 0) return dataPosition;
+
+        // Only the signature and the lengths of the name and extra data are needed
+        byte[] header = new byte[30];
+        int count = 0;
+        while (count != header.length) {
+            int numRead = zipInput.read( localHeaderOffset + count, header, count, header.length - count);
+            if (numRead < 0) throw new IllegalStateException( String.format("EOF reached while reading local header of %s", filename));
+            count += numRead;
+        }
+
+        int signature = (header[0] & 0xFF) | (header[1] & 0xFF) << 8 | (header[2] & 0xFF) << 16 | (header[3] & 0xFF) << 24;
+        if (signature != 0x04034b50) {
+            throw new IllegalStateException( String.format("Local header not found at pos=0x%08x, file=%s", localHeaderOffset, filename));
+        }
+        int fileNameLen = (header[26] & 0xFF) | (header[27] & 0xFF) << 8;
+        int extraLen = (header[28] & 0xFF) | (header[29] & 0xFF) << 8;
+
+        dataPosition = localHeaderOffset + 30L + fileNameLen + extraLen;
+        if (log.isDebugEnabled()) log.debug(String.format("Data position: 0x%08x",dataPosition));
+        return dataPosition;
+    }
+
     public void writeLocalEntry( ZipOutput output) throws IOException
     {
         if (data == null && dataPosition < 0 && zipInput != null) {
-            readLocalHeader();
+            locateData();
         }
         
         localHeaderOffset = (int)output.getFilePointer();
@@ -297,7 +329,7 @@ public class ZioEntry implements Cloneable {
             if (debug) log.debug(String.format("Seeking to position 0x%08x", dataPosition));
             zipInput.seek( dataPosition);
             
-            int bufferSize = Math.min( compressedSize, 8096);
+            int bufferSize = Math.min( compressedSize, COPY_BUFFER_SIZE);
             byte[] buffer = new byte[bufferSize];
             long totalCount = 0;
             
@@ -456,7 +488,7 @@ public class ZioEntry implements Cloneable {
             else {
                 // Hacky, inflate using a sequence of input streams that returns 1 byte more than the actual length of the data.  
                 // This extra dummy byte is required by InflaterInputStream when the data doesn't have the header and crc fields (as it is in zip files). 
-                return new InflaterInputStream( new SequenceInputStream(rawis, new ByteArrayInputStream(new byte[1])), new Inflater( true));
+                return new EntryInflaterInputStream( new SequenceInputStream(rawis, new ByteArrayInputStream(new byte[1])));
             }
         }
         
@@ -468,11 +500,29 @@ public class ZioEntry implements Cloneable {
             // an extra "dummy" byte as input. This is required by the ZLIB native library 
             // in order to support certain optimizations.
             dataStream.setReturnDummyByte(true);
-            return new InflaterInputStream( dataStream, new Inflater( true));
+            return new EntryInflaterInputStream( dataStream);
         }
         else return dataStream;
     }
 
+    // Inflates raw entry data, and releases the inflater's native memory when closed.
+    private static class EntryInflaterInputStream extends InflaterInputStream {
+
+        EntryInflaterInputStream( InputStream in) {
+            super( in, new Inflater( true), INFLATE_BUFFER_SIZE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            }
+            finally {
+                inf.end();
+            }
+        }
+    }
+
     // Returns an output stream for writing an entry's data.
     public OutputStream getOutputStream() 
     {
@@ -18,38 +18,36 @@ package kellinwood.zipio;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.RandomAccessFile;
 
 import kellinwood.logging.Logger;
 
-/** Input stream used to read just the data from a zip file entry. */
+/** Input stream used to read just the data from a zip file entry.  Reads are positional,
+ *  so streams of different entries of the same input may be read concurrently.
+ */
 public class ZioEntryInputStream extends InputStream {
 
-    RandomAccessFile raf;
+    private static final Logger staticLog = Logger.getLogger(ZioEntryInputStream.class);
+
+    ZipInput input;
+    long position;
     int size;
     int offset;
     Logger log;
     boolean debug;
     boolean returnDummyByte = false;
     OutputStream monitor = null;
+    private final byte[] singleByte = new byte[1];
     
     public ZioEntryInputStream( ZioEntry entry) throws IOException {
 
-        log = Logger.getLogger(getClass());
+        log = staticLog;
         debug = log.isDebugEnabled();
         offset = 0;
         size = entry.getCompressedSize();
-        raf = entry.getZipInput().in;
-        long dpos = entry.getDataPosition();
-        if (dpos >= 0) {
-            if (debug) log.debug(String.format("Seeking to %d", entry.getDataPosition()));
-            raf.seek( entry.getDataPosition());
-        }
-        else {
-            // seeks to, then reads, the local header, causing the 
-            // file pointer to be positioned at the start of the data.
-            entry.readLocalHeader();
-        }
+        input = entry.getZipInput();
+        // reads the local header if the position of the data isn't known yet
+        position = entry.locateData();
+        if (debug) log.debug(String.format("Reading from %d", position));
         
     }
 
@@ -88,8 +86,9 @@ public class ZioEntryInputStream extends InputStream {
             }
             else return -1;
         }
-        int b = raf.read();
+        int b = input.read( position, singleByte, 0, 1) > 0 ? singleByte[0] & 0xFF : -1;
         if (b >= 0) {
+            position += 1;
             if (monitor != null) monitor.write(b);
             if (debug) log.debug("Read 1 byte");
             offset += 1;
@@ -113,8 +112,9 @@ public class ZioEntryInputStream extends InputStream {
             else return -1;
         }        
         int numToRead = Math.min( len, available());
-        int numRead = raf.read(b, off, numToRead);
+        int numRead = input.read( position, b, off, numToRead);
         if (numRead > 0) {
+            position += numRead;
             if (monitor != null) monitor.write(b, off, numRead);
             offset += numRead;
         }
@@ -129,8 +129,9 @@ public class ZioEntryInputStream extends InputStream {
 
     @Override
     public long skip(long n) throws IOException {
-        long numToSkip = Math.min( n, available());
-        raf.seek( raf.getFilePointer() + numToSkip);
+        long numToSkip = Math.min( n, size - offset);
+        position += numToSkip;
+        offset += (int)numToSkip;
         if (debug) log.debug(String.format("Skipped %d bytes", numToSkip));                
         return numToSkip;
     }
@@ -18,6 +18,7 @@ package kellinwood.zipio;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -200,18 +201,14 @@ public class ZipInput
     public String readString( int length) throws IOException {
 
         byte[] buffer = new byte[length];
-        for (int i = 0; i < length; i++) {
-            buffer[i] = in.readByte();
-        }
+        in.readFully( buffer);
         return new String(buffer);
     }
 
     public byte[] readBytes( int length) throws IOException {
 
         byte[] buffer = new byte[length];
-        for (int i = 0; i < length; i++) {
-            buffer[i] = in.readByte();
-        }
+        in.readFully( buffer);
         return buffer;
     }
 
@@ -219,6 +216,13 @@ public class ZipInput
         return in.read( b, offset, length);
     }
 
+    /** Reads from the given position without moving the file pointer, so it's safe to call from
+     *  several threads at once, e.g., to read different entries concurrently.
+     */
+    public int read( long position, byte[] b, int offset, int length) throws IOException {
+        return in.getChannel().read( ByteBuffer.wrap( b, offset, length), position);
+    }
+
 }
 
 
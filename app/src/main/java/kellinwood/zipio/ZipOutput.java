@@ -15,6 +15,7 @@
  */
 package kellinwood.zipio;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -58,7 +59,7 @@ public class ZipOutput
     private void init( File ofile) throws IOException
     {
         if (ofile.exists()) ofile.delete();
-        out = new FileOutputStream( ofile);
+        out = new BufferedOutputStream( new FileOutputStream( ofile), 65536);
         if (log.isDebugEnabled()) ZipListingHelper.listHeader( log);
         
     }
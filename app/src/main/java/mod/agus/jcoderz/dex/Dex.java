@@ -24,7 +24,6 @@ import mod.agus.jcoderz.dex.util.ByteOutput;
 import mod.agus.jcoderz.dex.util.FileUtils;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -32,6 +31,8 @@ import java.io.OutputStream;
 import java.io.UTFDataFormatException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.AbstractList;
@@ -102,23 +103,33 @@ public final class Dex {
 
     /**
      * Creates a new dex buffer from the dex file {@code file}.
+     *
+     * <p>A {@code .dex} file is memory-mapped read-only instead of being read
+     * onto the heap, so that sections are read straight from the file's pages.
+     * The file must not be modified while this dex is in use.
      */
     public Dex(File file) throws IOException {
         if (FileUtils.hasArchiveSuffix(file.getName())) {
-            ZipFile zipFile = new ZipFile(file);
-            ZipEntry entry = zipFile.getEntry(mod.agus.jcoderz.dex.DexFormat.DEX_IN_JAR_NAME);
-            if (entry != null) {
+            try (ZipFile zipFile = new ZipFile(file)) {
+                ZipEntry entry = zipFile.getEntry(mod.agus.jcoderz.dex.DexFormat.DEX_IN_JAR_NAME);
+                if (entry == null) {
+                    throw new DexException("Expected " + DexFormat.DEX_IN_JAR_NAME + " in " + file);
+                }
                 try (InputStream inputStream = zipFile.getInputStream(entry)) {
-                    loadFrom(inputStream);
+                    loadFrom(inputStream, entry.getSize());
                 }
-                zipFile.close();
-            } else {
-                throw new DexException("Expected " + DexFormat.DEX_IN_JAR_NAME + " in " + file);
             }
         } else if (file.getName().endsWith(".dex")) {
-            try (InputStream inputStream = new FileInputStream(file)) {
-                loadFrom(inputStream);
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new DexException("dex file too large: " + file);
+                }
+                // The mapping stays valid after the channel is closed
+                this.data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
             }
+            this.data.order(ByteOrder.LITTLE_ENDIAN);
+            this.tableOfContents.readFrom(this);
         } else {
             throw new DexException("unknown output extension: " + file);
         }
@@ -128,15 +139,39 @@ public final class Dex {
      * It is the caller's responsibility to close {@code in}.
      */
     private void loadFrom(InputStream in) throws IOException {
-        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
-        byte[] buffer = new byte[8192];
+        loadFrom(in, -1);
+    }
 
-        int count;
-        while ((count = in.read(buffer)) != -1) {
-            bytesOut.write(buffer, 0, count);
+    /**
+     * It is the caller's responsibility to close {@code in}.
+     *
+     * @param size the number of bytes in {@code in} if known, or -1. A known
+     *     size is read directly into the dex's buffer, without copying it.
+     */
+    private void loadFrom(InputStream in, long size) throws IOException {
+        byte[] bytes;
+        if (size >= 0 && size <= Integer.MAX_VALUE) {
+            bytes = new byte[(int) size];
+            int read = 0;
+            while (read < bytes.length) {
+                int count = in.read(bytes, read, bytes.length - read);
+                if (count == -1) {
+                    throw new DexException("Unexpected end of dex after " + read + " of " + size + " bytes");
+                }
+                read += count;
+            }
+        } else {
+            ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                bytesOut.write(buffer, 0, count);
+            }
+            bytes = bytesOut.toByteArray();
         }
 
-        this.data = ByteBuffer.wrap(bytesOut.toByteArray());
+        this.data = ByteBuffer.wrap(bytes);
         this.data.order(ByteOrder.LITTLE_ENDIAN);
         this.tableOfContents.readFrom(this);
     }
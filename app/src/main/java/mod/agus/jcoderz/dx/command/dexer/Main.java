@@ -223,6 +223,18 @@ public class Main {
 
     private Set<String> classesInMainDex = null;
 
+    /** Lock guarding {@link #runningCount} and {@link #clearPending}. */
+    private static final Object internTablesLock = new Object();
+
+    /** Number of runs in flight, which share the intern tables. */
+    private static int runningCount = 0;
+
+    /**
+     * Whether the intern tables were asked to be cleared while runs were
+     * in flight, and are to be cleared once the last one finishes.
+     */
+    private static boolean clearPending = false;
+
     private List<byte[]> dexOutputArrays = new ArrayList<byte[]>();
 
     private OutputStreamWriter humanOutWriter = null;
@@ -249,11 +261,29 @@ public class Main {
         }
     }
 
+    /**
+     * Clears the intern tables to free their memory. The tables are shared
+     * by all runs and are safe to use concurrently, but instances interned
+     * are compared by identity, so clearing them while another run is in
+     * flight would break it. If any run is, clearing is deferred until the
+     * last one finishes.
+     */
     public static void clearInternTables() {
+        synchronized (internTablesLock) {
+            if (runningCount > 0) {
+                clearPending = true;
+            } else {
+                doClearInternTables();
+            }
+        }
+    }
+
+    private static void doClearInternTables() {
         Prototype.clearInternTable();
         RegisterSpec.clearInternTable();
         CstType.clearInternTable();
         Type.clearInternTable();
+        clearPending = false;
     }
 
     /**
@@ -265,7 +295,26 @@ public class Main {
         return new Main(new DxContext()).runDx(arguments);
     }
 
+    /**
+     * Runs the conversion. Several instances may run at the same time,
+     * see {@link #clearInternTables()}.
+     */
     public int runDx(Arguments arguments) throws IOException {
+        synchronized (internTablesLock) {
+            runningCount++;
+        }
+        try {
+            return runDxInternal(arguments);
+        } finally {
+            synchronized (internTablesLock) {
+                if (--runningCount == 0 && clearPending) {
+                    doClearInternTables();
+                }
+            }
+        }
+    }
+
+    private int runDxInternal(Arguments arguments) throws IOException {
 
         // Reset the error count to start fresh.
         errors.set(0);
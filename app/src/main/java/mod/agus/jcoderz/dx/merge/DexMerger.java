@@ -36,6 +36,10 @@ import mod.agus.jcoderz.dx.command.dexer.DxContext;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Combine two dex files into one.
@@ -88,6 +92,16 @@ public final class DexMerger {
     /** minimum number of wasted bytes before it's worthwhile to compact the result */
     private int compactWasteThreshold = 1024 * 1024; // 1MiB
 
+    /** number of threads to read and transform the input with */
+    private int threads = 1;
+
+    /** {@code null-ok;} runs reading and transforming while merging, if {@code threads > 1} */
+    private ExecutorService executor;
+
+    /** instruction transformers of {@link #executor}'s threads */
+    private final ThreadLocal<InstructionTransformer> instructionTransformers =
+            ThreadLocal.withInitial(InstructionTransformer::new);
+
     public DexMerger(Dex[] dexes, CollisionPolicy collisionPolicy, mod.agus.jcoderz.dx.command.dexer.DxContext context)
             throws IOException {
         this(dexes, collisionPolicy, context, new WriterSizes(dexes));
@@ -157,6 +171,15 @@ public final class DexMerger {
         this.compactWasteThreshold = compactWasteThreshold;
     }
 
+    /**
+     * Sets how many threads read IDs and transform classes' code of the
+     * input. The output is still written in order by a single thread, so
+     * it's byte-identical for any number of threads. Defaults to 1.
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
     private Dex mergeDexes() throws IOException {
         mergeStringIds();
         mergeTypeIds();
@@ -195,23 +218,36 @@ public final class DexMerger {
         }
 
         long start = System.nanoTime();
-        Dex result = mergeDexes();
+        Dex result;
+        if (threads > 1) {
+            executor = Executors.newFixedThreadPool(threads);
+        }
+        try {
+            result = mergeDexes();
 
-        /*
-         * We use pessimistic sizes when merging dex files. If those sizes
-         * result in too many bytes wasted, compact the result. To compact,
-         * simply merge the result with itself.
-         */
-        WriterSizes compactedSizes = new WriterSizes(this);
-        int wastedByteCount = writerSizes.size() - compactedSizes.size();
-        if (wastedByteCount >  + compactWasteThreshold) {
-            DexMerger compacter = new DexMerger(
-                    new Dex[] {dexOut, new Dex(0)}, CollisionPolicy.FAIL, context, compactedSizes);
-            result = compacter.mergeDexes();
-            context.out.printf("Result compacted from %.1fKiB to %.1fKiB to save %.1fKiB%n",
-                    dexOut.getLength() / 1024f,
-                    result.getLength() / 1024f,
-                    wastedByteCount / 1024f);
+            /*
+             * We use pessimistic sizes when merging dex files. If those sizes
+             * result in too many bytes wasted, compact the result. To compact,
+             * simply merge the result with itself.
+             */
+            WriterSizes compactedSizes = new WriterSizes(this);
+            int wastedByteCount = writerSizes.size() - compactedSizes.size();
+            if (wastedByteCount >  + compactWasteThreshold) {
+                DexMerger compacter = new DexMerger(
+                        new Dex[] {dexOut, new Dex(0)}, CollisionPolicy.FAIL, context, compactedSizes);
+                compacter.threads = threads;
+                compacter.executor = executor;
+                result = compacter.mergeDexes();
+                context.out.printf("Result compacted from %.1fKiB to %.1fKiB to save %.1fKiB%n",
+                        dexOut.getLength() / 1024f,
+                        result.getLength() / 1024f,
+                        wastedByteCount / 1024f);
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
         }
 
         long elapsed = System.nanoTime() - start;
@@ -242,13 +278,20 @@ public final class DexMerger {
 
         /**
          * Merges already-sorted sections, reading one value from each dex into memory
-         * at a time.
+         * at a time. With {@link #executor}, all values are read ahead instead, all
+         * dexes at once.
          */
         public final void mergeSorted() {
-            TableOfContents.Section[] sections = new TableOfContents.Section[dexes.length];
-            Dex.Section[] dexSections = new Dex.Section[dexes.length];
-            int[] offsets = new int[dexes.length];
-            int[] indexes = new int[dexes.length];
+            List<DexValues> dexValues = new ArrayList<DexValues>(dexes.length);
+            for (int i = 0; i < dexes.length; i++) {
+                dexValues.add(new DexValues(i));
+            }
+            if (executor != null) {
+                forEachDex(dex -> {
+                    dexValues.get(dex).readAhead();
+                    return null;
+                });
+            }
 
             // values contains one value from each dex, sorted for fast retrieval of
             // the smallest value. The list associated with a value has the indexes
@@ -256,11 +299,8 @@ public final class DexMerger {
             TreeMap<T, List<Integer>> values = new TreeMap<T, List<Integer>>();
 
             for (int i = 0; i < dexes.length; i++) {
-                sections[i] = getSection(dexes[i].getTableOfContents());
-                dexSections[i] = sections[i].exists() ? dexes[i].open(sections[i].off) : null;
                 // Fill in values with the first value of each dex.
-                offsets[i] = readIntoMap(
-                        dexSections[i], sections[i], indexMaps[i], indexes[i], values, i);
+                readIntoMap(dexValues.get(i), values);
             }
             if (values.isEmpty()) {
                 getSection(contentsOut).off = 0;
@@ -273,10 +313,10 @@ public final class DexMerger {
             while (!values.isEmpty()) {
                 Map.Entry<T, List<Integer>> first = values.pollFirstEntry();
                 for (Integer dex : first.getValue()) {
-                    updateIndex(offsets[dex], indexMaps[dex], indexes[dex]++, outCount);
+                    DexValues polled = dexValues.get(dex);
+                    updateIndex(polled.offset, indexMaps[dex], polled.index - 1, outCount);
                     // Fetch the next value of the dexes we just polled out
-                    offsets[dex] = readIntoMap(dexSections[dex], sections[dex],
-                            indexMaps[dex], indexes[dex], values, dex);
+                    readIntoMap(polled, values);
                 }
                 write(first.getKey());
                 outCount++;
@@ -285,19 +325,16 @@ public final class DexMerger {
             getSection(contentsOut).size = outCount;
         }
 
-        private int readIntoMap(Dex.Section in, TableOfContents.Section section, mod.agus.jcoderz.dx.merge.IndexMap indexMap,
-                                int index, TreeMap<T, List<Integer>> values, int dex) {
-            int offset = in != null ? in.getPosition() : -1;
-            if (index < section.size) {
-                T v = read(in, indexMap, index);
+        private void readIntoMap(DexValues dexValues, TreeMap<T, List<Integer>> values) {
+            if (dexValues.hasNext()) {
+                T v = dexValues.next();
                 List<Integer> l = values.get(v);
                 if (l == null) {
                     l = new ArrayList<Integer>();
                     values.put(v, l);
                 }
-                l.add(dex);
+                l.add(dexValues.dex);
             }
-            return offset;
         }
 
         /**
@@ -308,8 +345,8 @@ public final class DexMerger {
             getSection(contentsOut).off = out.getPosition();
 
             List<UnsortedValue> all = new ArrayList<UnsortedValue>();
-            for (int i = 0; i < dexes.length; i++) {
-                all.addAll(readUnsortedValues(dexes[i], indexMaps[i]));
+            for (List<UnsortedValue> values : forEachDex(dex -> readUnsortedValues(dexes[dex], indexMaps[dex]))) {
+                all.addAll(values);
             }
             if (all.isEmpty()) {
                 getSection(contentsOut).off = 0;
@@ -353,6 +390,52 @@ public final class DexMerger {
 
         abstract TableOfContents.Section getSection(TableOfContents tableOfContents);
         abstract T read(Dex.Section in, mod.agus.jcoderz.dx.merge.IndexMap indexMap, int index);
+
+        /**
+         * The values of a dex's sorted section, read one at a time or all ahead.
+         */
+        final class DexValues {
+            final int dex;
+            private final int size;
+            private final Dex.Section in;
+            private List<T> readAhead;
+            private int[] readAheadOffsets;
+            /** index of the next value */
+            int index;
+            /** offset of the value last returned by {@link #next()} */
+            int offset = -1;
+
+            DexValues(int dex) {
+                this.dex = dex;
+                TableOfContents.Section section = getSection(dexes[dex].getTableOfContents());
+                size = section.size;
+                in = section.exists() ? dexes[dex].open(section.off) : null;
+            }
+
+            void readAhead() {
+                List<T> values = new ArrayList<T>(size);
+                int[] offsets = new int[size];
+                for (int i = 0; i < size; i++) {
+                    offsets[i] = in.getPosition();
+                    values.add(read(in, indexMaps[dex], i));
+                }
+                readAhead = values;
+                readAheadOffsets = offsets;
+            }
+
+            boolean hasNext() {
+                return index < size;
+            }
+
+            T next() {
+                if (readAhead != null) {
+                    offset = readAheadOffsets[index];
+                    return readAhead.get(index++);
+                }
+                offset = in.getPosition();
+                return read(in, indexMaps[dex], index++);
+            }
+        }
         abstract void updateIndex(int offset, mod.agus.jcoderz.dx.merge.IndexMap indexMap, int oldIndex, int newIndex);
         abstract void write(T value);
 
@@ -599,9 +682,117 @@ public final class DexMerger {
         contentsOut.classDefs.off = idsDefsOut.getPosition();
         contentsOut.classDefs.size = types.length;
 
-        for (SortableType type : types) {
+        if (executor == null) {
+            for (SortableType type : types) {
+                Dex in = type.getDex();
+                transformClassDef(in, type.getClassDef(), type.getIndexMap(), null);
+            }
+            return;
+        }
+
+        // Read and transform classes ahead, while writing them in order
+        int readAheadCount = threads * 16;
+        ArrayDeque<Future<TransformedClass>> readAhead = new ArrayDeque<Future<TransformedClass>>();
+        int nextToRead = 0;
+        for (int i = 0; i < types.length; i++) {
+            while (nextToRead < types.length && nextToRead <= i + readAheadCount) {
+                SortableType type = types[nextToRead++];
+                readAhead.add(executor.submit(() -> new TransformedClass(type)));
+            }
+            SortableType type = types[i];
+            transformClassDef(type.getDex(), type.getClassDef(), type.getIndexMap(),
+                    getResult(readAhead.remove()));
+        }
+    }
+
+    /**
+     * A class's data and code, read and with instructions transformed ahead of
+     * writing them.
+     */
+    private final class TransformedClass {
+        /** {@code null-ok;} the class's data, if it has any */
+        private final ClassData classData;
+        /** code of the class's direct and then virtual methods that have code */
+        private final Code[] codes;
+        private final short[][] instructions;
+        /** index of the code to write next */
+        private int next;
+
+        TransformedClass(SortableType type) {
             Dex in = type.getDex();
-            transformClassDef(in, type.getClassDef(), type.getIndexMap());
+            ClassDef classDef = type.getClassDef();
+            if (classDef.getClassDataOffset() == 0) {
+                classData = null;
+                codes = new Code[0];
+                instructions = new short[0][];
+                return;
+            }
+
+            classData = in.readClassData(classDef);
+            List<ClassData.Method> methods = new ArrayList<ClassData.Method>();
+            for (ClassData.Method method : classData.getDirectMethods()) {
+                if (method.getCodeOffset() != 0) methods.add(method);
+            }
+            for (ClassData.Method method : classData.getVirtualMethods()) {
+                if (method.getCodeOffset() != 0) methods.add(method);
+            }
+
+            InstructionTransformer transformer = instructionTransformers.get();
+            codes = new Code[methods.size()];
+            instructions = new short[codes.length][];
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = in.readCode(methods.get(i));
+                instructions[i] = transformer.transform(type.getIndexMap(), codes[i].getInstructions());
+            }
+        }
+    }
+
+    /**
+     * Runs {@code task} for every dex, on {@link #executor} if there is one.
+     *
+     * @return the results, in order of the dexes
+     */
+    private <T> List<T> forEachDex(DexTask<T> task) {
+        List<T> results = new ArrayList<T>(dexes.length);
+        if (executor == null || dexes.length < 2) {
+            for (int i = 0; i < dexes.length; i++) {
+                results.add(task.run(i));
+            }
+            return results;
+        }
+
+        List<Future<T>> futures = new ArrayList<Future<T>>(dexes.length);
+        for (int i = 0; i < dexes.length; i++) {
+            int dex = i;
+            futures.add(executor.submit(() -> task.run(dex)));
+        }
+        for (Future<T> future : futures) {
+            results.add(getResult(future));
+        }
+        return results;
+    }
+
+    private interface DexTask<T> {
+        T run(int dex);
+    }
+
+    /**
+     * Waits for {@code future}, and rethrows what it threw, if anything.
+     */
+    private static <T> T getResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new DexException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DexException(e);
         }
     }
 
@@ -728,7 +919,8 @@ public final class DexMerger {
      * Reads a class_def_item beginning at {@code in} and writes the index and
      * data.
      */
-    private void transformClassDef(Dex in, ClassDef classDef, mod.agus.jcoderz.dx.merge.IndexMap indexMap) {
+    private void transformClassDef(Dex in, ClassDef classDef, mod.agus.jcoderz.dx.merge.IndexMap indexMap,
+            TransformedClass transformed) {
         idsDefsOut.assertFourByteAligned();
         idsDefsOut.writeInt(classDef.getTypeIndex());
         idsDefsOut.writeInt(classDef.getAccessFlags());
@@ -746,8 +938,8 @@ public final class DexMerger {
             idsDefsOut.writeInt(0);
         } else {
             idsDefsOut.writeInt(classDataOut.getPosition());
-            ClassData classData = in.readClassData(classDef);
-            transformClassData(in, classData, indexMap);
+            ClassData classData = transformed != null ? transformed.classData : in.readClassData(classDef);
+            transformClassData(in, classData, indexMap, transformed);
         }
 
         int staticValuesOff = classDef.getStaticValuesOffset();
@@ -835,7 +1027,8 @@ public final class DexMerger {
         }
     }
 
-    private void transformClassData(Dex in, ClassData classData, mod.agus.jcoderz.dx.merge.IndexMap indexMap) {
+    private void transformClassData(Dex in, ClassData classData, mod.agus.jcoderz.dx.merge.IndexMap indexMap,
+            TransformedClass transformed) {
         contentsOut.classDatas.size++;
 
         ClassData.Field[] staticFields = classData.getStaticFields();
@@ -850,8 +1043,8 @@ public final class DexMerger {
 
         transformFields(indexMap, staticFields);
         transformFields(indexMap, instanceFields);
-        transformMethods(in, indexMap, directMethods);
-        transformMethods(in, indexMap, virtualMethods);
+        transformMethods(in, indexMap, directMethods, transformed);
+        transformMethods(in, indexMap, virtualMethods, transformed);
     }
 
     private void transformFields(mod.agus.jcoderz.dx.merge.IndexMap indexMap, ClassData.Field[] fields) {
@@ -864,7 +1057,8 @@ public final class DexMerger {
         }
     }
 
-    private void transformMethods(Dex in, mod.agus.jcoderz.dx.merge.IndexMap indexMap, ClassData.Method[] methods) {
+    private void transformMethods(Dex in, mod.agus.jcoderz.dx.merge.IndexMap indexMap, ClassData.Method[] methods,
+            TransformedClass transformed) {
         int lastOutMethodIndex = 0;
         for (ClassData.Method method : methods) {
             int outMethodIndex = indexMap.adjustMethod(method.getMethodIndex());
@@ -878,12 +1072,21 @@ public final class DexMerger {
             } else {
                 codeOut.alignToFourBytesWithZeroFill();
                 classDataOut.writeUleb128(codeOut.getPosition());
-                transformCode(in, in.readCode(method), indexMap);
+                if (transformed != null) {
+                    int next = transformed.next++;
+                    transformCode(in, transformed.codes[next], transformed.instructions[next], indexMap);
+                } else {
+                    transformCode(in, in.readCode(method), null, indexMap);
+                }
             }
         }
     }
 
-    private void transformCode(Dex in, Code code, mod.agus.jcoderz.dx.merge.IndexMap indexMap) {
+    /**
+     * @param transformedInstructions {@code null-ok;} the code's instructions if already transformed
+     */
+    private void transformCode(Dex in, Code code, short[] transformedInstructions,
+            mod.agus.jcoderz.dx.merge.IndexMap indexMap) {
         contentsOut.codes.size++;
         codeOut.assertFourByteAligned();
 
@@ -903,8 +1106,9 @@ public final class DexMerger {
             codeOut.writeInt(0);
         }
 
-        short[] instructions = code.getInstructions();
-        short[] newInstructions = instructionTransformer.transform(indexMap, instructions);
+        short[] newInstructions = transformedInstructions != null
+                ? transformedInstructions
+                : instructionTransformer.transform(indexMap, code.getInstructions());
         codeOut.writeInt(newInstructions.length);
         codeOut.write(newInstructions);
 
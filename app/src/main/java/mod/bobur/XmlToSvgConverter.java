@@ -2,6 +2,7 @@ package mod.bobur;
 
 import static com.besome.sketch.design.DesignActivity.sc_id;
 
+import android.graphics.Bitmap;
 import android.graphics.Picture;
 import android.graphics.drawable.PictureDrawable;
 import android.net.Uri;
@@ -18,20 +19,26 @@ import java.io.File;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 
 import a.a.a.wq;
+import pro.sketchware.R;
 import pro.sketchware.SketchApplication;
 import pro.sketchware.activities.resourceseditor.components.utils.ColorsEditorManager;
 import pro.sketchware.utility.FileUtil;
+import pro.sketchware.utility.ImageCache;
 
 /**
  * This class is converts XML vector drawables to SVG (Only vector drawables are supported)
  **/
 
 public class XmlToSvgConverter {
+    private static final ExecutorService vectorRenderer = Executors.newSingleThreadExecutor();
+    private static final Object NO_REQUEST = new Object();
 
     public String xml2svg(String xmlContent) {
         try {
@@ -238,6 +245,88 @@ public class XmlToSvgConverter {
         Picture picture = svg.renderToPicture();
         imageView.setImageDrawable(new PictureDrawable(picture));
     }
+
+    /**
+     * Renders a vector drawable into an ImageView in the background, at the size the ImageView shows it at,
+     * and again whenever that size changes. Until the ImageView got laid out, the vector drawable is rendered
+     * at its own size.
+     *
+     * @param onError Run on the UI thread if the vector drawable couldn't be rendered, and the ImageView
+     *                hasn't been given another one since
+     */
+    public void setVectorBitmap(ImageView imageView, String filePath, Runnable onError) {
+        boolean firstRequest = imageView.getTag(R.id.tag_vector_request) == null;
+        VectorRequest request = new VectorRequest(filePath, getColorsFiles(), onError);
+        imageView.setTag(R.id.tag_vector_request, request);
+        if (firstRequest) {
+            imageView.addOnLayoutChangeListener((v, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) -> {
+                if (right - left != oldRight - oldLeft || bottom - top != oldBottom - oldTop) {
+                    Object current = v.getTag(R.id.tag_vector_request);
+                    if (current instanceof VectorRequest) {
+                        render((ImageView) v, (VectorRequest) current);
+                    }
+                }
+            });
+        }
+        render(imageView, request);
+    }
+
+    /**
+     * Keeps a vector drawable that's still being rendered from replacing what the ImageView shows now.
+     */
+    public static void cancelVectorBitmap(ImageView imageView) {
+        if (imageView.getTag(R.id.tag_vector_request) != null) {
+            imageView.setTag(R.id.tag_vector_request, NO_REQUEST);
+        }
+    }
+
+    private void render(ImageView imageView, VectorRequest request) {
+        int width = Math.max(0, imageView.getWidth() - imageView.getPaddingLeft() - imageView.getPaddingRight());
+        int height = Math.max(0, imageView.getHeight() - imageView.getPaddingTop() - imageView.getPaddingBottom());
+        vectorRenderer.execute(() -> {
+            Bitmap bitmap;
+            try {
+                bitmap = getVectorBitmap(request.filePath, width, height, request.colorsFiles);
+            } catch (Exception e) {
+                bitmap = null;
+            }
+            Bitmap rendered = bitmap;
+            imageView.post(() -> {
+                if (imageView.getTag(R.id.tag_vector_request) != request) return;
+                if (rendered != null) {
+                    imageView.setImageBitmap(rendered);
+                } else if (request.onError != null) {
+                    request.onError.run();
+                }
+            });
+        });
+    }
+
+    /**
+     * @param width  Width to render the vector drawable at, or 0 to render it at its own size
+     * @param height Height to render the vector drawable at, or 0 to render it at its own size
+     * @return The vector drawable rendered to cover the size, cached until it or the project's colors change
+     */
+    public Bitmap getVectorBitmap(String filePath, int width, int height) throws Exception {
+        return getVectorBitmap(filePath, width, height, getColorsFiles());
+    }
+
+    private Bitmap getVectorBitmap(String filePath, int width, int height, File[] colorsFiles) throws Exception {
+        File[] files = new File[colorsFiles.length + 1];
+        files[0] = new File(filePath);
+        System.arraycopy(colorsFiles, 0, files, 1, colorsFiles.length);
+        return ImageCache.getPictureBitmap("vector", width, height,
+                () -> SVG.getFromString(xml2svg(FileUtil.readFile(filePath))).renderToPicture(),
+                files);
+    }
+
+    private File[] getColorsFiles() {
+        return new File[]{
+                new File(wq.b(sc_id) + "/files/resource/values/colors.xml"),
+                new File(wq.d(sc_id) + "/app/src/main/res/values/colors.xml")
+        };
+    }
+
     private int dpToPx(int dp) {
         return (int) (dp * SketchApplication.getContext()
                 .getResources()
@@ -247,4 +336,16 @@ public class XmlToSvgConverter {
     private String dpToPx(String dp) {
         return String.valueOf(dpToPx(Integer.parseInt(dp.replaceAll("[^0-9]", ""))));
     }
+
+    private static class VectorRequest {
+        private final String filePath;
+        private final File[] colorsFiles;
+        private final Runnable onError;
+
+        private VectorRequest(String filePath, File[] colorsFiles, Runnable onError) {
+            this.filePath = filePath;
+            this.colorsFiles = colorsFiles;
+            this.onError = onError;
+        }
+    }
 }
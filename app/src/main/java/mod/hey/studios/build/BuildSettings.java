@@ -1,12 +1,19 @@
 package mod.hey.studios.build;
 
+import android.app.ActivityManager;
+import android.content.Context;
+
 import java.io.Serializable;
 
 import mod.hey.studios.project.ProjectSettings;
+import mod.jbk.util.LogUtil;
+import pro.sketchware.SketchApplication;
 import pro.sketchware.utility.FileUtil;
 
 public class BuildSettings extends ProjectSettings implements Serializable {
 
+    private static final String TAG = "BuildSettings";
+
     public static final String SETTING_ANDROID_JAR_PATH = "android_jar";
     public static final String SETTING_CLASSPATH = "classpath";
     public static final String SETTING_DEXER = "dexer";
@@ -14,6 +21,11 @@ public class BuildSettings extends ProjectSettings implements Serializable {
     public static final String SETTING_NO_HTTP_LEGACY = "no_http_legacy";
     public static final String SETTING_NO_WARNINGS = "no_warn";
     public static final String SETTING_ENABLE_LOGCAT = "enable_logcat";
+    public static final String SETTING_INCREMENTAL_BUILD = "incremental_build";
+    /**
+     * How many threads Dx may use to dex classes. Defaults to {@link #getDefaultDxThreads()}.
+     */
+    public static final String SETTING_DX_THREADS = "dx_threads";
 
     public static final String SETTING_DEXER_D8 = "D8";
     public static final String SETTING_DEXER_DX = "Dx";
@@ -23,10 +35,68 @@ public class BuildSettings extends ProjectSettings implements Serializable {
     public static final String SETTING_JAVA_VERSION_10 = "10";
     public static final String SETTING_JAVA_VERSION_11 = "11";
 
+    /**
+     * Most threads Dx uses by default, as every thread holds the classes it dexes in memory
+     */
+    private static final int MAX_DEFAULT_DX_THREADS = 4;
+    /**
+     * Most threads the DEX merger uses, as every thread holds classes read ahead from the input
+     */
+    private static final int MAX_DEX_MERGER_THREADS = 4;
+
     public BuildSettings(String sc_id) {
         super(sc_id);
     }
 
+    /**
+     * @return The configured number of Dx threads. Returns {@link #getDefaultDxThreads()} if none or an invalid value was set.
+     * @see #SETTING_DX_THREADS
+     */
+    public int getDxThreads() {
+        String value = getValue(SETTING_DX_THREADS, "").trim();
+        if (value.isEmpty()) {
+            return getDefaultDxThreads();
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            int defaultThreads = getDefaultDxThreads();
+            LogUtil.e(TAG, "Failed to parse the number of Dx threads! Defaulting to " + defaultThreads, e);
+            return defaultThreads;
+        }
+    }
+
+    /**
+     * @return How many threads Dx uses if not configured: one per processor, but at most
+     * {@value #MAX_DEFAULT_DX_THREADS}, and only 1 on low-RAM devices
+     */
+    public static int getDefaultDxThreads() {
+        return getDefaultThreads(MAX_DEFAULT_DX_THREADS);
+    }
+
+    /**
+     * @return How many threads the DEX merger uses: one per processor, but at most {@value #MAX_DEX_MERGER_THREADS},
+     * and only 1 on low-RAM devices. Its output is the same for any number of threads.
+     */
+    public static int getDexMergerThreads() {
+        return getDefaultThreads(MAX_DEX_MERGER_THREADS);
+    }
+
+    /**
+     * @return One thread per processor, but at most <code>max</code>, and only 1 on low-RAM devices,
+     * where every thread's memory counts
+     */
+    private static int getDefaultThreads(int max) {
+        Context context = SketchApplication.getContext();
+        if (context != null) {
+            ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+            if (activityManager != null && activityManager.isLowRamDevice()) {
+                return 1;
+            }
+        }
+        return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), max));
+    }
+
     @Override
     public String getPath() {
         return FileUtil.getExternalStorageDir() + "/.sketchware/data/" + sc_id + "/build_config";
@@ -12,7 +12,9 @@ import com.google.gson.reflect.TypeToken;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import dev.aldi.sayuti.block.ExtraBlockFile;
 import mod.agus.jcoderz.editor.manage.block.palette.PaletteSelector;
@@ -24,25 +26,80 @@ import pro.sketchware.utility.FileUtil;
 import pro.sketchware.utility.SketchwareUtil;
 
 /**
- * An optimized Custom Blocks loader.
+ * An optimized Custom Blocks loader. Blocks are indexed by name, and get reloaded when their files
+ * changed as of the last {@link #reloadIfChanged(String)}, which callers make once per batch of lookups.
+ * It is safe to use from multiple threads.
  *
  * @since v6.3.0
  */
 public class BlockLoader {
 
-    private static ArrayList<ExtraBlockInfo> blocks;
+    /**
+     * Custom Blocks by name, along with the state of the files they were loaded from.
+     */
+    private static volatile BlockIndex blocks;
+    /**
+     * Projects' own Custom Blocks by name, by sc_id.
+     */
+    private static final ConcurrentHashMap<String, BlockIndex> projectBlocks = new ConcurrentHashMap<>();
 
     static {
         loadCustomBlocks();
     }
 
+    /**
+     * Reloads Custom Blocks, and a project's own ones, if their files changed since they were loaded.
+     * Lookups don't look at the files themselves, so call this before a batch of them, such as generating
+     * an event's code, rather than for every block.
+     */
+    public static void reloadIfChanged(String sc_id) {
+        BlockIndex blocks = BlockLoader.blocks;
+        if (blocks == null || !blocks.isUpToDate(ExtraBlockFile.EXTRA_BLOCKS_DATA_FILE, ExtraBlockFile.EXTRA_BLOCKS_PALETTE_FILE)) {
+            loadCustomBlocks();
+        }
+
+        if (sc_id != null) {
+            File customBlocksConfig = getProjectBlocksFile(sc_id);
+            BlockIndex ownBlocks = projectBlocks.get(sc_id);
+            if (!customBlocksConfig.exists()) {
+                projectBlocks.remove(sc_id);
+            } else if (ownBlocks != null && !ownBlocks.isUpToDate(customBlocksConfig)) {
+                loadProjectBlocks(sc_id, customBlocksConfig);
+            }
+        }
+    }
+
     public static ExtraBlockInfo getBlockInfo(String block_name) {
+        BlockIndex blocks = BlockLoader.blocks;
         if (blocks == null) {
             loadCustomBlocks();
+            blocks = BlockLoader.blocks;
+        }
+
+        ExtraBlockInfo info = blocks.blocksByName.get(block_name);
+        if (info != null) {
+            return info;
+        }
+
+        ExtraBlockInfo in = new ExtraBlockInfo();
+        in.setName(block_name);
+        in.isMissing = true;
+        return in;
+    }
+
+    public static ExtraBlockInfo getBlockFromProject(String sc_id, String block_name) {
+        BlockIndex blocks = projectBlocks.get(sc_id);
+        if (blocks == null) {
+            // Not loaded since the last check, or the project has no own Custom Blocks
+            File customBlocksConfig = getProjectBlocksFile(sc_id);
+            if (customBlocksConfig.exists()) {
+                blocks = loadProjectBlocks(sc_id, customBlocksConfig);
+            }
         }
 
-        for (ExtraBlockInfo info : blocks) {
-            if (info.getName().equals(block_name)) {
+        if (blocks != null) {
+            ExtraBlockInfo info = blocks.blocksByName.get(block_name);
+            if (info != null) {
                 return info;
             }
         }
@@ -53,37 +110,55 @@ public class BlockLoader {
         return in;
     }
 
-    public static ExtraBlockInfo getBlockFromProject(String sc_id, String block_name) {
-        File customBlocksConfig = new File(Environment.getExternalStorageDirectory(),
-                ".sketchware/data/" + sc_id + "/custom_blocks");
-        if (customBlocksConfig.exists()) {
+    private static File getProjectBlocksFile(String sc_id) {
+        return new File(Environment.getExternalStorageDirectory(), ".sketchware/data/" + sc_id + "/custom_blocks");
+    }
+
+    /**
+     * Parses a project's <code>custom_blocks</code> file, unless another thread just did.
+     */
+    private static BlockIndex loadProjectBlocks(String sc_id, File customBlocksConfig) {
+        synchronized (projectBlocks) {
+            BlockIndex blocks = projectBlocks.get(sc_id);
+            if (blocks != null && blocks.isUpToDate(customBlocksConfig)) {
+                return blocks;
+            }
+
+            // Stamp the file before reading it, so that changes while reading cause another reload
+            long[] stamps = BlockIndex.stamp(customBlocksConfig);
+            HashMap<String, ExtraBlockInfo> blocksByName = new HashMap<>();
             try {
                 ArrayList<ExtraBlockInfo> extraBlocks = new Gson().fromJson(
                         FileUtil.readFile(customBlocksConfig.getAbsolutePath()),
                         new TypeToken<ArrayList<ExtraBlockInfo>>() {
                         }.getType());
 
-                for (ExtraBlockInfo info : extraBlocks) {
-                    if (block_name.equals(info.getName())) {
-                        return info;
+                if (extraBlocks != null) {
+                    for (ExtraBlockInfo info : extraBlocks) {
+                        if (info.getName() != null) {
+                            blocksByName.putIfAbsent(info.getName(), info);
+                        }
                     }
                 }
-
             } catch (Exception e) {
                 SketchwareUtil.toastError("Failed to get Custom Blocks for project " + sc_id + ": " + e.getMessage());
             }
-        }
 
-        ExtraBlockInfo in = new ExtraBlockInfo();
-        in.setName(block_name);
-        in.isMissing = true;
-        return in;
+            blocks = new BlockIndex(blocksByName, stamps);
+            projectBlocks.put(sc_id, blocks);
+            return blocks;
+        }
     }
 
-    private static void loadCustomBlocks() {
+    /**
+     * (Re-)loads Custom Blocks. The index is only published once it's complete, so that
+     * code generation running on other threads never sees a partially loaded one.
+     */
+    private static synchronized void loadCustomBlocks() {
+        long[] stamps = BlockIndex.stamp(ExtraBlockFile.EXTRA_BLOCKS_DATA_FILE, ExtraBlockFile.EXTRA_BLOCKS_PALETTE_FILE);
         ArrayList<HashMap<String, Object>> palettes = new PaletteSelector().getPaletteSelector();
 
-        blocks = new ArrayList<>();
+        HashMap<String, ExtraBlockInfo> blocks = new HashMap<>();
 
         ArrayList<HashMap<String, Object>> arrList = ExtraBlockFile.getExtraBlockData();
 
@@ -187,8 +262,10 @@ public class BlockLoader {
                 }
             }
 
-            blocks.add(info);
+            // Earlier definitions of a name win, like they did when blocks were searched in order
+            blocks.putIfAbsent(info.getName(), info);
         }
+        BlockLoader.blocks = new BlockIndex(blocks, stamps);
     }
 
     /**
@@ -200,5 +277,32 @@ public class BlockLoader {
 
     public static void refresh() {
         loadCustomBlocks();
+        projectBlocks.clear();
+    }
+
+    private static class BlockIndex {
+        private final HashMap<String, ExtraBlockInfo> blocksByName;
+        /**
+         * Length and modification time of every file the blocks were loaded from.
+         */
+        private final long[] stamps;
+
+        private BlockIndex(HashMap<String, ExtraBlockInfo> blocksByName, long[] stamps) {
+            this.blocksByName = blocksByName;
+            this.stamps = stamps;
+        }
+
+        private static long[] stamp(File... files) {
+            long[] stamps = new long[files.length * 2];
+            for (int i = 0; i < files.length; i++) {
+                stamps[i * 2] = files[i].length();
+                stamps[i * 2 + 1] = files[i].lastModified();
+            }
+            return stamps;
+        }
+
+        private boolean isUpToDate(File... files) {
+            return Arrays.equals(stamps, stamp(files));
+        }
     }
 }
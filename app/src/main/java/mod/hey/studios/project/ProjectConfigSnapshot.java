@@ -0,0 +1,158 @@
+package mod.hey.studios.project;
+
+import com.besome.sketch.editor.manage.library.material3.Material3LibraryManager;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import dev.aldi.sayuti.block.ExtraBlockFile;
+import mod.agus.jcoderz.editor.manage.library.locallibrary.ManageLocalLibrary;
+import mod.hey.studios.build.BuildSettings;
+import pro.sketchware.control.logic.PermissionManager;
+import pro.sketchware.utility.FilePathUtil;
+
+/**
+ * A project's configuration as code generators need it, read once per build instead of by every
+ * generated Activity: project and build settings, Local libraries, Custom Blocks, the AppCompat
+ * and Material 3 state, and the permissions each Activity's blocks request.
+ * <p>
+ * Get one through {@link #get(String)}, which reuses the parsed files for as long as their size and
+ * modification time stay the same, so that the editor can reuse them between builds.
+ * A snapshot doesn't change; settings changed afterwards show up in the next one.
+ */
+public class ProjectConfigSnapshot {
+    private static final Map<String, ConfigFiles> cachedFiles = new HashMap<>();
+
+    public final String sc_id;
+    private final ConfigFiles files;
+    private final Material3LibraryManager material3LibraryManager;
+    private final Map<String, PermissionManager.BlockPermissions> blockPermissions = new HashMap<>();
+
+    private ProjectConfigSnapshot(String sc_id, ConfigFiles files, Material3LibraryManager material3LibraryManager) {
+        this.sc_id = sc_id;
+        this.files = files;
+        this.material3LibraryManager = material3LibraryManager;
+    }
+
+    /**
+     * @return A snapshot of the project's current configuration, only re-reading files that changed since last time
+     */
+    public static ProjectConfigSnapshot get(String sc_id) {
+        ConfigFiles files;
+        synchronized (cachedFiles) {
+            files = cachedFiles.get(sc_id);
+            if (files == null || !files.isUpToDate()) {
+                files = new ConfigFiles(sc_id);
+                cachedFiles.put(sc_id, files);
+            }
+        }
+        // AppCompat and Material 3 state lives in memory while editing, so it's cheap to get but not stamped
+        return new ProjectConfigSnapshot(sc_id, files, new Material3LibraryManager(sc_id));
+    }
+
+    /**
+     * Makes the next {@link #get(String)} re-read all files, for when they're written in quick succession,
+     * possibly without visibly changing their size or modification time.
+     */
+    public static void invalidate(String sc_id) {
+        synchronized (cachedFiles) {
+            cachedFiles.remove(sc_id);
+        }
+    }
+
+    /**
+     * @see ProjectSettings#getValue(String, String)
+     */
+    public String getProjectSetting(String key, String defaultValue) {
+        return files.projectSettings.getValue(key, defaultValue);
+    }
+
+    /**
+     * @see BuildSettings#getValue(String, String)
+     */
+    public String getBuildSetting(String key, String defaultValue) {
+        return files.buildSettings.getValue(key, defaultValue);
+    }
+
+    /**
+     * @see ProjectSettings#getMinSdkVersion()
+     */
+    public int getMinSdkVersion() {
+        return files.projectSettings.getMinSdkVersion();
+    }
+
+    public boolean isViewBindingEnabled() {
+        return getProjectSetting(ProjectSettings.SETTING_ENABLE_VIEWBINDING, ProjectSettings.SETTING_GENERIC_VALUE_FALSE)
+                .equals(ProjectSettings.SETTING_GENERIC_VALUE_TRUE);
+    }
+
+    /**
+     * @return The enabled Local libraries, shared by all snapshots of the same configuration, so don't modify them
+     */
+    public ManageLocalLibrary getLocalLibraries() {
+        return files.localLibraries;
+    }
+
+    /**
+     * @return All Custom Blocks followed by built-in extra blocks, as of {@link ExtraBlockFile#getExtraBlockData()}
+     */
+    public List<HashMap<String, Object>> getExtraBlocks() {
+        return files.extraBlocks;
+    }
+
+    public Material3LibraryManager getMaterial3LibraryManager() {
+        return material3LibraryManager;
+    }
+
+    /**
+     * @return Permissions added and removed by an Activity's blocks, which are read on first use and
+     * then shared by everything generating that Activity with this snapshot
+     */
+    public synchronized PermissionManager.BlockPermissions getBlockPermissions(String javaName) {
+        return blockPermissions.computeIfAbsent(javaName, name -> PermissionManager.BlockPermissions.read(sc_id, name));
+    }
+
+    private static class ConfigFiles {
+        private final File[] sources;
+        private final long[] stamps;
+        private final ProjectSettings projectSettings;
+        private final BuildSettings buildSettings;
+        private final ManageLocalLibrary localLibraries;
+        private final List<HashMap<String, Object>> extraBlocks;
+
+        private ConfigFiles(String sc_id) {
+            projectSettings = new ProjectSettings(sc_id);
+            buildSettings = new BuildSettings(sc_id);
+            sources = new File[]{
+                    new File(projectSettings.getPath()),
+                    new File(buildSettings.getPath()),
+                    new File(new FilePathUtil().getPathLocalLibrary(sc_id)),
+                    ExtraBlockFile.EXTRA_BLOCKS_DATA_FILE
+            };
+            // Stamp before reading the larger files, so that changes to them while reading make this outdated
+            stamps = stamp(sources);
+            localLibraries = new ManageLocalLibrary(sc_id);
+            extraBlocks = Collections.unmodifiableList(ExtraBlockFile.getExtraBlockData());
+        }
+
+        private boolean isUpToDate() {
+            long[] current = stamp(sources);
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] != stamps[i]) return false;
+            }
+            return true;
+        }
+
+        private static long[] stamp(File[] files) {
+            long[] stamps = new long[files.length * 2];
+            for (int i = 0; i < files.length; i++) {
+                stamps[i * 2] = files[i].length();
+                stamps[i * 2 + 1] = files[i].lastModified();
+            }
+            return stamps;
+        }
+    }
+}
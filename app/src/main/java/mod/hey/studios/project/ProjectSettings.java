@@ -164,5 +164,6 @@ public class ProjectSettings {
 
     private void save() {
         FileUtil.writeFile(path, new Gson().toJson(hashmap));
+        ProjectConfigSnapshot.invalidate(sc_id);
     }
 }
@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -34,7 +35,6 @@ import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 import javax.crypto.Cipher;
 
@@ -311,42 +311,6 @@ public class BackupFactory {
         FileUtil.writeFile(getLocalLibraryPath(sc_id), new Gson().toJson(libraries));
     }
 
-    public static void zipFolder(File srcFolder, File destZipFile) throws Exception {
-        try (FileOutputStream fileWriter = new FileOutputStream(destZipFile)) {
-            try (ZipOutputStream zip = new ZipOutputStream(fileWriter)) {
-                addFolderToZip(srcFolder, srcFolder, zip);
-                zip.flush();
-            }
-        }
-    }
-
-    private static void addFileToZip(File rootPath, File srcFile, ZipOutputStream zip) throws Exception {
-
-        if (srcFile.isDirectory()) {
-            addFolderToZip(rootPath, srcFile, zip);
-        } else {
-            byte[] buf = new byte[1024];
-            int len;
-            try (FileInputStream in = new FileInputStream(srcFile)) {
-                String name = srcFile.getPath();
-                name = name.replace(rootPath.getPath() + "/", "");
-                zip.putNextEntry(new ZipEntry(name));
-                while ((len = in.read(buf)) > 0) {
-                    zip.write(buf, 0, len);
-                }
-            }
-        }
-    }
-
-    private static void addFolderToZip(File rootPath, File srcFolder, ZipOutputStream zip) throws Exception {
-        File[] srcFolderFiles = srcFolder.listFiles();
-        if (srcFolderFiles != null) {
-            for (File fileName : srcFolderFiles) {
-                addFileToZip(rootPath, fileName, zip);
-            }
-        }
-    }
-
     //6.3.0 fix1
     public static void createNomediaFileIn(File dir) {
         FileUtil.writeFile(new File(dir, ".nomedia").getAbsolutePath(), "");
@@ -447,10 +411,6 @@ public class BackupFactory {
         }
         createBackupsFolder();
 
-        // Init temporary backup folder
-        File outFolder = new File(getBackupDir(),
-                project_name + "_temp");
-
         // Init output zip file
         File outZip = new File(getBackupDir() + File.separator + projectNameOnly, finalFileName +
                 //Adds all the _d if exists. Otherwise its possible that there'll be an infinite loop
@@ -461,43 +421,72 @@ public class BackupFactory {
             backup(context, project_name + "_d");
             return;
         }
-        //delete temp dir if exist
-        if (outFolder.exists()) {
-            FileUtil.deleteFile(outFolder.getAbsolutePath());
-        }
 
         // Create necessary folders
-        FileUtil.makeDir(outFolder.getAbsolutePath());
         FileUtil.makeDir(new File(getBackupDir() + File.separator + projectNameOnly).getAbsolutePath());
 
-        // Copy data
-        File dataF = new File(outFolder, "data");
-        FileUtil.makeDir(dataF.getAbsolutePath());
-        //6.3.0 fix1
-        copySafe(getDataDir(), dataF);
+        BackupWriter writer = collectBackup(context);
 
-        // Copy res
-        File resF = new File(outFolder, "resources");
-        FileUtil.makeDir(resF.getAbsolutePath());
+        // Write final zip
+        try {
+            writer.writeTo(outZip);
+        } catch (Exception e) {
+            // An error occurred
+
+            error = Log.getStackTraceString(e);
+            outPath = null;
+
+            // Don't leave a broken backup behind
+            FileUtil.deleteFile(outZip.getAbsolutePath());
+            return;
+        }
+
+        // Put outZip to global variable
+        outPath = outZip;
+    }
+
+    /**
+     * Backs up the project into the incremental backup store, only storing files whose content isn't in there yet.
+     * {@link #getOutFile()} is the new snapshot's manifest afterwards.
+     */
+    public void backupIncremental(Context context, String project_name) {
+        createBackupsFolder();
+        String projectNameOnly = project_name.replace("_d", "").replace(File.separator, "");
+
+        try {
+            outPath = new BackupSnapshotStore().store(sc_id, projectNameOnly, collectBackup(context));
+        } catch (Exception e) {
+            error = Log.getStackTraceString(e);
+            outPath = null;
+        }
+    }
 
+    /**
+     * @return All files to back up, named with the same layout a restore expects
+     */
+    private BackupWriter collectBackup(Context context) {
+        BackupWriter writer = new BackupWriter();
+
+        // Add data
+        //6.3.0 fix1
+        addSafe(writer, "data", getDataDir());
+
+        // Add res
         for (String subfolder : resSubfolders) {
-            File resSubf = new File(resF, subfolder);
-            FileUtil.makeDir(resSubf.getAbsolutePath());
+            String resSubf = "resources/" + subfolder;
 
             //6.3.0 fix1
-            copySafe(getResDir(subfolder), resSubf);
+            addSafe(writer, resSubf, getResDir(subfolder));
 
             // Write an empty file inside each folder (except icons)
             if (!subfolder.equals("icons")) {
                 //6.3.0 fix1
-                createNomediaFileIn(resSubf);
-                //FileUtil.writeFile(new File(resSubf, ".nomedia").getAbsolutePath(), "");
+                writer.addBytes(resSubf + "/.nomedia", new byte[0]);
             }
         }
 
-        // Copy project
-        File projectF = new File(outFolder, "project");
-        copy(getProjectPath(), projectF);
+        // Add project
+        writer.addFile("project", getProjectPath());
 
         // Find local libs used and include them in the backup
         if (backupLocalLibs) {
@@ -507,15 +496,11 @@ public class BackupFactory {
                 try {
                     JSONArray ja = new JSONArray(FileUtil.readFile(localLibs.getAbsolutePath()));
 
-                    File libsF = new File(outFolder, "local_libs");
-                    libsF.mkdirs();
-
                     for (int i = 0; i < ja.length(); i++) {
                         JSONObject jo = ja.getJSONObject(i);
 
                         File f = new File(jo.getString("dexPath")).getParentFile();
-                        copy(f, new File(libsF, f.getName()));
-
+                        writer.addDirectory("local_libs/" + f.getName(), f);
                     }
 
                 } catch (Exception ignored) {
@@ -526,6 +511,7 @@ public class BackupFactory {
         // Find custom blocks used and include them in the backup
         if (backupCustomBlocks) {
             CustomBlocksManager cbm = new CustomBlocksManager(context, sc_id);
+            BlockLoader.reloadIfChanged(sc_id);
 
             Set<ExtraBlockInfo> blocks = new HashSet<>();
             Set<String> block_names = new HashSet<>();
@@ -543,33 +529,22 @@ public class BackupFactory {
 
             String json = new Gson().toJson(blocks);
 
-            File customBlocksF = new File(dataF, "custom_blocks");
-            FileUtil.writeFile(customBlocksF.getAbsolutePath(), json);
+            writer.addBytes("data/custom_blocks", json.getBytes(StandardCharsets.UTF_8));
         }
 
-        // Zip final folder
-        try {
-            zipFolder(outFolder, outZip);
-        } catch (Exception e) {
-            // An error occurred
-
-//            StringBuilder sb = new StringBuilder();
-//            for (StackTraceElement el : e.getStackTrace()) {
-//                sb.append(el.toString());
-//                sb.append("\n");
-//            }
-
-            error = Log.getStackTraceString(e);
-            outPath = null;
+        return writer;
+    }
 
-            return;
+    /**
+     * Adds a directory like {@link #copySafe(File, File)} copies it: a missing directory
+     * gets backed up as one with just a <code>.nomedia</code> file.
+     */
+    private static void addSafe(BackupWriter writer, String name, File source) {
+        if (!source.exists()) {
+            writer.addBytes(name + "/.nomedia", new byte[0]);
+        } else {
+            writer.addDirectory(name, source);
         }
-
-        // Delete the temporary folder
-        FileUtil.deleteFile(outFolder.getAbsolutePath());
-
-        // Put outZip to global variable
-        outPath = outZip;
     }
 
     private String getFormattedDateFrom(String format) {
@@ -599,6 +574,24 @@ public class BackupFactory {
         restore(swbPath, name);
     }
 
+    /**
+     * Restores a snapshot from the incremental backup store, by way of a temporary classic backup.
+     */
+    void restoreSnapshot(BackupSnapshotStore.Snapshot snapshot) {
+        createBackupsFolder();
+        File swb = new File(getBackupDir(), ".snapshot_" + snapshot.created + "." + EXTENSION);
+
+        try {
+            new BackupSnapshotStore().export(snapshot, swb);
+            restore(swb, snapshot.projectName);
+        } catch (Exception e) {
+            error = e.getMessage();
+            restoreSuccess = false;
+        } finally {
+            FileUtil.deleteFile(swb.getAbsolutePath());
+        }
+    }
+
     public void restoreFromZip(File zipFile) {
         String name = zipFile.getName();
         if (name.contains(".")) {
@@ -16,8 +16,12 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.lang.ref.WeakReference;
+import java.text.DateFormat;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import a.a.a.lC;
 import dev.pranav.filepicker.FilePickerCallback;
@@ -33,6 +37,10 @@ import pro.sketchware.utility.SketchwareUtil;
 public class BackupRestoreManager {
 
     private final Activity act;
+    /**
+     * Reads incremental backups' manifests off the UI thread
+     */
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
 
     // Needed to refresh the project list after restoring
     private ProjectsFragment projectsFragment;
@@ -59,9 +67,11 @@ public class BackupRestoreManager {
     public void backup(String sc_id, String project_name) {
         final String localLibrariesTag = "local libraries";
         final String customBlocksTag = "Custom Blocks";
+        final String incrementalTag = "incremental";
         backupDialogStates = new HashMap<>();
         backupDialogStates.put(0, false);
         backupDialogStates.put(1, false);
+        backupDialogStates.put(2, false);
 
         MaterialAlertDialogBuilder dialog = new MaterialAlertDialogBuilder(act);
         dialog.setIcon(R.drawable.ic_backup);
@@ -88,6 +98,10 @@ public class BackupRestoreManager {
                         index = 1;
                         break;
 
+                    case incrementalTag:
+                        index = 2;
+                        break;
+
                     default:
                         return;
                 }
@@ -113,6 +127,15 @@ public class BackupRestoreManager {
         includeUsedCustomBlocks.setOnCheckedChangeListener(listener);
         checkboxContainer.addView(includeUsedCustomBlocks);
 
+        CheckBox incremental = new CheckBox(act);
+        incremental.setTag(incrementalTag);
+        incremental.setText("Incremental (only store what changed since earlier backups)");
+        incremental.setLayoutParams(new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.MATCH_PARENT,
+                LinearLayout.LayoutParams.WRAP_CONTENT));
+        incremental.setOnCheckedChangeListener(listener);
+        checkboxContainer.addView(incremental);
+
         dialog.setView(checkboxContainer);
         dialog.setPositiveButton("Back up", (v, which) -> {
             v.dismiss();
@@ -130,6 +153,31 @@ public class BackupRestoreManager {
     /*** Restore ***/
 
     public void restore() {
+        executorService.execute(() -> {
+            boolean hasSnapshots = new BackupSnapshotStore().hasSnapshots();
+            act.runOnUiThread(() -> {
+                if (act.isFinishing()) return;
+                if (!hasSnapshots) {
+                    restoreFromFile();
+                    return;
+                }
+
+                new MaterialAlertDialogBuilder(act)
+                        .setTitle("Restore from")
+                        .setItems(new String[]{"Backup file (" + BackupFactory.EXTENSION + ", zip)", "Incremental backup"}, (dialog, which) -> {
+                            if (which == 0) {
+                                restoreFromFile();
+                            } else {
+                                restoreSnapshot();
+                            }
+                        })
+                        .setNegativeButton(Helper.getResString(R.string.common_word_cancel), null)
+                        .show();
+            });
+        });
+    }
+
+    private void restoreFromFile() {
         FilePickerOptions options = new FilePickerOptions();
         options.setMultipleSelection(true);
         options.setExtensions(new String[]{BackupFactory.EXTENSION, "zip"});
@@ -171,6 +219,62 @@ public class BackupRestoreManager {
         new RestoreAsyncTask(new WeakReference<>(act), file, restoreLocalLibs, projectsFragment).execute("");
     }
 
+    private void restoreSnapshot() {
+        executorService.execute(() -> {
+            List<BackupSnapshotStore.Snapshot> snapshots = new BackupSnapshotStore().getSnapshots();
+            act.runOnUiThread(() -> {
+                if (!act.isFinishing()) showSnapshots(snapshots);
+            });
+        });
+    }
+
+    private void showSnapshots(List<BackupSnapshotStore.Snapshot> snapshots) {
+        if (snapshots.isEmpty()) {
+            SketchwareUtil.toast("No incremental backups found");
+            return;
+        }
+
+        String[] items = new String[snapshots.size()];
+        DateFormat dateFormat = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT);
+        for (int i = 0; i < items.length; i++) {
+            BackupSnapshotStore.Snapshot snapshot = snapshots.get(i);
+            items[i] = snapshot.projectName + " (" + dateFormat.format(new Date(snapshot.created)) + ")";
+        }
+
+        new MaterialAlertDialogBuilder(act)
+                .setTitle("Incremental backups")
+                .setItems(items, (dialog, which) -> {
+                    BackupSnapshotStore.Snapshot snapshot = snapshots.get(which);
+                    new MaterialAlertDialogBuilder(act)
+                            .setTitle(items[which])
+                            .setItems(new String[]{"Restore", "Export as " + BackupFactory.EXTENSION, "Delete"}, (actionDialog, action) -> {
+                                if (action == 0 && snapshot.containsLocalLibraries()) {
+                                    new MaterialAlertDialogBuilder(act)
+                                            .setTitle("Warning")
+                                            .setMessage(getRestoreIntegratedLocalLibrariesMessage(false, -1, -1, null))
+                                            .setPositiveButton("Copy", (d, w) -> doSnapshotAction(snapshot, SnapshotAsyncTask.RESTORE_WITH_LOCAL_LIBRARIES))
+                                            .setNegativeButton("Don't copy", (d, w) -> doSnapshotAction(snapshot, SnapshotAsyncTask.RESTORE))
+                                            .setNeutralButton(R.string.common_word_cancel, null)
+                                            .show();
+                                } else if (action == 0) {
+                                    doSnapshotAction(snapshot, SnapshotAsyncTask.RESTORE);
+                                } else if (action == 1) {
+                                    doSnapshotAction(snapshot, SnapshotAsyncTask.EXPORT);
+                                } else {
+                                    doSnapshotAction(snapshot, SnapshotAsyncTask.DELETE);
+                                }
+                            })
+                            .setNegativeButton(Helper.getResString(R.string.common_word_cancel), null)
+                            .show();
+                })
+                .setNegativeButton(Helper.getResString(R.string.common_word_cancel), null)
+                .show();
+    }
+
+    private void doSnapshotAction(BackupSnapshotStore.Snapshot snapshot, int action) {
+        new SnapshotAsyncTask(new WeakReference<>(act), snapshot, action, projectsFragment).execute("");
+    }
+
     private static class RestoreFromZipAsyncTask extends AsyncTask<String, Integer, String> {
 
         private final WeakReference<Activity> activityWeakReference;
@@ -261,7 +365,11 @@ public class BackupRestoreManager {
             bm.setBackupLocalLibs(options.get(0));
             bm.setBackupCustomBlocks(options.get(1));
 
-            bm.backup(activityWeakReference.get(), project_name);
+            if (options.get(2)) {
+                bm.backupIncremental(activityWeakReference.get(), project_name);
+            } else {
+                bm.backup(activityWeakReference.get(), project_name);
+            }
 
             return "";
         }
@@ -336,4 +444,88 @@ public class BackupRestoreManager {
             }
         }
     }
+
+    private static class SnapshotAsyncTask extends AsyncTask<String, Integer, String> {
+        private static final int RESTORE = 0;
+        private static final int RESTORE_WITH_LOCAL_LIBRARIES = 1;
+        private static final int EXPORT = 2;
+        private static final int DELETE = 3;
+
+        private final WeakReference<Activity> activityWeakReference;
+        private final BackupSnapshotStore.Snapshot snapshot;
+        private final int action;
+        private final ProjectsFragment projectsFragment;
+        private BackupFactory bm;
+        private File exported;
+        private String error;
+        private AlertDialog dlg;
+
+        SnapshotAsyncTask(WeakReference<Activity> activityWeakReference, BackupSnapshotStore.Snapshot snapshot, int action, ProjectsFragment projectsFragment) {
+            this.activityWeakReference = activityWeakReference;
+            this.snapshot = snapshot;
+            this.action = action;
+            this.projectsFragment = projectsFragment;
+        }
+
+        @Override
+        protected void onPreExecute() {
+            ProgressMsgBoxBinding loadingDialogBinding = ProgressMsgBoxBinding.inflate(LayoutInflater.from(activityWeakReference.get()));
+            loadingDialogBinding.tvProgress.setText(switch (action) {
+                case EXPORT -> "Exporting...";
+                case DELETE -> "Deleting...";
+                default -> "Restoring...";
+            });
+            dlg = new MaterialAlertDialogBuilder(activityWeakReference.get())
+                    .setTitle("Please wait")
+                    .setCancelable(false)
+                    .setView(loadingDialogBinding.getRoot())
+                    .create();
+            dlg.show();
+        }
+
+        @Override
+        protected String doInBackground(String... params) {
+            try {
+                switch (action) {
+                    case EXPORT -> {
+                        File folder = new File(BackupFactory.getBackupDir(), snapshot.projectName);
+                        FileUtil.makeDir(folder.getAbsolutePath());
+                        exported = new File(folder, snapshot.projectName + " " + snapshot.created + "." + BackupFactory.EXTENSION);
+                        new BackupSnapshotStore().export(snapshot, exported);
+                    }
+                    case DELETE -> new BackupSnapshotStore().delete(snapshot);
+                    default -> {
+                        bm = new BackupFactory(lC.b());
+                        bm.setBackupLocalLibs(action == RESTORE_WITH_LOCAL_LIBRARIES);
+                        bm.restoreSnapshot(snapshot);
+                        if (!bm.isRestoreSuccess()) {
+                            error = bm.getError();
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                error = e.getMessage();
+            }
+
+            return "";
+        }
+
+        @Override
+        protected void onPostExecute(String _result) {
+            dlg.dismiss();
+
+            if (error != null) {
+                SketchwareUtil.toastError("Error: " + error, Toast.LENGTH_LONG);
+            } else if (action == EXPORT) {
+                SketchwareUtil.toast("Successfully exported backup to: " + exported.getAbsolutePath());
+            } else if (action == DELETE) {
+                SketchwareUtil.toast("Deleted backup");
+            } else if (projectsFragment != null) {
+                projectsFragment.refreshProjectsList();
+                SketchwareUtil.toast("Restored successfully");
+            } else {
+                SketchwareUtil.toast("Restored successfully. Refresh to see the project", Toast.LENGTH_LONG);
+            }
+        }
+    }
 }
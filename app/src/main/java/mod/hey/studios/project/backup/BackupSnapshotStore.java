@@ -0,0 +1,345 @@
+package mod.hey.studios.project.backup;
+
+import android.util.Log;
+
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import pro.sketchware.utility.FileUtil;
+
+/**
+ * Incremental backups: every file is stored once by the SHA-256 of its content, and every backup is a small
+ * manifest of which file has which content. Backing up again only reads files whose size or modification time
+ * changed since the project's last snapshot, and only stores content that isn't in the store yet.
+ * <p>
+ * The store lives in <code>.incremental</code> in the backups folder, with <code>blobs/ab/abcdef...</code> for
+ * content and <code>snapshots/sc_id/time.json</code> for manifests. A snapshot can be exported as a classic
+ * <code>.swb</code> at any time.
+ */
+final class BackupSnapshotStore {
+    private static final String TAG = "BackupSnapshotStore";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Object lock = new Object();
+
+    private final File root;
+    private final File blobs;
+    private final File snapshots;
+
+    BackupSnapshotStore() {
+        root = new File(BackupFactory.getBackupDir(), ".incremental");
+        blobs = new File(root, "blobs");
+        snapshots = new File(root, "snapshots");
+    }
+
+    /**
+     * Stores a backup's entries as a new snapshot of the project.
+     *
+     * @return The new snapshot's manifest file
+     */
+    File store(String sc_id, String projectName, BackupWriter backup) throws IOException {
+        synchronized (lock) {
+            if (!blobs.exists() && !blobs.mkdirs()) {
+                throw new IOException("Couldn't create " + blobs);
+            }
+            // Keep images and sounds in the store out of the gallery
+            BackupFactory.createNomediaFileIn(root);
+
+            Snapshot previous = getLatestSnapshot(sc_id);
+            Snapshot snapshot = new Snapshot();
+            snapshot.sc_id = sc_id;
+            snapshot.projectName = projectName;
+            snapshot.created = System.currentTimeMillis();
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (BackupWriter.Entry entry : backup.getEntries()) {
+                SnapshotFile file = new SnapshotFile();
+                if (entry.file == null) {
+                    file.hash = hash(entry.bytes);
+                    file.size = entry.bytes.length;
+                    if (!getBlob(file.hash).exists()) {
+                        writeBlob(file.hash, entry.bytes);
+                    }
+                } else {
+                    file.size = entry.file.length();
+                    file.modified = entry.file.lastModified();
+                    SnapshotFile unchanged = previous != null ? previous.files.get(entry.name) : null;
+                    if (unchanged != null && unchanged.size == file.size && unchanged.modified == file.modified
+                            && getBlob(unchanged.hash).exists()) {
+                        file.hash = unchanged.hash;
+                    } else {
+                        try {
+                            copyToBlob(entry.file, file, buffer);
+                        } catch (IOException e) {
+                            // Like classic backups, leave out unreadable files
+                            continue;
+                        }
+                    }
+                }
+                snapshot.files.put(entry.name, file);
+            }
+
+            File manifest = getManifest(sc_id, snapshot.created);
+            File parent = manifest.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Couldn't create " + parent);
+            }
+            writeAtomically(manifest, new Gson().toJson(snapshot).getBytes(StandardCharsets.UTF_8));
+            return manifest;
+        }
+    }
+
+    /**
+     * @return Whether there's any snapshot, without reading them
+     */
+    boolean hasSnapshots() {
+        File[] projects = snapshots.listFiles();
+        if (projects != null) {
+            for (File project : projects) {
+                String[] manifests = project.list((dir, name) -> name.endsWith(".json"));
+                if (manifests != null && manifests.length > 0) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return All snapshots of all projects, newest first
+     */
+    List<Snapshot> getSnapshots() {
+        return getAllSnapshots(null);
+    }
+
+    /**
+     * @param unreadable Where to add manifests that couldn't be read, or <code>null</code>
+     * @return All snapshots of all projects that could be read, newest first
+     */
+    private List<Snapshot> getAllSnapshots(List<File> unreadable) {
+        ArrayList<Snapshot> all = new ArrayList<>();
+        File[] projects = snapshots.listFiles();
+        if (projects != null) {
+            for (File project : projects) {
+                all.addAll(getSnapshots(project.getName(), unreadable));
+            }
+        }
+        all.sort((a, b) -> Long.compare(b.created, a.created));
+        return all;
+    }
+
+    private List<Snapshot> getSnapshots(String sc_id, List<File> unreadable) {
+        ArrayList<Snapshot> list = new ArrayList<>();
+        File[] manifests = new File(snapshots, sc_id).listFiles((dir, name) -> name.endsWith(".json"));
+        if (manifests != null) {
+            for (File manifest : manifests) {
+                Snapshot snapshot = null;
+                Exception error = null;
+                try {
+                    snapshot = new Gson().fromJson(FileUtil.readFile(manifest.getAbsolutePath()), Snapshot.class);
+                } catch (Exception e) {
+                    error = e;
+                }
+                if (snapshot != null && snapshot.files != null) {
+                    snapshot.manifest = manifest;
+                    list.add(snapshot);
+                } else {
+                    // Skipped, as other snapshots are independent of it
+                    Log.w(TAG, "Couldn't read " + manifest, error);
+                    if (unreadable != null) unreadable.add(manifest);
+                }
+            }
+        }
+        return list;
+    }
+
+    private Snapshot getLatestSnapshot(String sc_id) {
+        Snapshot latest = null;
+        for (Snapshot snapshot : getSnapshots(sc_id, null)) {
+            if (latest == null || snapshot.created > latest.created) {
+                latest = snapshot;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Writes a snapshot as a classic <code>.swb</code> backup.
+     */
+    void export(Snapshot snapshot, File swbFile) throws IOException {
+        BackupWriter writer = new BackupWriter();
+        for (Map.Entry<String, SnapshotFile> file : snapshot.files.entrySet()) {
+            File blob = getBlob(file.getValue().hash);
+            if (!blob.isFile()) {
+                throw new IOException("Missing content of " + file.getKey() + " in the backup store");
+            }
+            writer.addFile(file.getKey(), blob);
+        }
+        writer.writeTo(swbFile);
+    }
+
+    /**
+     * Deletes a snapshot, along with content no other snapshot refers to. If any other snapshot's manifest
+     * can't be read, no content is deleted, as it might still be recoverable.
+     */
+    void delete(Snapshot snapshot) {
+        synchronized (lock) {
+            FileUtil.deleteFile(snapshot.manifest.getAbsolutePath());
+
+            Set<String> referenced = new HashSet<>();
+            List<File> unreadable = new ArrayList<>();
+            for (Snapshot remaining : getAllSnapshots(unreadable)) {
+                for (SnapshotFile file : remaining.files.values()) {
+                    referenced.add(file.hash);
+                }
+            }
+            if (!unreadable.isEmpty()) {
+                Log.w(TAG, "Not deleting unreferenced content, as these manifests couldn't be read: " + unreadable);
+                return;
+            }
+
+            File[] prefixes = blobs.listFiles();
+            if (prefixes == null) return;
+            for (File prefix : prefixes) {
+                if (prefix.isFile()) {
+                    // Left over from an interrupted backup
+                    FileUtil.deleteFile(prefix.getAbsolutePath());
+                    continue;
+                }
+                File[] contents = prefix.listFiles();
+                if (contents == null) continue;
+                for (File blob : contents) {
+                    if (!referenced.contains(blob.getName())) {
+                        FileUtil.deleteFile(blob.getAbsolutePath());
+                    }
+                }
+            }
+        }
+    }
+
+    private File getManifest(String sc_id, long created) {
+        return new File(new File(snapshots, sc_id), created + ".json");
+    }
+
+    private File getBlob(String hash) {
+        return new File(new File(blobs, hash.substring(0, 2)), hash);
+    }
+
+    private void writeBlob(String hash, byte[] content) throws IOException {
+        File blob = getBlob(hash);
+        File parent = blob.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Couldn't create " + parent);
+        }
+        writeAtomically(blob, content);
+    }
+
+    /**
+     * Copies a file into the store, hashing it while copying, and sets the snapshot file's hash and size to
+     * what got copied. The file is read only once, so the blob's name matches its content even if the file
+     * changes meanwhile. Content that's in the store already is kept as it is.
+     */
+    private void copyToBlob(File source, SnapshotFile file, byte[] buffer) throws IOException {
+        File temp = File.createTempFile("blob", ".tmp", blobs);
+        try {
+            MessageDigest digest = newDigest();
+            long size = 0;
+            try (InputStream in = new FileInputStream(source);
+                 OutputStream out = new FileOutputStream(temp)) {
+                int count;
+                while ((count = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, count);
+                    out.write(buffer, 0, count);
+                    size += count;
+                }
+            }
+            file.hash = toHex(digest.digest());
+            file.size = size;
+
+            File blob = getBlob(file.hash);
+            if (blob.exists()) return;
+            File parent = blob.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Couldn't create " + parent);
+            }
+            if (!temp.renameTo(blob)) {
+                throw new IOException("Couldn't move " + temp + " to " + blob);
+            }
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Writes to a temporary file first, so that an interrupted backup doesn't leave a partial blob or manifest.
+     */
+    private static void writeAtomically(File file, byte[] content) throws IOException {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(content);
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Couldn't move " + temp + " to " + file);
+        }
+    }
+
+    private static String hash(byte[] content) {
+        return toHex(newDigest().digest(content));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * A snapshot's manifest, stored as JSON.
+     */
+    static final class Snapshot {
+        String sc_id;
+        String projectName;
+        long created;
+        LinkedHashMap<String, SnapshotFile> files = new LinkedHashMap<>();
+        transient File manifest;
+
+        boolean containsLocalLibraries() {
+            for (String name : files.keySet()) {
+                if (name.startsWith("local_libs/")) return true;
+            }
+            return false;
+        }
+    }
+
+    static final class SnapshotFile {
+        String hash;
+        long size;
+        /**
+         * The source file's modification time when backed up, to skip hashing it again if unchanged
+         */
+        long modified;
+    }
+}
@@ -0,0 +1,257 @@
+package mod.hey.studios.project.backup;
+
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a backup's files straight into its <code>.swb</code> zip, without copying them to a temporary folder first.
+ * <p>
+ * Small files are read ahead by a few threads while the zip gets written in order, large ones are streamed
+ * while writing, so every file is read once. Media and archives are already compressed, so they aren't
+ * deflated again: small ones are stored, and large ones are written without compression, as storing them
+ * would need their CRC before writing them.
+ */
+final class BackupWriter {
+    private static final String TAG = "BackupWriter";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * Files up to this size are read into memory ahead of time, larger ones are streamed while writing.
+     */
+    private static final long MAX_READ_AHEAD_SIZE = 1024 * 1024;
+    private static final int READ_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    /**
+     * How many entries may be read ahead of the one being written, which limits memory used to about
+     * this times {@link #MAX_READ_AHEAD_SIZE}.
+     */
+    private static final int READ_AHEAD_ENTRIES = READ_THREADS * 2;
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "png", "jpg", "jpeg", "gif", "webp",
+            "mp3", "ogg", "m4a", "aac", "mp4", "3gp", "webm",
+            "zip", "jar", "aar", "apk", "swb", "gz", "7z");
+
+    /**
+     * Entries by name. Adding one with the same name again replaces it, like copying a file over another would.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * Adds a file, if it exists.
+     */
+    void addFile(String name, File file) {
+        if (file.isFile()) {
+            entries.put(name, new Entry(name, file, null));
+        }
+    }
+
+    /**
+     * Adds all files in a directory and its subdirectories, except <code>.nomedia</code> files.
+     */
+    void addDirectory(String name, File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+
+        for (File file : files) {
+            String fileName = name + "/" + file.getName();
+            if (file.isDirectory()) {
+                addDirectory(fileName, file);
+            } else if (!file.getName().equals(".nomedia")) {
+                addFile(fileName, file);
+            }
+        }
+    }
+
+    void addBytes(String name, byte[] content) {
+        entries.put(name, new Entry(name, null, content));
+    }
+
+    /**
+     * @return All entries added so far, in the order they'd be written
+     */
+    Collection<Entry> getEntries() {
+        return entries.values();
+    }
+
+    void writeTo(File zipFile) throws IOException {
+        ArrayList<Entry> toWrite = new ArrayList<>(entries.values());
+        ExecutorService executor = Executors.newFixedThreadPool(READ_THREADS);
+
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile), BUFFER_SIZE))) {
+            ArrayDeque<Future<Content>> readAhead = new ArrayDeque<>();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int nextToRead = 0;
+
+            for (int i = 0; i < toWrite.size(); i++) {
+                while (nextToRead < toWrite.size() && nextToRead <= i + READ_AHEAD_ENTRIES) {
+                    Entry entry = toWrite.get(nextToRead++);
+                    readAhead.add(executor.submit(entry::read));
+                }
+
+                Entry entry = toWrite.get(i);
+                Content content;
+                try {
+                    content = readAhead.remove().get();
+                } catch (ExecutionException e) {
+                    // Like when copying files to back up, unreadable ones are left out
+                    Log.w(TAG, "Skipping unreadable file " + entry.file, e.getCause());
+                    continue;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while writing backup", e);
+                }
+
+                try {
+                    entry.writeTo(zip, content, buffer);
+                } catch (UnreadableFileException e) {
+                    Log.w(TAG, "Skipping unreadable file " + entry.file, e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private record Content(byte[] bytes, long size, long crc) {
+    }
+
+    /**
+     * Thrown if a streamed file couldn't be opened, which leaves the zip as it was, so that the file can be skipped.
+     */
+    private static final class UnreadableFileException extends IOException {
+        UnreadableFileException(IOException cause) {
+            super(cause);
+        }
+    }
+
+    static final class Entry {
+        final String name;
+        /**
+         * The file to back up, or <code>null</code> if this entry has {@link #bytes}
+         */
+        final File file;
+        final byte[] bytes;
+        private final boolean stored;
+
+        private Entry(String name, File file, byte[] bytes) {
+            this.name = name;
+            this.file = file;
+            this.bytes = bytes;
+            // Decided by the entry's name, as files may be stored without an extension
+            stored = file != null && isCompressed(name.substring(name.lastIndexOf('/') + 1));
+        }
+
+        private static boolean isCompressed(String fileName) {
+            int dot = fileName.lastIndexOf('.');
+            return dot >= 0 && COMPRESSED_EXTENSIONS.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+        }
+
+        /**
+         * Reads the file if it's small, and computes its CRC if it'll be stored. Runs on the read-ahead threads.
+         */
+        private Content read() throws IOException {
+            if (bytes != null) {
+                return new Content(bytes, bytes.length, -1);
+            }
+
+            long length = file.length();
+            if (length <= MAX_READ_AHEAD_SIZE) {
+                byte[] content = new byte[(int) length];
+                try (InputStream in = new FileInputStream(file)) {
+                    int read = 0;
+                    while (read < content.length) {
+                        int count = in.read(content, read, content.length - read);
+                        if (count < 0) throw new EOFException("File " + file + " got shorter while reading it");
+                        read += count;
+                    }
+                }
+                return new Content(content, content.length, stored ? crc(content) : -1);
+            } else {
+                return new Content(null, length, -1);
+            }
+        }
+
+        /**
+         * @throws UnreadableFileException Thrown if a streamed file couldn't be opened, before anything was written
+         */
+        private void writeTo(ZipOutputStream zip, Content content, byte[] buffer) throws IOException {
+            InputStream in = null;
+            if (content.bytes() == null) {
+                try {
+                    in = new FileInputStream(file);
+                } catch (IOException e) {
+                    throw new UnreadableFileException(e);
+                }
+            }
+            try {
+                writeTo(zip, content, in, buffer);
+            } finally {
+                if (in != null) in.close();
+            }
+        }
+
+        private void writeTo(ZipOutputStream zip, Content content, InputStream in, byte[] buffer) throws IOException {
+            ZipEntry zipEntry = new ZipEntry(name);
+            boolean uncompressed = stored && content.bytes() == null;
+            if (stored && !uncompressed) {
+                zipEntry.setMethod(ZipEntry.STORED);
+                zipEntry.setSize(content.size());
+                zipEntry.setCompressedSize(content.size());
+                zipEntry.setCrc(content.crc());
+            } else if (uncompressed) {
+                // Deflated without compression, so that the CRC gets written after the data in a single pass
+                zip.setLevel(Deflater.NO_COMPRESSION);
+            }
+            try {
+                zip.putNextEntry(zipEntry);
+
+                if (in == null) {
+                    zip.write(content.bytes());
+                } else {
+                    while (true) {
+                        int count;
+                        try {
+                            count = in.read(buffer);
+                        } catch (IOException e) {
+                            // The entry can't be taken back anymore, so keep what was read instead of failing the whole backup
+                            Log.w(TAG, "Backed up only part of " + file + " as reading it failed", e);
+                            break;
+                        }
+                        if (count <= 0) break;
+                        zip.write(buffer, 0, count);
+                    }
+                }
+                zip.closeEntry();
+            } finally {
+                if (uncompressed) {
+                    zip.setLevel(Deflater.DEFAULT_COMPRESSION);
+                }
+            }
+        }
+
+        private static long crc(byte[] content) {
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            return crc.getValue();
+        }
+    }
+}
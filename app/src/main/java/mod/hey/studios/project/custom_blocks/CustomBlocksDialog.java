@@ -48,6 +48,7 @@ public class CustomBlocksDialog {
 
     public void show(Activity context, String sc_id) {
         this.sc_id = sc_id;
+        BlockLoader.reloadIfChanged(sc_id);
 
         dialogBinding = ViewUsedCustomBlocksBinding.inflate(context.getLayoutInflater());
 
@@ -49,10 +49,12 @@ public class CustomBlocksManager {
     }
 
     private boolean isBuildInBlock(String blockName) {
-        if (ExtraBlockFile.buildInBlocks.isEmpty()) {
+        ArrayList<HashMap<String, Object>> buildInBlocks = ExtraBlockFile.buildInBlocks;
+        if (buildInBlocks.isEmpty()) {
             BlockLoader.refresh();
+            buildInBlocks = ExtraBlockFile.buildInBlocks;
         }
-        for (HashMap<String, Object> block : ExtraBlockFile.buildInBlocks) {
+        for (HashMap<String, Object> block : buildInBlocks) {
             if (Objects.requireNonNull(block.get("name")).toString().equals(blockName)) {
                 return true;
             }
@@ -4,9 +4,14 @@ import android.util.Pair;
 
 import com.google.gson.Gson;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import mod.hey.studios.util.Helper;
 import pro.sketchware.utility.FileUtil;
@@ -25,198 +30,157 @@ import pro.sketchware.utility.FileUtil;
  */
 public class CommandBlock {
 
+    private static final Object COMMANDS_LOCK = new Object();
+    private static final ThreadLocal<ArrayList<HashMap<String, Object>>> collectedXmlCommands = new ThreadLocal<>();
+
+    private static final Object COMMANDS_CACHE_LOCK = new Object();
+    private static volatile CommandSet cachedCommands;
+
+    /**
+     * Applies all commands targeting a file, in the order they were written to the commands file.
+     * The commands file only gets parsed once until it's written through this class again, or its
+     * length or modification time changes.
+     */
     public static String applyCommands(String fileName, String c) {
-        String str = c;
-        String path = FileUtil.getExternalStorageDir().concat("/.sketchware/temp/commands");
-        ArrayList<HashMap<String, Object>> data;
         try {
-            //writeLog("try");
-            if (FileUtil.isExistFile(path) && !FileUtil.readFile(path).isEmpty() && !FileUtil.readFile(path).equals("[]")) {
-                //writeLog("the file is found and has content :)");
-                data = new Gson().fromJson(FileUtil.readFile(path), Helper.TYPE_MAP_LIST);
-                //writeLog("get gson from file is done");
-                for (int i = 0; i < data.size(); i++) {
-                    //writeLog("element : " + i);
-                    if (getInputName((String) data.get(i).get("input")).equals(fileName)) {
-                        //writeLog("element : " + i + " > find a target !!");
-                        str = N(str, data.get(i));
-                        //writeLog("element : " + i + " > N is done :l");
-                    }
-                }
-                //writeLog("process is succeeded");
-                return str;
-            } else {
-                //writeLog("file isn't found :(");
+            List<Command> commands = getCommands().commandsByFile.get(fileName);
+            if (commands == null) {
                 return c;
             }
-        } catch (Exception e) { /*writeLog("error :("); */
+            return applyCommands(commands, c);
+        } catch (Exception e) {
             return c;
         }
     }
 
-    private static String N(String c, HashMap<String, Object> map) {
-        ArrayList<String> a = new ArrayList<>(Arrays.asList(c.split("\n")));
-        String res = "";
-        String reference = (String) map.get("reference");
-        double distance = (double) map.get("distance");
-        double after = (double) map.get("after");
-        double before = (double) map.get("before");
-        String command = (String) map.get("command");
-        String input = getExceptFirstLine((String) map.get("input"));
-
-        if (command.equals("find-replace")) {
-            return c.replace(reference, input);
-        }
-        if (command.equals("find-replace-first")) {
-            try {
-                return c.replaceFirst(reference, input);
-            } catch (Exception e) {
-                return c;
-            }
+    private static CommandSet getCommands() throws Exception {
+        File commandsFile = new File(FileUtil.getExternalStorageDir().concat("/.sketchware/temp/commands"));
+        CommandSet commands = cachedCommands;
+        if (commands != null && commands.isUpToDate(commandsFile)) {
+            return commands.get();
         }
 
-        if (command.equals("find-replace-all")) {
-            try {
-                return c.replaceAll(reference, input);
-            } catch (Exception e) {
-                return c;
+        synchronized (COMMANDS_CACHE_LOCK) {
+            commands = cachedCommands;
+            if (commands == null || !commands.isUpToDate(commandsFile)) {
+                commands = CommandSet.load(commandsFile);
+                cachedCommands = commands;
             }
         }
+        return commands.get();
+    }
 
-        int index = getIndex(a, reference);
-        if (index == -1) {
-            return c;
+    private static void invalidateCommands() {
+        synchronized (COMMANDS_CACHE_LOCK) {
+            cachedCommands = null;
         }
+    }
 
-        if (command.equals("insert")) {
-            if ((index + distance - before) < 0) {
-                a.add(0, input);
-            } else if ((index + distance - before) > (a.size() - 1)) {
-                a.add(input);
-            } else {
-                a.add((int) (index + distance - before), input);
+    /**
+     * Applies commands to a file's content, splitting it into lines only once and joining lines only
+     * once at the end, or when a find-replace command needs the whole text. The result is the same as
+     * applying them one after another to the whole text, as earlier versions did.
+     */
+    private static String applyCommands(List<Command> commands, String c) {
+        String text = c;
+        // Lines of text, or null if they haven't been split yet
+        ArrayList<String> textLines = null;
+        // Lines after a line-based command, or null if text is up-to-date
+        ArrayList<String> lines = null;
+        // Whether the last line-based command added a line containing line breaks
+        boolean linesNeedSplitting = false;
+
+        for (Command command : commands) {
+            if (command.isFindReplace()) {
+                if (lines != null) {
+                    text = joinLines(lines);
+                    lines = null;
+                }
+                String replaced = command.findReplace(text);
+                if (replaced != text) {
+                    text = replaced;
+                    textLines = null;
+                }
+                continue;
             }
-        }
-        if (command.equals("add")) {
-            if ((index + distance + after + 1) < 0) {
-                a.add(0, input);
-            } else if ((index + distance + after + 1) > (a.size() - 1)) {
-                a.add(input);
+
+            ArrayList<String> current;
+            if (lines != null) {
+                current = normalizeLines(lines, linesNeedSplitting);
             } else {
-                a.add((int) (index + distance + after + 1), input);
+                if (textLines == null) {
+                    textLines = splitLines(text);
+                }
+                current = textLines;
+            }
+            int index = getIndex(current, command.reference);
+            if (index == -1) {
+                continue;
             }
-        }
 
-        //old method
-        /*
-        if(command.equals("replace")){
-            int xxx = (int)(index + distance - before -1);
-            if ( xxx <0 ){ xxx = 0; }
+            command.apply(current, index);
+            textLines = null;
+            lines = current;
+            linesNeedSplitting = command.input.indexOf('\n') != -1;
+        }
 
-            int ff = (int)(index + distance - before);
-            if ( ff <0 ){ ff = 0; }
-            int tt = (int)(index + distance + after +1);
-            if ( tt > a.size() ){ tt = a.size(); }
-            a.subList(ff , tt).clear();
+        return lines != null ? joinLines(lines) : text;
+    }
 
-            if (xxx > a.size()-2){
-                a.add(input);
-            } else {
-                a.add((int)(xxx+1) , input);
-            }
+    /**
+     * Makes lines look like they've been joined with {@link #joinLines(List)} and split again,
+     * which is what every command used to do before the next one.
+     */
+    private static ArrayList<String> normalizeLines(ArrayList<String> lines, boolean needsSplitting) {
+        if (needsSplitting) {
+            return splitLines(joinLines(lines));
         }
-        */
 
-        if (command.equals("replace")) {
-            if (before == 0 && after == 0) {
-                int lineToChange = (int) (index + distance);
-                if (lineToChange < 0) {
-                    lineToChange = 0;
-                }
-                if (lineToChange > (a.size() - 1)) {
-                    lineToChange = a.size() - 1;
-                }
-                a.set(lineToChange, input);
-            } else {
-                int lineToChange = (int) (index + distance);
-                if (lineToChange <= 0) { // ignore backend
-                    lineToChange = 0;
-                    int from = 1;
-                    int to = (int) after + 1;
-                    if (to > (a.size() - 1)) {
-                        to = a.size() - 1;
-                    }
-                    a.subList(from, to).clear();
-                    a.set(0, input);
-                } else if (lineToChange >= (a.size() - 1)) { //ignore frontend
-                    lineToChange = a.size() - 1;
-                    int from = (int) (lineToChange - before);
-                    int to = lineToChange;
-                    if (from < 0) {
-                        from = 0;
-                    }
-                    a.set(lineToChange, input);
-                    a.subList(from, to).clear();
-                } else {  //handle everything
-                    if (before < 0) {
-                        before = 0;
-                    }
-                    if (after < 0) {
-                        after = 0;
-                    }
-                    int from = lineToChange + 1;
-                    int to = lineToChange + (int) after;
-                    if (to > (a.size() - 1)) {
-                        to = a.size() - 1;
-                    }
-                    a.subList(from, to).clear();
-                    a.set(lineToChange, input);
-                    from = (int) (lineToChange - before);
-                    to = lineToChange;
-                    if (from < 0) {
-                        from = 0;
-                    }
-                    a.subList(from, to).clear();
-                }
-            }
+        int end = lines.size();
+        while (end > 0 && lines.get(end - 1).isEmpty()) {
+            end--;
         }
-
-        for (int i = 0; i < a.size(); i++) {
-            if (res.isEmpty()) {
-                res = a.get(i);
-            } else {
-                res = res.concat("\n").concat(a.get(i));
-            }
+        int start = 0;
+        while (start < end && lines.get(start).isEmpty()) {
+            start++;
+        }
+        if (start == end) {
+            return splitLines("");
         }
+        if (start > 0 || end < lines.size()) {
+            return new ArrayList<>(lines.subList(start, end));
+        }
+        return lines;
+    }
 
-        return res;
+    private static ArrayList<String> splitLines(String c) {
+        return new ArrayList<>(Arrays.asList(c.split("\n")));
+    }
+
+    /**
+     * Joins lines with <code>\n</code>, leaving out leading empty lines like this class always has.
+     */
+    private static String joinLines(List<String> a) {
+        int start = 0;
+        while (start < a.size() && a.get(start).isEmpty()) {
+            start++;
+        }
+        return String.join("\n", a.subList(start, a.size()));
     }
 
     public static String getExceptFirstLine(String c) {
-        ArrayList<String> a = new ArrayList<>(Arrays.asList(c.split("\n")));
-        String res = "";
+        ArrayList<String> a = splitLines(c);
         if (!a.isEmpty()) {
             a.remove(0);
         } else {
             return c;
         }
-        for (int i = 0; i < a.size(); i++) {
-            if (res.isEmpty()) {
-                res = a.get(i);
-            } else {
-                res = res.concat("\n").concat(a.get(i));
-            }
-        }
-        return res;
+        return joinLines(a);
     }
 
     private static String getFirstLine(String c) {
-        ArrayList<String> a = new ArrayList<>(Arrays.asList(c.split("\n")));
-        if (!a.isEmpty()) {
-            return a.get(0);
-        } else {
-            return "";
-        }
+        int newline = c.indexOf('\n');
+        return newline == -1 ? c : c.substring(0, newline);
     }
 
     public static String getInputName(String input) {
@@ -250,16 +214,62 @@ public class CommandBlock {
 
     // Write Temporary File
     private static void WTF(ArrayList<HashMap<String, Object>> list) {
+        ArrayList<HashMap<String, Object>> collected = collectedXmlCommands.get();
+        if (collected != null) {
+            collected.addAll(list);
+        } else {
+            writeXmlCommands(list);
+        }
+    }
+
+    /**
+     * Makes XML commands found by {@link #CB(String)} and {@link #CBForXml(String)} on the calling thread
+     * get collected in memory instead of being written to the commands file, so that several files can
+     * be generated concurrently. Must be followed by {@link #stopCollectingXmlCommands()} on the same thread.
+     */
+    public static void startCollectingXmlCommands() {
+        collectedXmlCommands.set(new ArrayList<>());
+    }
+
+    /**
+     * @return The XML commands collected on the calling thread since {@link #startCollectingXmlCommands()}
+     */
+    public static ArrayList<HashMap<String, Object>> stopCollectingXmlCommands() {
+        ArrayList<HashMap<String, Object>> collected = collectedXmlCommands.get();
+        collectedXmlCommands.remove();
+        return collected == null ? new ArrayList<>() : collected;
+    }
+
+    /**
+     * Appends XML commands to the commands file, to be picked up by {@link #applyCommands(String, String)}.
+     */
+    public static void writeXmlCommands(List<HashMap<String, Object>> list) {
         String path = FileUtil.getExternalStorageDir().concat("/.sketchware/temp/commands");
-        ArrayList<HashMap<String, Object>> data = new ArrayList<>();
-        try {
-            if (FileUtil.isExistFile(path) && !FileUtil.readFile(path).isEmpty() && !FileUtil.readFile(path).equals("[]")) {
-                data = new Gson().fromJson(FileUtil.readFile(path), Helper.TYPE_MAP_LIST);
+        synchronized (COMMANDS_LOCK) {
+            ArrayList<HashMap<String, Object>> data = new ArrayList<>();
+            try {
+                if (FileUtil.isExistFile(path) && !FileUtil.readFile(path).isEmpty() && !FileUtil.readFile(path).equals("[]")) {
+                    data = new Gson().fromJson(FileUtil.readFile(path), Helper.TYPE_MAP_LIST);
+                }
+            } catch (Exception ignored) {
             }
-        } catch (Exception ignored) {
+            data.addAll(list);
+            FileUtil.writeFile(path, new Gson().toJson(data));
+            invalidateCommands();
+        }
+    }
+
+    /**
+     * Replaces the commands file with a copy of another one, such as a project's own commands file.
+     * Cached commands are discarded explicitly, as copying keeps neither the file's length nor its
+     * modification time apart from the previous content's for sure.
+     */
+    public static void replaceCommands(String sourcePath) {
+        String path = FileUtil.getExternalStorageDir().concat("/.sketchware/temp/commands");
+        synchronized (COMMANDS_LOCK) {
+            FileUtil.copyFile(sourcePath, path);
+            invalidateCommands();
         }
-        data.addAll(list);
-        FileUtil.writeFile(path, new Gson().toJson(data));
     }
 
     public static void x() {
@@ -267,6 +277,7 @@ public class CommandBlock {
         if (FileUtil.isExistFile(path)) {
             FileUtil.deleteFile(path);
         }
+        invalidateCommands();
     }
 
     public static String CB(String c) {
@@ -569,4 +580,198 @@ public class CommandBlock {
         hm.put("input", input);
         arr2.add(hm);
     }
+
+    /**
+     * All commands of the commands file, grouped by the file they target.
+     */
+    private static class CommandSet {
+        private final HashMap<String, List<Command>> commandsByFile;
+        private final Exception error;
+        private final long length;
+        private final long lastModified;
+
+        private CommandSet(HashMap<String, List<Command>> commandsByFile, Exception error, long length, long lastModified) {
+            this.commandsByFile = commandsByFile;
+            this.error = error;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        private static CommandSet load(File commandsFile) {
+            long length = commandsFile.length();
+            long lastModified = commandsFile.lastModified();
+            HashMap<String, List<Command>> commandsByFile = new HashMap<>();
+            try {
+                String content = commandsFile.exists() ? FileUtil.readFile(commandsFile.getAbsolutePath()) : "";
+                if (!content.isEmpty() && !content.equals("[]")) {
+                    ArrayList<HashMap<String, Object>> data = new Gson().fromJson(content, Helper.TYPE_MAP_LIST);
+                    for (HashMap<String, Object> map : data) {
+                        Command command = new Command(map);
+                        commandsByFile.computeIfAbsent(command.fileName, key -> new ArrayList<>()).add(command);
+                    }
+                }
+            } catch (Exception e) {
+                // A broken commands file leaves all files unchanged
+                return new CommandSet(null, e, length, lastModified);
+            }
+            return new CommandSet(commandsByFile, null, length, lastModified);
+        }
+
+        private boolean isUpToDate(File commandsFile) {
+            return commandsFile.length() == length && commandsFile.lastModified() == lastModified;
+        }
+
+        private CommandSet get() throws Exception {
+            if (error != null) {
+                throw error;
+            }
+            return this;
+        }
+    }
+
+    /**
+     * A parsed command, ready to be applied to the file it targets.
+     */
+    private static class Command {
+        private final String fileName;
+        private final String command;
+        private final String reference;
+        private final String input;
+        private final double distance;
+        private final double after;
+        private final double before;
+        /**
+         * Compiled reference of find-replace-first and find-replace-all commands,
+         * or null if it isn't a valid regular expression.
+         */
+        private final Pattern pattern;
+
+        private Command(HashMap<String, Object> map) {
+            String fullInput = (String) map.get("input");
+            fileName = getInputName(fullInput);
+            command = (String) map.get("command");
+            reference = (String) map.get("reference");
+            input = getExceptFirstLine(fullInput);
+            // Gson parses numbers as Double, other values make the command fail once applied
+            distance = map.get("distance") instanceof Double d ? d : Double.NaN;
+            after = map.get("after") instanceof Double d ? d : Double.NaN;
+            before = map.get("before") instanceof Double d ? d : Double.NaN;
+
+            Pattern pattern = null;
+            if (reference != null && ("find-replace-first".equals(command) || "find-replace-all".equals(command))) {
+                try {
+                    pattern = Pattern.compile(reference);
+                } catch (PatternSyntaxException ignored) {
+                }
+            }
+            this.pattern = pattern;
+        }
+
+        private boolean isFindReplace() {
+            return command.equals("find-replace") || command.equals("find-replace-first")
+                    || command.equals("find-replace-all");
+        }
+
+        /**
+         * @return The changed text, or the same instance if nothing was replaced
+         */
+        private String findReplace(String c) {
+            if (command.equals("find-replace")) {
+                return c.replace(reference, input);
+            }
+            if (pattern == null) {
+                return c;
+            }
+            try {
+                Matcher matcher = pattern.matcher(c);
+                return command.equals("find-replace-first") ? matcher.replaceFirst(input) : matcher.replaceAll(input);
+            } catch (Exception e) {
+                return c;
+            }
+        }
+
+        /**
+         * Applies an insert, add or replace command relative to the line at index.
+         */
+        private void apply(ArrayList<String> a, int index) {
+            if (Double.isNaN(distance) || Double.isNaN(after) || Double.isNaN(before)) {
+                throw new IllegalStateException("Command is missing its distance, after or before value");
+            }
+            double after = this.after;
+            double before = this.before;
+
+            if (command.equals("insert")) {
+                if ((index + distance - before) < 0) {
+                    a.add(0, input);
+                } else if ((index + distance - before) > (a.size() - 1)) {
+                    a.add(input);
+                } else {
+                    a.add((int) (index + distance - before), input);
+                }
+            }
+            if (command.equals("add")) {
+                if ((index + distance + after + 1) < 0) {
+                    a.add(0, input);
+                } else if ((index + distance + after + 1) > (a.size() - 1)) {
+                    a.add(input);
+                } else {
+                    a.add((int) (index + distance + after + 1), input);
+                }
+            }
+
+            if (command.equals("replace")) {
+                if (before == 0 && after == 0) {
+                    int lineToChange = (int) (index + distance);
+                    if (lineToChange < 0) {
+                        lineToChange = 0;
+                    }
+                    if (lineToChange > (a.size() - 1)) {
+                        lineToChange = a.size() - 1;
+                    }
+                    a.set(lineToChange, input);
+                } else {
+                    int lineToChange = (int) (index + distance);
+                    if (lineToChange <= 0) { // ignore backend
+                        lineToChange = 0;
+                        int from = 1;
+                        int to = (int) after + 1;
+                        if (to > (a.size() - 1)) {
+                            to = a.size() - 1;
+                        }
+                        a.subList(from, to).clear();
+                        a.set(0, input);
+                    } else if (lineToChange >= (a.size() - 1)) { //ignore frontend
+                        lineToChange = a.size() - 1;
+                        int from = (int) (lineToChange - before);
+                        int to = lineToChange;
+                        if (from < 0) {
+                            from = 0;
+                        }
+                        a.set(lineToChange, input);
+                        a.subList(from, to).clear();
+                    } else {  //handle everything
+                        if (before < 0) {
+                            before = 0;
+                        }
+                        if (after < 0) {
+                            after = 0;
+                        }
+                        int from = lineToChange + 1;
+                        int to = lineToChange + (int) after;
+                        if (to > (a.size() - 1)) {
+                            to = a.size() - 1;
+                        }
+                        a.subList(from, to).clear();
+                        a.set(lineToChange, input);
+                        from = (int) (lineToChange - before);
+                        to = lineToChange;
+                        if (from < 0) {
+                            from = 0;
+                        }
+                        a.subList(from, to).clear();
+                    }
+                }
+            }
+        }
+    }
 }
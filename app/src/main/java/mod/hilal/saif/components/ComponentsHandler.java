@@ -10,16 +10,17 @@ import com.besome.sketch.beans.ComponentBean;
 import com.google.gson.Gson;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+import a.a.a.BlockSpec;
 import a.a.a.Lx;
 import a.a.a.xB;
 import mod.hey.studios.util.Helper;
+import mod.jbk.util.LogUtil;
 import mod.jbk.util.OldResourceIdMapper;
 import pro.sketchware.R;
 import pro.sketchware.SketchApplication;
@@ -35,7 +36,7 @@ import pro.sketchware.utility.SketchwareUtil;
 
 public class ComponentsHandler {
 
-    private static ArrayList<HashMap<String, Object>> cachedCustomComponents = readCustomComponents();
+    private static volatile CustomComponents cachedCustomComponents = readCustomComponents();
 
     /**
      * This is a utility class, don't instantiate it
@@ -52,35 +53,8 @@ public class ComponentsHandler {
             return 36;
         }
 
-        for (int i = 0; i < cachedCustomComponents.size(); i++) {
-            HashMap<String, Object> component = cachedCustomComponents.get(i);
-            if (component != null) {
-                Object typeName = component.get("typeName");
-
-                if (typeName instanceof String) {
-                    if (name.equals(typeName)) {
-                        Object id = component.get("id");
-
-                        if (id instanceof String) {
-                            try {
-                                return Integer.parseInt((String) id);
-                            } catch (NumberFormatException e) {
-                                SketchwareUtil.toastError("Invalid ID entry in Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                                break;
-                            }
-                        } else {
-                            SketchwareUtil.toastError("Invalid ID entry in Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                        }
-                    }
-                } else {
-                    SketchwareUtil.toastError("Invalid type name entry in Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                }
-            } else {
-                SketchwareUtil.toastError("Invalid (null) Custom Component at position " + i);
-            }
-        }
-
-        return -1;
+        CustomComponent component = cachedCustomComponents.byTypeName.get(name);
+        return component != null ? component.id : -1;
     }
 
     /**
@@ -92,37 +66,8 @@ public class ComponentsHandler {
             return "AsyncTask";
         }
 
-        for (int i = 0; i < cachedCustomComponents.size(); i++) {
-            HashMap<String, Object> component = cachedCustomComponents.get(i);
-            if (component != null) {
-                Object componentId = component.get("id");
-
-                if (componentId instanceof String) {
-                    try {
-                        int idInt = Integer.parseInt((String) componentId);
-
-                        if (idInt == id) {
-                            Object componentTypeName = component.get("typeName");
-
-                            if (componentTypeName instanceof String) {
-                                return (String) componentTypeName;
-                            } else {
-                                SketchwareUtil.toastError("Invalid type name entry at Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                                break;
-                            }
-                        }
-                    } catch (NumberFormatException e) {
-                        SketchwareUtil.toastError("Invalid ID entry at Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                    }
-                } else {
-                    SketchwareUtil.toastError("Invalid ID entry at Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                }
-            } else {
-                SketchwareUtil.toastError("Invalid (null) Custom Component at position " + i);
-            }
-        }
-
-        return "";
+        CustomComponent component = cachedCustomComponents.byId.get(id);
+        return component != null && component.typeName != null ? component.typeName : "";
     }
 
     /**
@@ -134,36 +79,8 @@ public class ComponentsHandler {
             return "AsyncTask";
         }
 
-        for (int i = 0; i < cachedCustomComponents.size(); i++) {
-            HashMap<String, Object> component = cachedCustomComponents.get(i);
-            if (component != null) {
-                Object componentId = component.get("id");
-
-                if (componentId instanceof String) {
-                    try {
-                        int idInt = Integer.parseInt((String) componentId);
-
-                        if (idInt == id) {
-                            Object componentName = component.get("name");
-
-                            if (componentName instanceof String) {
-                                return (String) componentName;
-                            } else {
-                                SketchwareUtil.toastError("Invalid name entry for Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                                break;
-                            }
-                        }
-                    } catch (NumberFormatException e) {
-                        SketchwareUtil.toastError("Invalid ID entry for Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                    }
-                } else {
-                    SketchwareUtil.toastError("Invalid ID entry for Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                }
-            } else {
-                SketchwareUtil.toastError("Invalid (null) Custom Component at position " + i);
-            }
-        }
-        return "component";
+        CustomComponent component = cachedCustomComponents.byId.get(id);
+        return component != null && component.name != null ? component.name : "component";
     }
 
     /**
@@ -175,39 +92,8 @@ public class ComponentsHandler {
             return R.drawable.ic_cycle_color_48dp;
         }
 
-        for (int i = 0; i < cachedCustomComponents.size(); i++) {
-            HashMap<String, Object> component = cachedCustomComponents.get(i);
-            if (component != null) {
-                Object idObject = component.get("id");
-
-                if (idObject instanceof String) {
-                    try {
-                        int componentId = Integer.parseInt((String) idObject);
-
-                        if (componentId == id) {
-                            Object iconObject = component.get("icon");
-
-                            if (iconObject instanceof String) {
-                                try {
-                                    return OldResourceIdMapper.getDrawableFromOldResourceId(Integer.parseInt((String) iconObject));
-                                } catch (NumberFormatException e) {
-                                    SketchwareUtil.toastError("Invalid icon entry for Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                                    break;
-                                }
-                            }
-                        }
-                    } catch (NumberFormatException e) {
-                        SketchwareUtil.toastError("Invalid ID entry for Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                    }
-                } else {
-                    SketchwareUtil.toastError("Invalid ID entry for Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                }
-            } else {
-                SketchwareUtil.toastError("Invalid (null) Custom Component at position " + i);
-            }
-        }
-
-        return R.drawable.color_new_96;
+        CustomComponent component = cachedCustomComponents.byId.get(id);
+        return component != null && component.icon != null ? component.icon : R.drawable.color_new_96;
     }
 
     /**
@@ -230,37 +116,8 @@ public class ComponentsHandler {
      * @return Component description of a Custom Component
      */
     public static String description2(int id) {
-        for (int i = 0; i < cachedCustomComponents.size(); i++) {
-            HashMap<String, Object> component = cachedCustomComponents.get(i);
-            if (component != null) {
-                Object componentId = component.get("id");
-
-                if (componentId instanceof String) {
-                    try {
-                        int idInt = Integer.parseInt((String) componentId);
-
-                        if (idInt == id) {
-                            Object componentDescription = component.get("description");
-
-                            if (componentDescription instanceof String) {
-                                return (String) component.get("description");
-                            } else {
-                                SketchwareUtil.toastError("Invalid description entry for Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                                break;
-                            }
-                        }
-                    } catch (NumberFormatException e) {
-                        SketchwareUtil.toastError("Invalid ID entry for Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                    }
-                } else {
-                    SketchwareUtil.toastError("Invalid ID entry for Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                }
-            } else {
-                SketchwareUtil.toastError("Invalid (null) Custom Component at position " + i);
-            }
-        }
-
-        return "new component";
+        CustomComponent component = cachedCustomComponents.byId.get(id);
+        return component != null && component.description != null ? component.description : "new component";
     }
 
     /**
@@ -269,33 +126,9 @@ public class ComponentsHandler {
     // √give id and return docs url
     public static String docs(int id) {
         if (id != 36) {
-            for (int i = 0; i < cachedCustomComponents.size(); i++) {
-                HashMap<String, Object> component = cachedCustomComponents.get(i);
-                if (component != null) {
-                    Object componentId = component.get("id");
-                    if (componentId instanceof String) {
-                        try {
-                            int componentIdInteger = Integer.parseInt((String) componentId);
-
-                            if (componentIdInteger == id) {
-                                Object componentUrl = component.get("url");
-
-                                if (componentUrl instanceof String) {
-                                    return (String) componentUrl;
-                                } else {
-                                    SketchwareUtil.toastError("Invalid URL entry for Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                                    break;
-                                }
-                            }
-                        } catch (NumberFormatException e) {
-                            SketchwareUtil.toastError("Invalid ID entry for Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                        }
-                    } else {
-                        SketchwareUtil.toastError("Invalid ID entry for Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                    }
-                } else {
-                    SketchwareUtil.toastError("Invalid (null) Custom Component at position " + i);
-                }
+            CustomComponent component = cachedCustomComponents.byId.get(id);
+            if (component != null && component.url != null) {
+                return component.url;
             }
         }
 
@@ -311,37 +144,8 @@ public class ComponentsHandler {
             return "AsyncTask";
         }
 
-        for (int i = 0; i < cachedCustomComponents.size(); i++) {
-            HashMap<String, Object> component = cachedCustomComponents.get(i);
-            if (component != null) {
-                Object componentId = component.get("id");
-
-                if (componentId instanceof String) {
-                    try {
-                        int componentIdInteger = Integer.parseInt((String) componentId);
-
-                        if (componentIdInteger == id) {
-                            Object componentBuildClass = component.get("buildClass");
-
-                            if (componentBuildClass instanceof String) {
-                                return (String) componentBuildClass;
-                            } else {
-                                SketchwareUtil.toastError("Invalid build class entry for Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                                break;
-                            }
-                        }
-                    } catch (NumberFormatException e) {
-                        SketchwareUtil.toastError("Invalid ID entry for Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                    }
-                } else {
-                    SketchwareUtil.toastError("Invalid ID entry for Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                }
-            } else {
-                SketchwareUtil.toastError("Invalid (null) Custom Component at position " + i);
-            }
-        }
-
-        return "";
+        CustomComponent component = cachedCustomComponents.byId.get(id);
+        return component != null && component.buildClass != null ? component.buildClass : "";
     }
 
     // mod •••••••••••••••••••••••••••••••
@@ -355,22 +159,9 @@ public class ComponentsHandler {
     public static void add(ArrayList<ComponentBean> list) {
         list.add(new ComponentBean(36));
 
-        for (int i = 0; i < cachedCustomComponents.size(); i++) {
-            HashMap<String, Object> component = cachedCustomComponents.get(i);
-            if (component != null) {
-                Object componentId = component.get("id");
-
-                if (componentId instanceof String) {
-                    try {
-                        list.add(new ComponentBean(Integer.parseInt((String) componentId)));
-                    } catch (NumberFormatException e) {
-                        SketchwareUtil.toastError("Invalid ID entry for Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                    }
-                } else {
-                    SketchwareUtil.toastError("Invalid ID entry for Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                }
-            } else {
-                SketchwareUtil.toastError("Invalid (null) Custom Component at position " + i);
+        for (CustomComponent component : cachedCustomComponents.components) {
+            if (component.id != null) {
+                list.add(new ComponentBean(component.id));
             }
         }
     }
@@ -381,37 +172,8 @@ public class ComponentsHandler {
             return "#";
         }
 
-        for (int i = 0; i < cachedCustomComponents.size(); i++) {
-            HashMap<String, Object> component = cachedCustomComponents.get(i);
-            if (component != null) {
-                Object componentId = component.get("id");
-
-                if (componentId instanceof String) {
-                    try {
-                        int componentIdInteger = Integer.parseInt((String) componentId);
-
-                        if (componentIdInteger == id) {
-                            Object componentVarName = component.get("varName");
-
-                            if (componentVarName instanceof String) {
-                                return (String) componentVarName;
-                            } else {
-                                SketchwareUtil.toastError("Invalid variable name entry for Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                                break;
-                            }
-                        }
-                    } catch (NumberFormatException e) {
-                        SketchwareUtil.toastError("Invalid ID entry for Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                    }
-                } else {
-                    SketchwareUtil.toastError("Invalid ID entry for Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                }
-            } else {
-                SketchwareUtil.toastError("Invalid (null) Custom Component at position " + i);
-            }
-        }
-
-        return "";
+        CustomComponent component = cachedCustomComponents.byId.get(id);
+        return component != null && component.varName != null ? component.varName : "";
     }
 
     /**
@@ -424,31 +186,8 @@ public class ComponentsHandler {
             return "Component.AsyncTask";
         }
 
-        for (int i = 0, customComponentsSize = cachedCustomComponents.size(); i < customComponentsSize; i++) {
-            HashMap<String, Object> component = cachedCustomComponents.get(i);
-            if (component != null) {
-                Object componentTypeName = component.get("typeName");
-
-                if (componentTypeName instanceof String) {
-                    if (name.equals(componentTypeName)) {
-                        Object componentClass = component.get("class");
-
-                        if (componentClass instanceof String) {
-                            return (String) componentClass;
-                        } else {
-                            SketchwareUtil.toastError("Invalid class entry for Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                            break;
-                        }
-                    }
-                } else {
-                    SketchwareUtil.toastError("Invalid type name entry for Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                }
-            } else {
-                SketchwareUtil.toastError("Invalid (null) Custom Component at position " + i);
-            }
-        }
-
-        return "Component";
+        CustomComponent component = cachedCustomComponents.byTypeName.get(name);
+        return component != null && component.className != null ? component.className : "Component";
     }
 
     /**
@@ -457,93 +196,28 @@ public class ComponentsHandler {
      */
     //√√
     public static String extraVar(String name, String code, String varName) {
-        for (int i = 0; i < cachedCustomComponents.size(); i++) {
-            HashMap<String, Object> component = cachedCustomComponents.get(i);
-            if (component != null) {
-                Object componentName = component.get("name");
-
-                if (componentName instanceof String) {
-                    if (name.equals(componentName)) {
-                        Object componentAdditionalVar = component.get("additionalVar");
-
-                        if (componentAdditionalVar instanceof String) {
-                            if (TextUtils.isEmpty(((String) componentAdditionalVar))) {
-                                return code;
-                            } else {
-                                return code + "\r\n" +
-                                        ((String) componentAdditionalVar).replace("###", varName);
-                            }
-                        } else {
-                            SketchwareUtil.toastError("Invalid additional variable entry at Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                        }
-                    }
-                } else {
-                    SketchwareUtil.toastError("Invalid name entry at Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                }
-            } else {
-                SketchwareUtil.toastError("Invalid (null) Custom Component at position " + i);
-            }
+        CustomComponent component = cachedCustomComponents.byName.get(name);
+        if (component == null || TextUtils.isEmpty(component.additionalVar)) {
+            return code;
+        } else {
+            return code + "\r\n" + component.additionalVar.replace("###", varName);
         }
-
-        return code;
     }
 
     //√√
     public static String defineExtraVar(String name, String varName) {
-        for (int i = 0; i < cachedCustomComponents.size(); i++) {
-            HashMap<String, Object> component = cachedCustomComponents.get(i);
-            if (component != null) {
-                Object componentName = component.get("name");
-
-                if (componentName instanceof String) {
-                    if (name.equals(componentName)) {
-                        Object componentDefineAdditionalVar = component.get("defineAdditionalVar");
-
-                        if (componentDefineAdditionalVar instanceof String) {
-                            if (TextUtils.isEmpty((String) componentDefineAdditionalVar)) {
-                                break;
-                            } else {
-                                return ((String) componentDefineAdditionalVar).replace("###", varName);
-                            }
-                        } else {
-                            SketchwareUtil.toastError("Invalid additional variable entry in Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                        }
-                    }
-                } else {
-                    SketchwareUtil.toastError("Invalid name entry in Custom Component #" + (i + 1));
-                }
-            } else {
-                SketchwareUtil.toastError("Invalid (null) Custom Component at position " + i);
-            }
+        CustomComponent component = cachedCustomComponents.byName.get(name);
+        if (component == null || TextUtils.isEmpty(component.defineAdditionalVar)) {
+            return "";
+        } else {
+            return component.defineAdditionalVar.replace("###", varName);
         }
-
-        return "";
     }
 
     public static void getImports(String name, ArrayList<String> arrayList) {
-        for (int i = 0; i < cachedCustomComponents.size(); i++) {
-            HashMap<String, Object> component = cachedCustomComponents.get(i);
-            if (component != null) {
-                Object componentVarName = component.get("varName");
-
-                if (componentVarName instanceof String) {
-                    if (name.equals(componentVarName)) {
-                        Object componentImports = component.get("imports");
-
-                        if (componentImports instanceof String componentImportsString) {
-                            String[] componentImportsArray = componentImportsString.split("\n");
-                            arrayList.addAll(Arrays.asList(componentImportsArray));
-                        } else {
-                            SketchwareUtil.toastError("Invalid imports entry in Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                            break;
-                        }
-                    }
-                } else {
-                    SketchwareUtil.toastError("Invalid variable name entry in Custom Component #" + (i + 1), Toast.LENGTH_LONG);
-                }
-            } else {
-                SketchwareUtil.toastError("Invalid (null) Custom Component at position " + i);
-            }
+        List<String> imports = cachedCustomComponents.importsByVarName.get(name);
+        if (imports != null) {
+            arrayList.addAll(imports);
         }
     }
 
@@ -552,10 +226,10 @@ public class ComponentsHandler {
     }
 
     /**
-     * @return List of Custom Components. Will never return null, but will warn the user about
-     * an invalid Custom Components JSON file.
+     * @return All Custom Components, indexed. Will never return null, but will warn the user about
+     * an invalid Custom Components JSON file, and once about every invalid entry in it.
      */
-    private static ArrayList<HashMap<String, Object>> readCustomComponents() {
+    private static CustomComponents readCustomComponents() {
         ArrayList<HashMap<String, Object>> data;
         if (FileUtil.isExistFile(getPath())) {
             try {
@@ -572,11 +246,13 @@ public class ComponentsHandler {
             data = new ArrayList<>();
         }
 
-        return data;
+        return new CustomComponents(data);
     }
 
     public static void refreshCachedCustomComponents() {
         cachedCustomComponents = readCustomComponents();
+        // Class infos of blocks' parameters may refer to Custom Components
+        BlockSpec.clear();
     }
 
     public static boolean isValidComponent(Map<String, Object> map) {
@@ -616,4 +292,114 @@ public class ComponentsHandler {
 
         return new Pair<>(Optional.empty(), components);
     }
+
+    /**
+     * A Custom Component's entries, type-checked once. Invalid entries are <code>null</code>.
+     */
+    private static final class CustomComponent {
+        private final Integer id;
+        private final String name;
+        private final String typeName;
+        private final String varName;
+        private final String buildClass;
+        private final String className;
+        private final String description;
+        private final String url;
+        private final String additionalVar;
+        private final String defineAdditionalVar;
+        private final List<String> imports;
+        private final Integer icon;
+
+        private CustomComponent(HashMap<String, Object> component, int position, List<String> problems) {
+            ArrayList<String> invalid = new ArrayList<>();
+            id = getInt(component, "id", invalid);
+            name = getString(component, "name", invalid);
+            typeName = getString(component, "typeName", invalid);
+            varName = getString(component, "varName", invalid);
+            buildClass = getString(component, "buildClass", invalid);
+            className = getString(component, "class", invalid);
+            description = getString(component, "description", invalid);
+            url = getString(component, "url", invalid);
+            additionalVar = getString(component, "additionalVar", invalid);
+            defineAdditionalVar = getString(component, "defineAdditionalVar", invalid);
+            String importsString = getString(component, "imports", invalid);
+            imports = importsString != null ? List.of(importsString.split("\n")) : null;
+            Integer iconId = getInt(component, "icon", invalid);
+            icon = iconId != null ? OldResourceIdMapper.getDrawableFromOldResourceId(iconId) : null;
+
+            if (!invalid.isEmpty()) {
+                problems.add("Invalid " + String.join(", ", invalid) + " entry in Custom Component #" + (position + 1));
+            }
+        }
+
+        private static String getString(HashMap<String, Object> component, String key, List<String> invalid) {
+            Object value = component.get(key);
+            if (value instanceof String string) {
+                return string;
+            }
+            invalid.add(key);
+            return null;
+        }
+
+        private static Integer getInt(HashMap<String, Object> component, String key, List<String> invalid) {
+            String value = getString(component, key, invalid);
+            if (value != null) {
+                try {
+                    return Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    invalid.add(key);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * All Custom Components, with indexes for lookups by ID, type name, name and variable name.
+     * Like before, the first Custom Component with an ID, type name or name wins.
+     */
+    private static final class CustomComponents {
+        private final List<CustomComponent> components;
+        private final Map<Integer, CustomComponent> byId = new HashMap<>();
+        private final Map<String, CustomComponent> byTypeName = new HashMap<>();
+        private final Map<String, CustomComponent> byName = new HashMap<>();
+        private final Map<String, List<String>> importsByVarName = new HashMap<>();
+
+        private CustomComponents(ArrayList<HashMap<String, Object>> data) {
+            ArrayList<CustomComponent> components = new ArrayList<>(data.size());
+            ArrayList<String> problems = new ArrayList<>();
+
+            for (int i = 0; i < data.size(); i++) {
+                HashMap<String, Object> entry = data.get(i);
+                if (entry == null) {
+                    problems.add("Invalid (null) Custom Component at position " + i);
+                    continue;
+                }
+
+                CustomComponent component = new CustomComponent(entry, i, problems);
+                components.add(component);
+                if (component.id != null) {
+                    byId.putIfAbsent(component.id, component);
+                    if (component.typeName != null) {
+                        byTypeName.putIfAbsent(component.typeName, component);
+                    }
+                }
+                if (component.name != null) {
+                    byName.putIfAbsent(component.name, component);
+                }
+                if (component.varName != null && component.imports != null) {
+                    importsByVarName.computeIfAbsent(component.varName, varName -> new ArrayList<>())
+                            .addAll(component.imports);
+                }
+            }
+            this.components = Collections.unmodifiableList(components);
+
+            if (!problems.isEmpty()) {
+                for (String problem : problems) {
+                    LogUtil.w("ComponentsHandler", problem);
+                }
+                SketchwareUtil.toastError(String.join("\n", problems), Toast.LENGTH_LONG);
+            }
+        }
+    }
 }
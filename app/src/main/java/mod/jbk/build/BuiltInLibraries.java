@@ -20,6 +20,10 @@ public class BuiltInLibraries {
     public static final File EXTRACTED_COMPILE_ASSETS_PATH = new File(SketchApplication.getContext().getFilesDir(), "libs");
     public static final File EXTRACTED_BUILT_IN_LIBRARIES_PATH = new File(EXTRACTED_COMPILE_ASSETS_PATH, "libs");
     public static final File EXTRACTED_BUILT_IN_LIBRARY_DEX_FILES_PATH = new File(EXTRACTED_COMPILE_ASSETS_PATH, "dexs");
+    /**
+     * Built-in libraries' DEX files merged per combination of libraries, see {@link mod.jbk.build.compiler.dex.LibraryDexCache}
+     */
+    public static final File MERGED_DEX_FILES_PATH = new File(EXTRACTED_COMPILE_ASSETS_PATH, "merged_dexs");
 
     // None final so that field values won't be optimized into code, and to allow easy changing of library names due to that
 
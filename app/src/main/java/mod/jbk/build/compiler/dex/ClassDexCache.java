@@ -0,0 +1,231 @@
+package mod.jbk.build.compiler.dex;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import mod.jbk.build.incremental.ContentHasher;
+import mod.jbk.util.LogUtil;
+import pro.sketchware.utility.FileUtil;
+
+/**
+ * Keeps the DEX file of every compiled class, keyed by the hash of its <code>.class</code> file and those
+ * of its supertypes, so that only new or changed classes have to be dexed again.
+ * <p>
+ * Dexing also depends on things like the dexer and minSdkVersion, so all DEX files get dropped
+ * whenever that configuration changes.
+ */
+public class ClassDexCache {
+    private static final String TAG = "ClassDexCache";
+    private static final String CONFIGURATION_FILENAME = "configuration";
+    private static final int MAX_REMEMBERED_SUPERTYPES = 20000;
+
+    /**
+     * Supertypes of class files by their hash, so that unchanged class files don't have to be read again
+     */
+    private static final HashMap<String, List<String>> supertypesByHash = new HashMap<>();
+
+    private final File directory;
+    private final ContentHasher hasher;
+
+    /**
+     * @param directory     Where to store DEX files
+     * @param hasher        Hashes class files
+     * @param configuration Fingerprint of everything besides a class itself that affects its DEX file
+     */
+    public ClassDexCache(File directory, ContentHasher hasher, String configuration) {
+        this.directory = directory;
+        this.hasher = hasher;
+
+        File configurationFile = new File(directory, CONFIGURATION_FILENAME);
+        if (!configurationFile.exists() || !configuration.equals(FileUtil.readFile(configurationFile.getAbsolutePath()))) {
+            if (directory.exists()) {
+                LogUtil.d(TAG, "Dexing configuration changed, dropping all cached DEX files");
+                FileUtil.deleteFile(directory.getAbsolutePath());
+            }
+            FileUtil.makeDir(directory.getAbsolutePath());
+            FileUtil.writeFile(configurationFile.getAbsolutePath(), configuration);
+        }
+    }
+
+    /**
+     * Gets the keys of class files, to look up their DEX files with.
+     * <p>
+     * A key covers a class file and the class files of its supertypes among them, since D8 desugars default
+     * and static interface methods into the classes implementing them if minSdkVersion is below 24.
+     * Otherwise, a class whose interface changed would keep a stale DEX file.
+     *
+     * @param classesDirectory The root directory of the class files' packages
+     * @return The keys, in the order of <code>classFiles</code>
+     * @throws IOException Thrown if a class file couldn't be read
+     */
+    public List<String> getKeys(File classesDirectory, List<File> classFiles) throws IOException {
+        List<String> names = new ArrayList<>(classFiles.size());
+        HashMap<String, String> hashes = new HashMap<>();
+        HashMap<String, List<String>> supertypes = new HashMap<>();
+        for (File classFile : classFiles) {
+            String hash = hasher.hash(classFile);
+            if (hash == null) {
+                throw new IOException("Failed to read " + classFile.getAbsolutePath());
+            }
+            String relativePath = classesDirectory.toPath().relativize(classFile.toPath()).toString();
+            String name = relativePath.substring(0, relativePath.length() - ".class".length())
+                    .replace(File.separatorChar, '/');
+            names.add(name);
+            hashes.put(name, hash);
+            supertypes.put(name, getSupertypes(classFile, hash));
+        }
+
+        List<String> keys = new ArrayList<>(names.size());
+        for (String name : names) {
+            TreeSet<String> allSupertypes = new TreeSet<>();
+            collectSupertypes(name, supertypes, allSupertypes);
+            if (allSupertypes.isEmpty()) {
+                keys.add(hashes.get(name));
+                continue;
+            }
+            MessageDigest digest = ContentHasher.newDigest();
+            digest.update(hashes.get(name).getBytes(StandardCharsets.UTF_8));
+            for (String supertype : allSupertypes) {
+                digest.update(("\n" + supertype + ":" + hashes.get(supertype)).getBytes(StandardCharsets.UTF_8));
+            }
+            keys.add(ContentHasher.toHex(digest.digest()));
+        }
+        return keys;
+    }
+
+    /**
+     * Adds the supertypes of a class that are among the class files, and theirs, to <code>collected</code>.
+     */
+    private static void collectSupertypes(String name, Map<String, List<String>> supertypes, Set<String> collected) {
+        for (String supertype : supertypes.get(name)) {
+            if (supertypes.containsKey(supertype) && collected.add(supertype)) {
+                collectSupertypes(supertype, supertypes, collected);
+            }
+        }
+    }
+
+    private static List<String> getSupertypes(File classFile, String hash) throws IOException {
+        synchronized (supertypesByHash) {
+            List<String> supertypes = supertypesByHash.get(hash);
+            if (supertypes != null) return supertypes;
+        }
+        List<String> supertypes = readSupertypes(classFile);
+        synchronized (supertypesByHash) {
+            if (supertypesByHash.size() >= MAX_REMEMBERED_SUPERTYPES) {
+                supertypesByHash.clear();
+            }
+            supertypesByHash.put(hash, supertypes);
+        }
+        return supertypes;
+    }
+
+    /**
+     * Reads the internal names of a class file's superclass and interfaces, skipping over its constant pool.
+     */
+    private static List<String> readSupertypes(File classFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(classFile)))) {
+            if (in.readInt() != 0xcafebabe) {
+                throw new IOException(classFile.getAbsolutePath() + " isn't a class file");
+            }
+            in.readInt(); // minor and major version
+            int constantPoolCount = in.readUnsignedShort();
+            String[] utf8s = new String[constantPoolCount];
+            int[] classNameIndices = new int[constantPoolCount];
+            for (int i = 1; i < constantPoolCount; i++) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                    case 1 -> utf8s[i] = in.readUTF();
+                    case 7 -> classNameIndices[i] = in.readUnsignedShort();
+                    case 8, 16, 19, 20 -> in.skipBytes(2);
+                    case 15 -> in.skipBytes(3);
+                    case 3, 4, 9, 10, 11, 12, 17, 18 -> in.skipBytes(4);
+                    case 5, 6 -> {
+                        in.skipBytes(8);
+                        // Longs and doubles take two entries
+                        i++;
+                    }
+                    default -> throw new IOException("Unknown constant pool tag " + tag + " in "
+                            + classFile.getAbsolutePath());
+                }
+            }
+            in.skipBytes(4); // access flags and this class
+
+            List<String> supertypes = new ArrayList<>();
+            int superclass = in.readUnsignedShort();
+            if (superclass != 0) {
+                supertypes.add(utf8s[classNameIndices[superclass]]);
+            }
+            int interfacesCount = in.readUnsignedShort();
+            for (int i = 0; i < interfacesCount; i++) {
+                supertypes.add(utf8s[classNameIndices[in.readUnsignedShort()]]);
+            }
+            return supertypes;
+        }
+    }
+
+    /**
+     * @return The cached DEX file of a class, or <code>null</code> if it hasn't been dexed yet
+     */
+    public File get(String key) {
+        File dex = getFile(key);
+        return dex.isFile() ? dex : null;
+    }
+
+    /**
+     * Moves a freshly dexed class's DEX file into the cache.
+     *
+     * @return The cached DEX file
+     */
+    public File put(String key, File dex) throws IOException {
+        File cached = getFile(key);
+        if (!dex.renameTo(cached)) {
+            FileUtil.copyFile(dex.getAbsolutePath(), cached.getAbsolutePath());
+            if (cached.length() != dex.length()) {
+                cached.delete();
+                throw new IOException("Failed to cache " + dex.getAbsolutePath());
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * Deletes the DEX files of classes that don't exist anymore.
+     *
+     * @param keys Keys of all classes currently in use
+     */
+    public void retainOnly(Collection<String> keys) {
+        Set<String> filenames = new HashSet<>();
+        for (String key : keys) {
+            filenames.add(getFile(key).getName());
+        }
+        File[] files = directory.listFiles();
+        if (files == null) return;
+
+        int deleted = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(".dex") && !filenames.contains(file.getName()) && file.delete()) {
+                deleted++;
+            }
+        }
+        if (deleted > 0) {
+            LogUtil.d(TAG, "Deleted " + deleted + " DEX files of classes that don't exist anymore");
+        }
+    }
+
+    private File getFile(String key) {
+        return new File(directory, key + ".dex");
+    }
+}
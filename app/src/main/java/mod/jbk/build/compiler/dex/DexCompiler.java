@@ -18,15 +18,6 @@ import pro.sketchware.utility.FileUtil;
 
 public class DexCompiler {
     public static void compileDexFiles(ProjectBuilder builder) throws CompilationFailedException {
-        int minApiLevel;
-
-        try {
-            minApiLevel = Integer.parseInt(builder.settings.getValue(
-                    ProjectSettings.SETTING_MINIMUM_SDK_VERSION, "21"));
-        } catch (NumberFormatException e) {
-            throw new CompilationFailedException("Invalid minSdkVersion specified in Project Settings" + e.getMessage());
-        }
-
         Collection<Path> programFiles = new LinkedList<>();
         if (builder.proguard.isShrinkingEnabled()) {
             programFiles.add(Paths.get(builder.yq.proguardClassesPath));
@@ -36,6 +27,45 @@ public class DexCompiler {
             }
         }
 
+        run(builder, programFiles, new File(builder.yq.binDirectoryPath, "dex"), OutputMode.DexIndexed);
+    }
+
+    /**
+     * Dexes class files to one DEX file each, named after the class, e.g.
+     * <code>com/my/project/MainActivity.dex</code> for <code>com/my/project/MainActivity.class</code>.
+     */
+    public static void compileDexFilesPerClass(ProjectBuilder builder, Collection<File> classFiles, File outputDirectory) throws CompilationFailedException {
+        Collection<Path> programFiles = new LinkedList<>();
+        for (File file : classFiles) {
+            programFiles.add(file.toPath());
+        }
+
+        run(builder, programFiles, outputDirectory, OutputMode.DexFilePerClassFile);
+    }
+
+    /**
+     * Merges DEX files of {@link #compileDexFilesPerClass(ProjectBuilder, Collection, File)} to
+     * <code>classes.dex</code>, <code>classes2.dex</code>, etc.
+     */
+    public static void mergeDexFiles(ProjectBuilder builder, Collection<File> dexFiles, File outputDirectory) throws CompilationFailedException {
+        Collection<Path> programFiles = new LinkedList<>();
+        for (File file : dexFiles) {
+            programFiles.add(file.toPath());
+        }
+
+        run(builder, programFiles, outputDirectory, OutputMode.DexIndexed);
+    }
+
+    private static void run(ProjectBuilder builder, Collection<Path> programFiles, File outputDirectory, OutputMode outputMode) throws CompilationFailedException {
+        int minApiLevel;
+
+        try {
+            minApiLevel = Integer.parseInt(builder.settings.getValue(
+                    ProjectSettings.SETTING_MINIMUM_SDK_VERSION, "21"));
+        } catch (NumberFormatException e) {
+            throw new CompilationFailedException("Invalid minSdkVersion specified in Project Settings" + e.getMessage());
+        }
+
         Collection<Path> libraryFiles = new LinkedList<>();
         for (String jarPath : builder.getClasspath().split(":")) {
             libraryFiles.add(Paths.get(jarPath));
@@ -46,7 +76,7 @@ public class DexCompiler {
                 .setIntermediate(true)
                 .setMinApiLevel(minApiLevel)
                 .addLibraryFiles(libraryFiles)
-                .setOutput(new File(builder.yq.binDirectoryPath, "dex").toPath(), OutputMode.DexIndexed)
+                .setOutput(outputDirectory.toPath(), outputMode)
                 .addProgramFiles(programFiles)
                 .build());
     }
@@ -0,0 +1,251 @@
+package mod.jbk.build.compiler.dex;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+import mod.agus.jcoderz.dex.Dex;
+import mod.agus.jcoderz.dex.FieldId;
+import mod.agus.jcoderz.dex.MethodId;
+import mod.agus.jcoderz.dex.ProtoId;
+import mod.jbk.util.LogUtil;
+
+/**
+ * Plans which DEX files get merged into which <code>classesN.dex</code>, keeping each of them
+ * within the 64K limits of field, method, proto and type IDs.
+ * <p>
+ * IDs are compared by what they refer to, e.g. <code>Landroid/view/View;->setId(I)V</code>, not by their
+ * index in a specific DEX file, so an ID referenced by several DEX files only counts once per merged DEX.
+ * Every ID is interned to a number once, so checking whether a DEX file still fits into a merged DEX
+ * is linear in the IDs of that DEX file.
+ */
+public class DexMergePlanner {
+    /**
+     * Maximum number of IDs of each kind a single DEX file can hold.
+     */
+    public static final int MAX_IDS = 0xffff;
+
+    private static final String TAG = "DexMergePlanner";
+    private static final int FIELDS = 0;
+    private static final int METHODS = 1;
+    private static final int PROTOS = 2;
+    private static final int TYPES = 3;
+
+    @SuppressWarnings("unchecked")
+    private final HashMap<String, Integer>[] interned = new HashMap[]{
+            new HashMap<>(), new HashMap<>(), new HashMap<>(), new HashMap<>()
+    };
+
+    /**
+     * Plans merging DEX files with as few merged DEX files as possible. DEX files are placed biggest first,
+     * each into the first merged DEX file it fits in.
+     *
+     * @param dexes The DEX files to merge
+     * @return DEX files to merge into <code>classes.dex</code>, <code>classes2.dex</code>, etc.,
+     * each group in the order the DEX files were passed in
+     * @throws IOException Thrown if any DEX file couldn't be read
+     */
+    public List<List<File>> plan(List<File> dexes) throws IOException {
+        return plan(dexes, 0);
+    }
+
+    /**
+     * Plans merging DEX files like {@link #plan(List)}, but places the first DEX files before all others,
+     * in order. As long as they fit into one, they all end up in <code>classes.dex</code>.
+     *
+     * @param dexes         The DEX files to merge
+     * @param priorityCount How many of the first DEX files to place first, e.g. the project's own classes
+     * @return DEX files to merge into <code>classes.dex</code>, <code>classes2.dex</code>, etc.,
+     * each group in the order the DEX files were passed in
+     * @throws IOException Thrown if any DEX file couldn't be read
+     */
+    public List<List<File>> plan(List<File> dexes, int priorityCount) throws IOException {
+        long savedTimeMillis = System.currentTimeMillis();
+
+        ArrayList<DexIds> allIds = new ArrayList<>(dexes.size());
+        for (int i = 0; i < dexes.size(); i++) {
+            DexIds ids = readIds(i, dexes.get(i));
+            LogUtil.d(TAG, ids.file.getAbsolutePath() + " has " + ids.ids[FIELDS].length + " field IDs, "
+                    + ids.ids[METHODS].length + " method IDs, " + ids.ids[PROTOS].length + " proto IDs and "
+                    + ids.ids[TYPES].length + " type IDs");
+            allIds.add(ids);
+        }
+
+        ArrayList<DexIds> sorted = new ArrayList<>(allIds);
+        sorted.sort((first, second) -> {
+            boolean firstPriority = first.index < priorityCount;
+            if (firstPriority || second.index < priorityCount) {
+                return firstPriority && second.index < priorityCount ? Integer.compare(first.index, second.index)
+                        : firstPriority ? -1 : 1;
+            }
+            int comparison = Double.compare(second.weight(), first.weight());
+            return comparison != 0 ? comparison : Integer.compare(first.index, second.index);
+        });
+
+        ArrayList<Bin> bins = new ArrayList<>();
+        for (DexIds ids : sorted) {
+            Bin target = null;
+            for (Bin bin : bins) {
+                if (bin.fits(ids)) {
+                    target = bin;
+                    break;
+                }
+            }
+            if (target == null) {
+                if (!Bin.fitsEmpty(ids)) {
+                    LogUtil.w(TAG, ids.file.getAbsolutePath() + " has more IDs than fit into a single DEX file");
+                }
+                target = new Bin();
+                bins.add(target);
+            }
+            target.add(ids);
+        }
+
+        List<List<File>> plan = new ArrayList<>(bins.size());
+        for (int i = 0; i < bins.size(); i++) {
+            Bin bin = bins.get(i);
+            bin.members.sort((first, second) -> Integer.compare(first.index, second.index));
+            ArrayList<File> files = new ArrayList<>(bin.members.size());
+            for (DexIds member : bin.members) {
+                files.add(member.file);
+            }
+            LogUtil.d(TAG, "Merged DEX #" + (i + 1) + " will have " + bin.sizes[FIELDS] + " field IDs, "
+                    + bin.sizes[METHODS] + " method IDs, " + bin.sizes[PROTOS] + " proto IDs and "
+                    + bin.sizes[TYPES] + " type IDs from " + files);
+            plan.add(files);
+        }
+
+        LogUtil.d(TAG, "Planning to merge " + dexes.size() + " DEX files into " + plan.size() + " took "
+                + (System.currentTimeMillis() - savedTimeMillis) + " ms");
+        return plan;
+    }
+
+    private DexIds readIds(int index, File file) throws IOException {
+        Dex dex = new Dex(file);
+
+        List<String> strings = dex.strings();
+        List<String> typeNamesList = dex.typeNames();
+        String[] typeNames = typeNamesList.toArray(new String[0]);
+
+        int[] types = new int[typeNames.length];
+        for (int i = 0; i < typeNames.length; i++) {
+            types[i] = intern(TYPES, typeNames[i]);
+        }
+
+        List<ProtoId> protoIds = dex.protoIds();
+        String[] protoDescriptors = new String[protoIds.size()];
+        int[] protos = new int[protoDescriptors.length];
+        for (int i = 0; i < protoDescriptors.length; i++) {
+            ProtoId protoId = protoIds.get(i);
+            StringBuilder descriptor = new StringBuilder("(");
+            for (short parameterType : dex.readTypeList(protoId.getParametersOffset()).getTypes()) {
+                descriptor.append(typeNames[parameterType & 0xffff]);
+            }
+            descriptor.append(')').append(typeNames[protoId.getReturnTypeIndex()]);
+            protoDescriptors[i] = descriptor.toString();
+            protos[i] = intern(PROTOS, protoDescriptors[i]);
+        }
+
+        List<FieldId> fieldIds = dex.fieldIds();
+        int[] fields = new int[fieldIds.size()];
+        for (int i = 0; i < fields.length; i++) {
+            FieldId fieldId = fieldIds.get(i);
+            fields[i] = intern(FIELDS, typeNames[fieldId.getDeclaringClassIndex()] + "->"
+                    + strings.get(fieldId.getNameIndex()) + ":" + typeNames[fieldId.getTypeIndex()]);
+        }
+
+        List<MethodId> methodIds = dex.methodIds();
+        int[] methods = new int[methodIds.size()];
+        for (int i = 0; i < methods.length; i++) {
+            MethodId methodId = methodIds.get(i);
+            methods[i] = intern(METHODS, typeNames[methodId.getDeclaringClassIndex()] + "->"
+                    + strings.get(methodId.getNameIndex()) + protoDescriptors[methodId.getProtoIndex()]);
+        }
+
+        return new DexIds(index, file, new int[][]{fields, methods, protos, types});
+    }
+
+    private int intern(int kind, String descriptor) {
+        HashMap<String, Integer> table = interned[kind];
+        Integer id = table.get(descriptor);
+        if (id == null) {
+            id = table.size();
+            table.put(descriptor, id);
+        }
+        return id;
+    }
+
+    private static class DexIds {
+        private final int index;
+        private final File file;
+        /**
+         * Interned IDs per kind. Within a single DEX file, IDs are unique already.
+         */
+        private final int[][] ids;
+
+        private DexIds(int index, File file, int[][] ids) {
+            this.index = index;
+            this.file = file;
+            this.ids = ids;
+        }
+
+        /**
+         * @return How much of a merged DEX file this DEX file fills at least
+         */
+        private double weight() {
+            double weight = 0;
+            for (int[] kind : ids) {
+                weight = Math.max(weight, (double) kind.length / MAX_IDS);
+            }
+            return weight;
+        }
+    }
+
+    private static class Bin {
+        private final BitSet[] ids = {new BitSet(), new BitSet(), new BitSet(), new BitSet()};
+        private final int[] sizes = new int[ids.length];
+        private final ArrayList<DexIds> members = new ArrayList<>();
+
+        private static boolean fitsEmpty(DexIds dex) {
+            for (int[] kind : dex.ids) {
+                if (kind.length > MAX_IDS) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean fits(DexIds dex) {
+            for (int kind = 0; kind < ids.length; kind++) {
+                BitSet existing = ids[kind];
+                int remaining = MAX_IDS - sizes[kind];
+                // Can't exceed the limit if every ID were new
+                if (dex.ids[kind].length <= remaining) continue;
+
+                int newIds = 0;
+                for (int id : dex.ids[kind]) {
+                    if (!existing.get(id) && ++newIds > remaining) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private void add(DexIds dex) {
+            for (int kind = 0; kind < ids.length; kind++) {
+                BitSet existing = ids[kind];
+                for (int id : dex.ids[kind]) {
+                    if (!existing.get(id)) {
+                        existing.set(id);
+                        sizes[kind]++;
+                    }
+                }
+            }
+            members.add(dex);
+        }
+    }
+}
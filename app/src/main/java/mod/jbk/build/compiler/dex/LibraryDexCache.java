@@ -0,0 +1,152 @@
+package mod.jbk.build.compiler.dex;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import mod.agus.jcoderz.dex.Dex;
+import mod.agus.jcoderz.dx.Version;
+import mod.agus.jcoderz.dx.command.dexer.DxContext;
+import mod.agus.jcoderz.dx.merge.CollisionPolicy;
+import mod.agus.jcoderz.dx.merge.DexMerger;
+import mod.hey.studios.build.BuildSettings;
+import mod.jbk.build.BuiltInLibraries;
+import mod.jbk.util.LogUtil;
+import pro.sketchware.utility.FileUtil;
+
+/**
+ * Keeps built-in libraries' DEX files merged per combination of libraries, so that builds which merge
+ * DEX files only have to merge their own DEX files into the already merged libraries.
+ * <p>
+ * Combinations are keyed by the library names in order, which include their versions, the dexer's version,
+ * and the size and modification time of every library's DEX file, in case they got extracted again.
+ * Only the most recently used combinations are kept.
+ */
+public class LibraryDexCache {
+    private static final String TAG = "LibraryDexCache";
+    private static final int MAX_COMBINATIONS = 8;
+
+    private final File directory;
+
+    /**
+     * @param directory Where to store merged DEX files, shared by all projects
+     */
+    public LibraryDexCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the merged DEX files of built-in libraries, merging them first if that combination
+     * of libraries hasn't been merged before.
+     * <p>
+     * Libraries get merged in the order they're passed in, which decides whose class is kept if
+     * several libraries contain one of the same name, so that order is part of the combination.
+     *
+     * @param libraryNames Names of the built-in libraries whose DEX files to merge, in order
+     * @return Merged DEX files, as few as the 64K limits allow
+     * @throws IOException Thrown if a library's DEX file couldn't be read, or merged ones couldn't be written
+     */
+    public List<File> getMerged(List<String> libraryNames) throws IOException {
+        long savedTimeMillis = System.currentTimeMillis();
+        List<File> libraryDexes = new ArrayList<>(libraryNames.size());
+        for (String libraryName : libraryNames) {
+            libraryDexes.add(BuiltInLibraries.getLibraryDexFile(libraryName));
+        }
+
+        File combination = new File(directory, getKey(libraryNames, libraryDexes));
+        List<File> merged = listMerged(combination);
+        if (merged != null) {
+            // Mark as recently used
+            combination.setLastModified(System.currentTimeMillis());
+            LogUtil.d(TAG, "Using " + merged.size() + " merged DEX files of " + libraryNames.size() + " libraries");
+            return merged;
+        }
+
+        File temporary = new File(directory, combination.getName() + ".tmp");
+        FileUtil.deleteFile(temporary.getAbsolutePath());
+        FileUtil.makeDir(temporary.getAbsolutePath());
+        try {
+            List<List<File>> plan = new DexMergePlanner().plan(libraryDexes);
+            for (int i = 0; i < plan.size(); i++) {
+                List<File> group = plan.get(i);
+                Dex[] dexes = new Dex[group.size()];
+                for (int j = 0; j < dexes.length; j++) {
+                    dexes[j] = new Dex(group.get(j));
+                }
+                DexMerger merger = new DexMerger(dexes, CollisionPolicy.KEEP_FIRST, new DxContext());
+                merger.setThreads(BuildSettings.getDexMergerThreads());
+                merger.merge().writeTo(new File(temporary, "classes" + (i + 1) + ".dex"));
+            }
+            FileUtil.deleteFile(combination.getAbsolutePath());
+            if (!temporary.renameTo(combination)) {
+                throw new IOException("Couldn't move " + temporary + " to " + combination);
+            }
+        } finally {
+            FileUtil.deleteFile(temporary.getAbsolutePath());
+        }
+        LogUtil.d(TAG, "Merging " + libraryNames.size() + " libraries' DEX files took "
+                + (System.currentTimeMillis() - savedTimeMillis) + " ms");
+
+        trim(combination);
+        merged = listMerged(combination);
+        if (merged == null) {
+            throw new IOException("Merged DEX files of libraries are missing in " + combination);
+        }
+        return merged;
+    }
+
+    /**
+     * @return Merged DEX files of a combination in order, or <code>null</code> if it hasn't been merged
+     */
+    private static List<File> listMerged(File combination) {
+        List<File> merged = new ArrayList<>();
+        for (int i = 1; ; i++) {
+            File dex = new File(combination, "classes" + i + ".dex");
+            if (!dex.isFile()) break;
+            merged.add(dex);
+        }
+        return merged.isEmpty() ? null : merged;
+    }
+
+    /**
+     * Deletes the least recently used combinations, apart from the one just merged.
+     */
+    private void trim(File keep) {
+        File[] combinations = directory.listFiles(File::isDirectory);
+        if (combinations == null || combinations.length <= MAX_COMBINATIONS) return;
+
+        Arrays.sort(combinations, Comparator.comparingLong(File::lastModified).reversed());
+        for (int i = MAX_COMBINATIONS; i < combinations.length; i++) {
+            if (!combinations[i].equals(keep)) {
+                LogUtil.d(TAG, "Deleting merged DEX files of libraries not used recently: " + combinations[i].getName());
+                FileUtil.deleteFile(combinations[i].getAbsolutePath());
+            }
+        }
+    }
+
+    private static String getKey(List<String> names, List<File> libraryDexes) {
+        StringBuilder key = new StringBuilder("dx=").append(Version.VERSION).append('\n');
+        int i = 0;
+        for (String name : names) {
+            File dex = libraryDexes.get(i++);
+            key.append(name).append(':').append(dex.length()).append(':').append(dex.lastModified()).append('\n');
+        }
+
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always available", e);
+        }
+    }
+}
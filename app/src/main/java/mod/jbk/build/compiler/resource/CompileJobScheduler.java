@@ -0,0 +1,101 @@
+package mod.jbk.build.compiler.resource;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import a.a.a.zy;
+import mod.jbk.util.LogUtil;
+
+/**
+ * Runs independent <code>aapt2 compile</code> jobs concurrently, with at most as many AAPT2
+ * processes at once as there are CPU cores.
+ */
+class CompileJobScheduler {
+    private static final String TAG = "CompileJobScheduler";
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors()));
+    private final ArrayList<Future<File>> results = new ArrayList<>();
+    private final ResourceCompiler.Compiler.ProgressListener progressListener;
+    private final int step;
+
+    /**
+     * @param progressListener Gets told how long every job took, may be <code>null</code>
+     * @param step             The build step to report job progress as
+     */
+    CompileJobScheduler(ResourceCompiler.Compiler.ProgressListener progressListener, int step) {
+        this.progressListener = progressListener;
+        this.step = step;
+    }
+
+    /**
+     * Starts a job as soon as a process slot is free.
+     *
+     * @param name What the job compiles, e.g. a library's name
+     */
+    void submit(String name, Job job) {
+        results.add(executor.submit(() -> {
+            long savedTimeMillis = System.currentTimeMillis();
+            File archive = job.run();
+            long took = System.currentTimeMillis() - savedTimeMillis;
+            LogUtil.d(TAG, "Compiling resources of " + name + " took " + took + " ms");
+            if (progressListener != null) {
+                progressListener.onProgressUpdate("Compiled resources of " + name + " in " + took + " ms", step);
+            }
+            return archive;
+        }));
+    }
+
+    /**
+     * Waits for all submitted jobs, and stops accepting new ones.
+     *
+     * @return The compiled archives, in the order their jobs were submitted
+     * @throws zy Thrown if any job failed, after cancelling the remaining ones
+     */
+    List<File> awaitAll() throws zy {
+        ArrayList<File> archives = new ArrayList<>(results.size());
+        try {
+            for (Future<File> result : results) {
+                archives.add(result.get());
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof zy compileError) {
+                throw compileError;
+            } else if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new zy(String.valueOf(cause));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new zy("Interrupted while compiling resources");
+        } finally {
+            executor.shutdownNow();
+        }
+        return archives;
+    }
+
+    /**
+     * Cancels all jobs, e.g. because another problem makes linking impossible anyway.
+     */
+    void cancel() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A single <code>aapt2 compile</code> invocation.
+     */
+    interface Job {
+        /**
+         * @return The compiled archive
+         */
+        File run() throws zy;
+    }
+}
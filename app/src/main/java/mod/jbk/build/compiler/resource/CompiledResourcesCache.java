@@ -0,0 +1,164 @@
+package mod.jbk.build.compiler.resource;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+import a.a.a.zy;
+import mod.jbk.build.incremental.ContentHasher;
+import mod.jbk.util.LogUtil;
+import pro.sketchware.utility.FileUtil;
+
+/**
+ * A content-addressed cache of archives compiled by <code>aapt2 compile --dir</code>.
+ * <p>
+ * Archives are keyed by the AAPT2 binary and the relative paths and contents of all files in a
+ * <code>res</code> directory, so the same library's resources only get compiled once, no matter
+ * how many projects use it. It is safe to use from multiple threads.
+ */
+public class CompiledResourcesCache {
+    private static final String TAG = "CompiledResourcesCache";
+    private static final String STAMPS_FILENAME = "stamps.json";
+    /**
+     * How many archives to keep. The least recently used ones get deleted first.
+     */
+    private static final int MAX_ARCHIVES = 64;
+
+    private final File directory;
+    private final File stampsFile;
+    private final ContentHasher hasher;
+    private final String toolchain;
+
+    /**
+     * @param directory Where to store archives
+     * @param aapt2     The AAPT2 binary compiling archives, which is part of every key
+     */
+    public CompiledResourcesCache(File directory, File aapt2) {
+        this.directory = directory;
+        stampsFile = new File(directory, STAMPS_FILENAME);
+        hasher = new ContentHasher(readStamps(stampsFile));
+        String aapt2Hash = hasher.hash(aapt2);
+        toolchain = aapt2Hash == null ? aapt2.getAbsolutePath() + "/" + aapt2.lastModified() : aapt2Hash;
+        directory.mkdirs();
+    }
+
+    private static HashMap<String, ContentHasher.Stamp> readStamps(File stampsFile) {
+        if (stampsFile.exists()) {
+            try {
+                return new Gson().fromJson(FileUtil.readFile(stampsFile.getAbsolutePath()),
+                        new TypeToken<HashMap<String, ContentHasher.Stamp>>() {
+                        }.getType());
+            } catch (Exception e) {
+                LogUtil.e(TAG, "Failed to read stamps, re-hashing resources", e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the compiled archive of a <code>res</code> directory, compiling it only if no archive of
+     * identical resources exists yet.
+     *
+     * @param resDirectory    The <code>res</code> directory to compile
+     * @param uncachedArchive Where to compile to if the directory's files can't be hashed
+     * @param compiler        Compiles the directory to the passed archive if needed
+     * @return The compiled archive, to be passed to <code>aapt2 link</code> as is
+     */
+    public File getOrCompile(File resDirectory, File uncachedArchive, ArchiveCompiler compiler) throws zy {
+        String key = getKey(resDirectory);
+        if (key == null) {
+            LogUtil.w(TAG, "Couldn't hash " + resDirectory.getAbsolutePath() + ", compiling it without caching");
+            compiler.compile(uncachedArchive);
+            return uncachedArchive;
+        }
+
+        File archive = new File(directory, key + ".zip");
+        if (archive.isFile()) {
+            LogUtil.d(TAG, "Using cached compiled resources of " + resDirectory.getAbsolutePath());
+            archive.setLastModified(System.currentTimeMillis());
+            return archive;
+        }
+
+        File temporaryArchive = new File(directory, key + "-" + Thread.currentThread().getId() + ".zip.tmp");
+        try {
+            compiler.compile(temporaryArchive);
+            if (!temporaryArchive.renameTo(archive) && !archive.isFile()) {
+                throw new zy("Couldn't move compiled resources of " + resDirectory.getAbsolutePath() + " to " + archive.getAbsolutePath());
+            }
+        } finally {
+            temporaryArchive.delete();
+        }
+        return archive;
+    }
+
+    private String getKey(File resDirectory) {
+        MessageDigest digest = ContentHasher.newDigest();
+        update(digest, toolchain);
+
+        String prefix = resDirectory.getAbsolutePath();
+        for (File file : listFilesSorted(resDirectory)) {
+            String hash = hasher.hash(file);
+            if (hash == null) return null;
+            update(digest, file.getAbsolutePath().substring(prefix.length()));
+            update(digest, hash);
+        }
+        return ContentHasher.toHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static List<File> listFilesSorted(File directory) {
+        ArrayList<File> result = new ArrayList<>();
+        File[] children = directory.listFiles();
+        if (children == null) return result;
+
+        Arrays.sort(children, Comparator.comparing(File::getName));
+        for (File child : children) {
+            if (child.isDirectory()) {
+                result.addAll(listFilesSorted(child));
+            } else {
+                result.add(child);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Saves hashes of resource files looked at, and deletes the least recently used archives
+     * if there are more than {@link #MAX_ARCHIVES}.
+     */
+    public synchronized void save() {
+        HashMap<String, ContentHasher.Stamp> stamps = readStamps(stampsFile);
+        if (stamps == null) stamps = new HashMap<>();
+        stamps.putAll(hasher.getTouchedStamps());
+        stamps.keySet().removeIf(path -> !new File(path).isFile());
+        FileUtil.writeFile(stampsFile.getAbsolutePath(), new Gson().toJson(stamps));
+
+        File[] archives = directory.listFiles((dir, name) -> name.endsWith(".zip"));
+        if (archives != null && archives.length > MAX_ARCHIVES) {
+            Arrays.sort(archives, Comparator.comparingLong(File::lastModified).reversed());
+            for (int i = MAX_ARCHIVES; i < archives.length; i++) {
+                LogUtil.d(TAG, "Evicting " + archives[i].getName());
+                archives[i].delete();
+            }
+        }
+    }
+
+    /**
+     * Compiles a <code>res</code> directory to an archive.
+     */
+    public interface ArchiveCompiler {
+        void compile(File archive) throws zy;
+    }
+}
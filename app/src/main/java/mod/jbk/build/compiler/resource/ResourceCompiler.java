@@ -2,12 +2,10 @@ package mod.jbk.build.compiler.resource;
 
 import static com.besome.sketch.Config.VAR_DEFAULT_TARGET_SDK_VERSION;
 
-import android.content.Context;
-import android.content.pm.PackageManager;
-
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 import a.a.a.Jp;
 import a.a.a.ProjectBuilder;
@@ -101,14 +99,21 @@ public class ResourceCompiler {
 
         private final File aapt2;
         private final ProjectBuilder buildHelper;
-        private final File compiledBuiltInLibraryResourcesDirectory;
+        private final CompiledResourcesCache compiledResourcesCache;
+        /**
+         * Archives to link, in order: built-in libraries', local libraries', the project's and imported resources.
+         */
+        private List<File> compiledArchives = new ArrayList<>();
         private ProgressListener progressListener;
 
         public Aapt2Compiler(ProjectBuilder buildHelper, File aapt2, boolean buildAppBundle) {
             this.buildHelper = buildHelper;
             this.aapt2 = aapt2;
             this.buildAppBundle = buildAppBundle;
-            compiledBuiltInLibraryResourcesDirectory = new File(SketchApplication.getContext().getCacheDir(), "compiledLibs");
+            File cacheDir = SketchApplication.getContext().getCacheDir();
+            /* Superseded by compiledResources */
+            FileUtil.deleteFile(new File(cacheDir, "compiledLibs").getAbsolutePath());
+            compiledResourcesCache = new CompiledResourcesCache(new File(cacheDir, "compiledResources"), aapt2);
         }
 
         @Override
@@ -120,17 +125,20 @@ public class ResourceCompiler {
             if (progressListener != null) {
                 progressListener.onProgressUpdate("Compiling resources with AAPT2...", 9);
             }
-            compileBuiltInLibraryResources();
-            LogUtil.d(TAG + ":c", "Compiling built-in library resources took " + (System.currentTimeMillis() - savedTimeMillis) + " ms");
-            savedTimeMillis = System.currentTimeMillis();
-            compileLocalLibraryResources(outputPath);
-            LogUtil.d(TAG + ":c", "Compiling local library resources took " + (System.currentTimeMillis() - savedTimeMillis) + " ms");
-            savedTimeMillis = System.currentTimeMillis();
-            compileProjectResources(outputPath);
-            LogUtil.d(TAG + ":c", "Compiling project generated resources took " + (System.currentTimeMillis() - savedTimeMillis) + " ms");
-            savedTimeMillis = System.currentTimeMillis();
-            compileImportedResources(outputPath);
-            LogUtil.d(TAG + ":c", "Compiling project imported resources took " + (System.currentTimeMillis() - savedTimeMillis) + " ms");
+            /* All compile jobs are independent of each other, only linking needs them all done */
+            CompileJobScheduler scheduler = new CompileJobScheduler(progressListener, 9);
+            try {
+                compileBuiltInLibraryResources(outputPath, scheduler);
+                compileLocalLibraryResources(outputPath, scheduler);
+                compileProjectResources(outputPath, scheduler);
+                compileImportedResources(outputPath, scheduler);
+            } catch (MissingFileException e) {
+                scheduler.cancel();
+                throw e;
+            }
+            compiledArchives = scheduler.awaitAll();
+            compiledResourcesCache.save();
+            LogUtil.d(TAG + ":c", "Compiling resources took " + (System.currentTimeMillis() - savedTimeMillis) + " ms");
 
             savedTimeMillis = System.currentTimeMillis();
             link();
@@ -143,7 +151,6 @@ public class ResourceCompiler {
          * @throws zy Thrown to be caught by DesignActivity to show an error Snackbar.
          */
         public void link() throws zy, MissingFileException {
-            String resourcesPath = buildHelper.yq.binDirectoryPath + File.separator + "res";
             if (progressListener != null)
                 progressListener.onProgressUpdate("Linking resources with AAPT2...", 10);
 
@@ -209,39 +216,10 @@ public class ResourceCompiler {
                 args.add(localLibraryAssetsDirectory);
             }
 
-            /* Include compiled built-in library resources */
-            for (Jp library : buildHelper.builtInLibraryManager.getLibraries()) {
-                if (library.hasResources()) {
-                    args.add("-R");
-                    args.add(new File(compiledBuiltInLibraryResourcesDirectory, library.getName() + ".zip").getAbsolutePath());
-                }
-            }
-
-            /* Include compiled local libraries' resources */
-            File[] filesInCompiledResourcesPath = new File(resourcesPath).listFiles();
-            if (filesInCompiledResourcesPath != null) {
-                for (File file : filesInCompiledResourcesPath) {
-                    if (file.isFile()) {
-                        if (!file.getName().equals("project.zip") || !file.getName().equals("project-imported.zip")) {
-                            args.add("-R");
-                            args.add(file.getAbsolutePath());
-                        }
-                    }
-                }
-            }
-
-            /* Include compiled project resources */
-            File projectArchive = new File(resourcesPath, "project.zip");
-            if (projectArchive.exists()) {
-                args.add("-R");
-                args.add(projectArchive.getAbsolutePath());
-            }
-
-            /* Include compiled imported project resources */
-            File projectImportedArchive = new File(resourcesPath, "project-imported.zip");
-            if (projectImportedArchive.exists()) {
+            /* Include compiled built-in libraries', local libraries', project and imported project resources */
+            for (File archive : compiledArchives) {
                 args.add("-R");
-                args.add(projectImportedArchive.getAbsolutePath());
+                args.add(archive.getAbsolutePath());
             }
 
             /* Add R.java */
@@ -278,23 +256,14 @@ public class ResourceCompiler {
             }
         }
 
-        private void compileProjectResources(String outputPath) throws zy, MissingFileException {
+        private void compileProjectResources(String outputPath, CompileJobScheduler scheduler) throws MissingFileException {
             compilingAssertDirectoryExists(buildHelper.yq.resDirectoryPath);
 
-            ArrayList<String> commands = new ArrayList<>();
-            commands.add(aapt2.getAbsolutePath());
-            commands.add("compile");
-            commands.add("--dir");
-            commands.add(buildHelper.yq.resDirectoryPath);
-            commands.add("-o");
-            commands.add(outputPath + File.separator + "project.zip");
-            LogUtil.d(TAG + ":cPR", "Now executing: " + commands);
-            BinaryExecutor executor = new BinaryExecutor();
-            executor.setCommands(commands);
-            if (!executor.execute().isEmpty()) {
-                LogUtil.e(TAG, executor.getLog());
-                throw new zy(executor.getLog());
-            }
+            File archive = new File(outputPath, "project.zip");
+            scheduler.submit("project", () -> {
+                compileDirectory(TAG + ":cPR", buildHelper.yq.resDirectoryPath, archive);
+                return archive;
+            });
         }
 
         private void emptyOrCreateDirectory(String path) {
@@ -304,7 +273,7 @@ public class ResourceCompiler {
             FileUtil.makeDir(path);
         }
 
-        private void compileLocalLibraryResources(String outputPath) throws zy, MissingFileException {
+        private void compileLocalLibraryResources(String outputPath, CompileJobScheduler scheduler) throws MissingFileException {
             int localLibrariesCount = buildHelper.mll.getResLocalLibrary().size();
             LogUtil.d(TAG + ":cLLR", "About to compile " + localLibrariesCount
                     + " local " + (localLibrariesCount == 1 ? "library" : "libraries"));
@@ -313,90 +282,59 @@ public class ResourceCompiler {
                 if (localLibraryDirectory != null) {
                     compilingAssertDirectoryExists(localLibraryResDirectory);
 
-                    ArrayList<String> commands = new ArrayList<>();
-                    commands.add(aapt2.getAbsolutePath());
-                    commands.add("compile");
-                    commands.add("--dir");
-                    commands.add(localLibraryResDirectory);
-                    commands.add("-o");
-                    commands.add(outputPath + File.separator + localLibraryDirectory.getName() + ".zip");
-
-                    LogUtil.d(TAG + ":cLLR", "Now executing: " + commands);
-                    BinaryExecutor executor = new BinaryExecutor();
-                    executor.setCommands(commands);
-                    if (!executor.execute().isEmpty()) {
-                        LogUtil.e(TAG, executor.getLog());
-                        throw new zy(executor.getLog());
-                    }
+                    scheduler.submit(localLibraryDirectory.getName(), () ->
+                            compiledResourcesCache.getOrCompile(new File(localLibraryResDirectory),
+                                    new File(outputPath, localLibraryDirectory.getName() + ".zip"),
+                                    archive -> compileDirectory(TAG + ":cLLR", localLibraryResDirectory, archive)));
                 }
             }
         }
 
-        private void compileBuiltInLibraryResources() throws zy, MissingFileException {
-            compiledBuiltInLibraryResourcesDirectory.mkdirs();
+        /**
+         * Runs <code>aapt2 compile --dir</code>.
+         *
+         * @throws zy Thrown if AAPT2 reported any problems
+         */
+        private void compileDirectory(String logTag, String resDirectory, File archive) throws zy {
+            ArrayList<String> commands = new ArrayList<>();
+            commands.add(aapt2.getAbsolutePath());
+            commands.add("compile");
+            commands.add("--dir");
+            commands.add(resDirectory);
+            commands.add("-o");
+            commands.add(archive.getAbsolutePath());
+
+            LogUtil.d(logTag, "Now executing: " + commands);
+            BinaryExecutor executor = new BinaryExecutor();
+            executor.setCommands(commands);
+            if (!executor.execute().isEmpty()) {
+                LogUtil.e(logTag, executor.getLog());
+                throw new zy(executor.getLog());
+            }
+        }
+
+        private void compileBuiltInLibraryResources(String outputPath, CompileJobScheduler scheduler) throws MissingFileException {
             for (Jp builtInLibrary : buildHelper.builtInLibraryManager.getLibraries()) {
                 if (builtInLibrary.hasResources()) {
-                    File cachedCompiledResources = new File(compiledBuiltInLibraryResourcesDirectory, builtInLibrary.getName() + ".zip");
                     String libraryResources = BuiltInLibraries.getLibraryResourcesPath(builtInLibrary.getName());
 
                     compilingAssertDirectoryExists(libraryResources);
 
-                    if (isBuiltInLibraryRecompilingNeeded(cachedCompiledResources)) {
-                        ArrayList<String> commands = new ArrayList<>();
-                        commands.add(aapt2.getAbsolutePath());
-                        commands.add("compile");
-                        commands.add("--dir");
-                        commands.add(libraryResources);
-                        commands.add("-o");
-                        commands.add(cachedCompiledResources.getAbsolutePath());
-
-                        LogUtil.d(TAG + ":cBILR", "Now executing: " + commands);
-                        BinaryExecutor executor = new BinaryExecutor();
-                        executor.setCommands(commands);
-                        if (!executor.execute().isEmpty()) {
-                            LogUtil.e(TAG + ":cBILR", executor.getLog());
-                            throw new zy(executor.getLog());
-                        }
-                    } else {
-                        LogUtil.d(TAG + ":cBILR", "Skipped resource recompilation for built-in library " + builtInLibrary.getName());
-                    }
+                    scheduler.submit(builtInLibrary.getName(), () ->
+                            compiledResourcesCache.getOrCompile(new File(libraryResources),
+                                    new File(outputPath, builtInLibrary.getName() + ".zip"),
+                                    archive -> compileDirectory(TAG + ":cBILR", libraryResources, archive)));
                 }
             }
         }
 
-        private boolean isBuiltInLibraryRecompilingNeeded(File cachedCompiledResources) {
-            if (cachedCompiledResources.exists()) {
-                try {
-                    Context context = SketchApplication.getContext();
-                    return context.getPackageManager().getPackageInfo(context.getPackageName(), 0)
-                            .lastUpdateTime > cachedCompiledResources.lastModified();
-                } catch (PackageManager.NameNotFoundException e) {
-                    LogUtil.e(TAG + ":iBILRN", "Couldn't get package info about ourselves: " + e.getMessage(), e);
-                }
-            } else {
-                LogUtil.d(TAG + ":iBILRN", "File " + cachedCompiledResources.getAbsolutePath()
-                        + " doesn't exist, forcing compilation");
-            }
-            return true;
-        }
-
-        private void compileImportedResources(String outputPath) throws zy {
-            if (FileUtil.isExistFile(buildHelper.fpu.getPathResource(buildHelper.yq.sc_id))
-                    && new File(buildHelper.fpu.getPathResource(buildHelper.yq.sc_id)).length() != 0) {
-                ArrayList<String> commands = new ArrayList<>();
-                commands.add(aapt2.getAbsolutePath());
-                commands.add("compile");
-                commands.add("--dir");
-                commands.add(buildHelper.fpu.getPathResource(buildHelper.yq.sc_id));
-                commands.add("-o");
-                commands.add(outputPath + File.separator + "project-imported.zip");
-                LogUtil.d(TAG + ":cIR", "Now executing: " + commands);
-                BinaryExecutor executor = new BinaryExecutor();
-                executor.setCommands(commands);
-                if (!executor.execute().isEmpty()) {
-                    LogUtil.e(TAG, executor.getLog());
-                    throw new zy(executor.getLog());
-                }
+        private void compileImportedResources(String outputPath, CompileJobScheduler scheduler) {
+            String importedResources = buildHelper.fpu.getPathResource(buildHelper.yq.sc_id);
+            if (FileUtil.isExistFile(importedResources) && new File(importedResources).length() != 0) {
+                scheduler.submit("project-imported", () ->
+                        compiledResourcesCache.getOrCompile(new File(importedResources),
+                                new File(outputPath, "project-imported.zip"),
+                                archive -> compileDirectory(TAG + ":cIR", importedResources, archive)));
             }
         }
 
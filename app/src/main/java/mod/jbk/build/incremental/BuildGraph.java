@@ -0,0 +1,332 @@
+package mod.jbk.build.incremental;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+import a.a.a.yq;
+import mod.hey.studios.build.BuildSettings;
+import mod.hey.studios.compiler.kotlin.KotlinCompilerUtil;
+import mod.hey.studios.project.proguard.ProguardHandler;
+import mod.hey.studios.project.stringfog.StringfogHandler;
+import mod.jbk.util.LogUtil;
+import pro.sketchware.SketchApplication;
+import pro.sketchware.utility.FileUtil;
+
+/**
+ * A persistent, content-hashed record of a project's build stages.
+ * <p>
+ * Each stage records a fingerprint of everything it depends on, and one of the outputs it produced.
+ * A stage is up-to-date if its inputs are the same as last time, and its outputs haven't been
+ * touched since, in which case {@link a.a.a.ProjectBuilder} skips it. Since stages consume the
+ * outputs of earlier stages as their inputs, a change only re-runs the stages it actually affects.
+ * <p>
+ * The graph lives in <code>bin/incremental</code> of a project's mysc directory, so
+ * "Clean temporary files" resets it as well.
+ */
+public class BuildGraph {
+    public static final String STAGE_RESOURCES = "resources";
+    public static final String STAGE_JAVA = "java";
+    public static final String STAGE_DEX = "dex";
+    public static final String STAGE_MERGE = "merge";
+    public static final String STAGE_APK = "apk";
+
+    private static final String TAG = "BuildGraph";
+    private static final int FORMAT_VERSION = 1;
+
+    private final File directory;
+    private final File graphFile;
+    private final State state;
+    private final ContentHasher hasher;
+    private final HashMap<String, String> pendingInputs = new HashMap<>();
+
+    private BuildGraph(File directory, State state) {
+        this.directory = directory;
+        graphFile = new File(directory, "build_graph.json");
+        this.state = state;
+        hasher = new ContentHasher(state.stamps);
+    }
+
+    /**
+     * @return If the project can be built incrementally. Kotlin and StringFog modify compiled classes
+     * in-place, and ProGuard/R8 work on the whole program, so projects using them are always built clean.
+     */
+    public static boolean canBuildIncrementally(yq workspace) {
+        String incrementalBuild = new BuildSettings(workspace.sc_id).getValue(BuildSettings.SETTING_INCREMENTAL_BUILD,
+                BuildSettings.SETTING_GENERIC_VALUE_TRUE);
+        if (!incrementalBuild.equals(BuildSettings.SETTING_GENERIC_VALUE_TRUE)) {
+            return false;
+        }
+        if (KotlinCompilerUtil.areAnyKtFilesPresent(workspace)) {
+            LogUtil.d(TAG, "Kotlin files present, building without the build graph");
+            return false;
+        }
+        if (new StringfogHandler(workspace.sc_id).isStringfogEnabled()) {
+            LogUtil.d(TAG, "StringFog enabled, building without the build graph");
+            return false;
+        }
+        if (new ProguardHandler(workspace.sc_id).isShrinkingEnabled()) {
+            LogUtil.d(TAG, "Shrinking enabled, building without the build graph");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Loads a project's build graph. If there's none, it's unreadable, or Sketchware Pro got updated since,
+     * an empty graph is returned, making every stage run.
+     */
+    public static BuildGraph load(yq workspace) {
+        File directory = getDirectory(workspace);
+        File graphFile = new File(directory, "build_graph.json");
+        String toolchain = getToolchainVersion();
+
+        State state = null;
+        if (graphFile.exists()) {
+            try {
+                state = new Gson().fromJson(FileUtil.readFile(graphFile.getAbsolutePath()), State.class);
+            } catch (Exception e) {
+                LogUtil.e(TAG, "Failed to read build graph, starting from scratch", e);
+            }
+        }
+
+        if (state == null || state.version != FORMAT_VERSION || !toolchain.equals(state.toolchain)
+                || state.stages == null || state.stamps == null) {
+            state = new State();
+            state.toolchain = toolchain;
+        }
+        return new BuildGraph(directory, state);
+    }
+
+    /**
+     * @return The directory of a project's build graph, where caches belonging to it can be stored as well.
+     */
+    public static File getDirectory(yq workspace) {
+        return new File(workspace.binDirectoryPath, "incremental");
+    }
+
+    private static String getToolchainVersion() {
+        Context context = SketchApplication.getContext();
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+            return info.versionName + "/" + info.lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return "unknown";
+        }
+    }
+
+    /**
+     * Deletes everything generated in a project's mysc directory that isn't tracked by the build graph,
+     * keeping <code>bin</code> and <code>gen</code>. It's the incremental counterpart of deleting the whole directory.
+     */
+    public static void deleteGeneratedSources(yq workspace) {
+        File[] files = new File(workspace.projectMyscPath).listFiles();
+        if (files == null) return;
+
+        File binDirectory = new File(workspace.binDirectoryPath);
+        File rJavaDirectory = new File(workspace.rJavaDirectoryPath);
+        for (File file : files) {
+            if (!file.equals(binDirectory) && !file.equals(rJavaDirectory)) {
+                FileUtil.deleteFile(file.getAbsolutePath());
+            }
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public ContentHasher getHasher() {
+        return hasher;
+    }
+
+    public Fingerprint newFingerprint() {
+        return new Fingerprint(hasher);
+    }
+
+    /**
+     * Checks if a stage can be skipped. If not, the stage's old record is dropped until
+     * {@link #markBuilt(String, File...)} gets called after the stage completed.
+     *
+     * @param stage  The stage, e.g. {@link #STAGE_JAVA}
+     * @param inputs Fingerprint of everything the stage depends on
+     */
+    public boolean isUpToDate(String stage, Fingerprint inputs) {
+        String inputsHash = inputs.get();
+        StageRecord record = state.stages.get(stage);
+
+        if (inputsHash != null && record != null && inputsHash.equals(record.inputs)) {
+            String outputsHash = fingerprintOf(record.outputs).get();
+            if (outputsHash != null && outputsHash.equals(record.outputsHash)) {
+                LogUtil.d(TAG, "Stage " + stage + " is up-to-date");
+                return true;
+            }
+            LogUtil.d(TAG, "Outputs of stage " + stage + " changed since the last build");
+        } else {
+            LogUtil.d(TAG, "Inputs of stage " + stage + " changed since the last build");
+        }
+
+        if (state.stages.remove(stage) != null) {
+            save();
+        }
+        if (inputsHash != null) {
+            pendingInputs.put(stage, inputsHash);
+        }
+        return false;
+    }
+
+    /**
+     * Records that a stage has completed with the inputs passed to {@link #isUpToDate(String, Fingerprint)} before.
+     *
+     * @param outputs Files and directories the stage produced
+     */
+    public void markBuilt(String stage, File... outputs) {
+        String inputsHash = pendingInputs.remove(stage);
+        if (inputsHash == null) return;
+
+        ArrayList<String> outputPaths = new ArrayList<>();
+        for (File output : outputs) {
+            outputPaths.add(output.getAbsolutePath());
+        }
+        String outputsHash = fingerprintOf(outputPaths).get();
+        if (outputsHash == null) {
+            LogUtil.w(TAG, "Couldn't fingerprint outputs of stage " + stage + ", it won't be skipped next time");
+            return;
+        }
+
+        StageRecord record = new StageRecord();
+        record.inputs = inputsHash;
+        record.outputs = outputPaths;
+        record.outputsHash = outputsHash;
+        state.stages.put(stage, record);
+        save();
+    }
+
+    private Fingerprint fingerprintOf(List<String> paths) {
+        Fingerprint fingerprint = newFingerprint();
+        for (String path : paths) {
+            fingerprint.addPath(new File(path));
+        }
+        return fingerprint;
+    }
+
+    public void save() {
+        state.stamps = hasher.getTouchedStamps();
+        FileUtil.writeFile(graphFile.getAbsolutePath(), new Gson().toJson(state));
+    }
+
+    /**
+     * Accumulates everything a stage depends on into a single hash.
+     */
+    public static class Fingerprint {
+        private static final byte[] SEPARATOR = {0};
+
+        private final ContentHasher hasher;
+        private final MessageDigest digest = ContentHasher.newDigest();
+        private boolean unreadable;
+
+        Fingerprint(ContentHasher hasher) {
+            this.hasher = hasher;
+        }
+
+        public Fingerprint add(String key, Object value) {
+            update(key);
+            update(String.valueOf(value));
+            return this;
+        }
+
+        /**
+         * Adds a file, or all files in a directory recursively, by content.
+         * Missing paths are recorded as such, so that their appearance changes the fingerprint.
+         */
+        public Fingerprint addPath(File path) {
+            update(path.getAbsolutePath());
+            if (path.isDirectory()) {
+                String prefix = path.getAbsolutePath();
+                for (File file : listFilesSorted(path)) {
+                    update(file.getAbsolutePath().substring(prefix.length()));
+                    addFileContent(file);
+                }
+            } else if (path.exists()) {
+                addFileContent(path);
+            } else {
+                update("<missing>");
+            }
+            return this;
+        }
+
+        /**
+         * Adds every entry of a <code>:</code>-separated path list, like a classpath.
+         */
+        public Fingerprint addPaths(String paths, File... excluded) {
+            List<File> excludedFiles = Arrays.asList(excluded);
+            for (String path : paths.split(":")) {
+                if (!path.trim().isEmpty() && !excludedFiles.contains(new File(path))) {
+                    addPath(new File(path));
+                }
+            }
+            return this;
+        }
+
+        /**
+         * @return The hex-encoded hash, or <code>null</code> if any input couldn't be read.
+         */
+        public String get() {
+            return unreadable ? null : ContentHasher.toHex(digest.digest());
+        }
+
+        private void addFileContent(File file) {
+            String hash = hasher.hash(file);
+            if (hash == null) {
+                unreadable = true;
+            } else {
+                update(hash);
+            }
+        }
+
+        private void update(String value) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+            digest.update(SEPARATOR);
+        }
+
+        private static List<File> listFilesSorted(File directory) {
+            ArrayList<File> result = new ArrayList<>();
+            File[] children = directory.listFiles();
+            if (children == null) return result;
+
+            Arrays.sort(children, Comparator.comparing(File::getName));
+            for (File child : children) {
+                if (child.isDirectory()) {
+                    result.addAll(listFilesSorted(child));
+                } else {
+                    result.add(child);
+                }
+            }
+            return result;
+        }
+    }
+
+    private static class State {
+        int version = FORMAT_VERSION;
+        String toolchain;
+        HashMap<String, StageRecord> stages = new HashMap<>();
+        HashMap<String, ContentHasher.Stamp> stamps = new HashMap<>();
+    }
+
+    private static class StageRecord {
+        String inputs;
+        ArrayList<String> outputs;
+        String outputsHash;
+    }
+}
@@ -0,0 +1,217 @@
+package mod.jbk.build.incremental;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * What the incremental Java compiler needs to know about a compiled class: its name, which source
+ * file it came from, which classes it references, and whether other classes might have inlined
+ * any of its constants.
+ */
+public class ClassFileInfo {
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int ACC_STATIC = 0x0008;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    /**
+     * Internal name, e.g. <code>com/my/project/MainActivity$1</code>.
+     */
+    public final String name;
+    /**
+     * Name of the source file without directories, e.g. <code>MainActivity.java</code>,
+     * or <code>null</code> if the class file doesn't say.
+     */
+    public final String sourceFile;
+    /**
+     * Internal names of all classes referenced, in code as well as in descriptors and signatures.
+     */
+    public final Set<String> references;
+    /**
+     * True if any static field has a compile-time constant value, which compilers copy into referencing classes.
+     */
+    public final boolean hasConstants;
+
+    private ClassFileInfo(String name, String sourceFile, Set<String> references, boolean hasConstants) {
+        this.name = name;
+        this.sourceFile = sourceFile;
+        this.references = references;
+        this.hasConstants = hasConstants;
+    }
+
+    /**
+     * @return The package part of {@link #name}, e.g. <code>com/my/project</code>, or an empty String
+     */
+    public String getPackage() {
+        int lastSlash = name.lastIndexOf('/');
+        return lastSlash == -1 ? "" : name.substring(0, lastSlash);
+    }
+
+    public static ClassFileInfo read(File classFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(classFile)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(classFile.getAbsolutePath() + " isn't a class file");
+            }
+            in.readUnsignedShort(); // minor_version
+            in.readUnsignedShort(); // major_version
+
+            int constantPoolCount = in.readUnsignedShort();
+            String[] utf8s = new String[constantPoolCount];
+            // Constant pool index of a class entry's name, by the class entry's own index
+            int[] classNameIndexes = new int[constantPoolCount];
+            for (int i = 1; i < constantPoolCount; i++) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                    case CONSTANT_UTF8 -> utf8s[i] = in.readUTF();
+                    case CONSTANT_CLASS -> classNameIndexes[i] = in.readUnsignedShort();
+                    case CONSTANT_STRING, CONSTANT_METHOD_TYPE, CONSTANT_MODULE, CONSTANT_PACKAGE ->
+                            in.readUnsignedShort();
+                    case CONSTANT_METHOD_HANDLE -> {
+                        in.readUnsignedByte();
+                        in.readUnsignedShort();
+                    }
+                    case CONSTANT_INTEGER, CONSTANT_FLOAT, CONSTANT_FIELDREF, CONSTANT_METHODREF,
+                         CONSTANT_INTERFACE_METHODREF, CONSTANT_NAME_AND_TYPE, CONSTANT_DYNAMIC,
+                         CONSTANT_INVOKE_DYNAMIC -> in.readInt();
+                    case CONSTANT_LONG, CONSTANT_DOUBLE -> {
+                        in.readLong();
+                        // 8-byte constants take up two entries
+                        i++;
+                    }
+                    default -> throw new IOException("Unknown constant pool tag " + tag + " in "
+                            + classFile.getAbsolutePath());
+                }
+            }
+
+            Set<String> references = new HashSet<>();
+            for (int classNameIndex : classNameIndexes) {
+                if (classNameIndex == 0) continue;
+                String className = utf8s[classNameIndex];
+                if (className.startsWith("[")) {
+                    addDescriptorReferences(className, references);
+                } else {
+                    references.add(className);
+                }
+            }
+            // Types only used in method or field descriptors, or in generic signatures, have no class entry
+            for (String utf8 : utf8s) {
+                if (utf8 != null && utf8.indexOf(';') != -1) {
+                    addDescriptorReferences(utf8, references);
+                }
+            }
+
+            in.readUnsignedShort(); // access_flags
+            String name = utf8s[classNameIndexes[in.readUnsignedShort()]];
+            references.remove(name);
+            in.readUnsignedShort(); // super_class
+            int interfacesCount = in.readUnsignedShort();
+            for (int i = 0; i < interfacesCount; i++) {
+                in.readUnsignedShort();
+            }
+
+            boolean hasConstants = false;
+            int fieldsCount = in.readUnsignedShort();
+            for (int i = 0; i < fieldsCount; i++) {
+                boolean isStatic = (in.readUnsignedShort() & ACC_STATIC) != 0;
+                in.readUnsignedShort(); // name_index
+                in.readUnsignedShort(); // descriptor_index
+                int attributesCount = in.readUnsignedShort();
+                for (int j = 0; j < attributesCount; j++) {
+                    String attributeName = utf8s[in.readUnsignedShort()];
+                    if (isStatic && "ConstantValue".equals(attributeName)) {
+                        hasConstants = true;
+                    }
+                    skipFully(in, in.readInt());
+                }
+            }
+
+            int methodsCount = in.readUnsignedShort();
+            for (int i = 0; i < methodsCount; i++) {
+                in.readUnsignedShort(); // access_flags
+                in.readUnsignedShort(); // name_index
+                in.readUnsignedShort(); // descriptor_index
+                int attributesCount = in.readUnsignedShort();
+                for (int j = 0; j < attributesCount; j++) {
+                    in.readUnsignedShort(); // attribute_name_index
+                    skipFully(in, in.readInt());
+                }
+            }
+
+            String sourceFile = null;
+            int attributesCount = in.readUnsignedShort();
+            for (int i = 0; i < attributesCount; i++) {
+                String attributeName = utf8s[in.readUnsignedShort()];
+                int length = in.readInt();
+                if ("SourceFile".equals(attributeName)) {
+                    sourceFile = utf8s[in.readUnsignedShort()];
+                    skipFully(in, length - 2);
+                } else {
+                    skipFully(in, length);
+                }
+            }
+
+            return new ClassFileInfo(name, sourceFile, references, hasConstants);
+        }
+    }
+
+    private static void addDescriptorReferences(String descriptor, Set<String> references) {
+        int start = descriptor.indexOf('L');
+        while (start != -1) {
+            int end = start + 1;
+            while (end < descriptor.length()) {
+                char c = descriptor.charAt(end);
+                if (c == ';' || c == '<') break;
+                end++;
+            }
+            if (end < descriptor.length() && end > start + 1) {
+                String candidate = descriptor.substring(start + 1, end);
+                if (isInternalName(candidate)) {
+                    references.add(candidate);
+                }
+            }
+            start = descriptor.indexOf('L', end);
+        }
+    }
+
+    private static boolean isInternalName(String candidate) {
+        for (int i = 0; i < candidate.length(); i++) {
+            char c = candidate.charAt(i);
+            if (c != '/' && c != '$' && c != '_' && !Character.isLetterOrDigit(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        int skipped = 0;
+        while (skipped < length) {
+            int skippedNow = in.skipBytes(length - skipped);
+            if (skippedNow <= 0) {
+                throw new IOException("Unexpected end of class file");
+            }
+            skipped += skippedNow;
+        }
+    }
+}
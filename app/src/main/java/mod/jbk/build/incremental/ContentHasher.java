@@ -0,0 +1,129 @@
+package mod.jbk.build.incremental;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import mod.jbk.util.LogUtil;
+
+/**
+ * Hashes files by content, remembering each file's size and modification time so that
+ * unchanged files don't have to be read again.
+ */
+public class ContentHasher {
+    private static final String TAG = "ContentHasher";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Map<String, Stamp> stamps;
+    private final Set<String> touchedPaths = ConcurrentHashMap.newKeySet();
+
+    public ContentHasher() {
+        this(null);
+    }
+
+    public ContentHasher(Map<String, Stamp> previousStamps) {
+        stamps = previousStamps == null ? new ConcurrentHashMap<>() : new ConcurrentHashMap<>(previousStamps);
+    }
+
+    /**
+     * Hashes a file with SHA-256 and returns it as lowercase hex.
+     *
+     * @throws IOException Thrown if the file couldn't be read
+     */
+    public static String hashContent(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = digits[(bytes[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = digits[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Returns the SHA-256 hash of a file, re-using the previous hash if the file's size and
+     * modification time haven't changed.
+     *
+     * @return The file's hash, or <code>null</code> if it doesn't exist or couldn't be read
+     */
+    public String hash(File file) {
+        String path = file.getAbsolutePath();
+        if (!file.isFile()) {
+            stamps.remove(path);
+            return null;
+        }
+
+        long length = file.length();
+        long lastModified = file.lastModified();
+        touchedPaths.add(path);
+
+        Stamp stamp = stamps.get(path);
+        if (stamp != null && stamp.length == length && stamp.lastModified == lastModified) {
+            return stamp.hash;
+        }
+
+        try {
+            String hash = hashContent(file);
+            stamps.put(path, new Stamp(length, lastModified, hash));
+            return hash;
+        } catch (IOException e) {
+            LogUtil.e(TAG, "Couldn't hash " + path, e);
+            stamps.remove(path);
+            return null;
+        }
+    }
+
+    /**
+     * @return The stamps of all files hashed through this instance, without stale ones of files
+     * that weren't looked at anymore.
+     */
+    public HashMap<String, Stamp> getTouchedStamps() {
+        HashMap<String, Stamp> touched = new HashMap<>();
+        for (String path : touchedPaths) {
+            Stamp stamp = stamps.get(path);
+            if (stamp != null) {
+                touched.put(path, stamp);
+            }
+        }
+        return touched;
+    }
+
+    public static class Stamp {
+        public long length;
+        public long lastModified;
+        public String hash;
+
+        public Stamp(long length, long lastModified, String hash) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+}
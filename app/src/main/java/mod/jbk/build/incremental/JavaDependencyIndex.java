@@ -0,0 +1,270 @@
+package mod.jbk.build.incremental;
+
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import mod.jbk.util.LogUtil;
+import pro.sketchware.utility.FileUtil;
+
+/**
+ * Remembers which classes every Java source file compiled to, and which other source files they reference,
+ * so that after a change only the changed source files and those depending on them need to be recompiled.
+ * <p>
+ * Dependencies are read from the compiled classes' constant pools. Compile-time constants get inlined
+ * without leaving a trace there, so changing a source file with static constants recompiles everything.
+ */
+public class JavaDependencyIndex {
+    private static final String TAG = "JavaDependencyIndex";
+    private static final int FORMAT_VERSION = 1;
+    private static final Pattern PACKAGE_DECLARATION = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;", Pattern.MULTILINE);
+
+    private final File indexFile;
+    private final File classesDirectory;
+    private final ContentHasher hasher;
+    private State state;
+
+    /**
+     * @param graph            The build graph to store the index along with
+     * @param classesDirectory Where compiled classes are written to
+     */
+    public JavaDependencyIndex(BuildGraph graph, File classesDirectory) {
+        indexFile = new File(graph.getDirectory(), "java_index.json");
+        this.classesDirectory = classesDirectory;
+        hasher = graph.getHasher();
+
+        if (indexFile.exists()) {
+            try {
+                state = new Gson().fromJson(FileUtil.readFile(indexFile.getAbsolutePath()), State.class);
+            } catch (Exception e) {
+                LogUtil.e(TAG, "Failed to read Java dependency index, compiling everything", e);
+            }
+        }
+        if (state != null && (state.version != FORMAT_VERSION || state.sources == null)) {
+            state = null;
+        }
+    }
+
+    /**
+     * Finds the source files that need to be compiled, and deletes classes they compiled to previously.
+     *
+     * @param configuration     Fingerprint of everything besides sources that affects compiling, like the classpath
+     * @param sourceDirectories Directories containing all of the project's Java source files
+     * @return Source files to compile against the existing classes, or <code>null</code> if everything
+     * has to be compiled from scratch
+     */
+    public List<File> getSourcesToCompile(String configuration, List<File> sourceDirectories) {
+        if (state == null || !state.complete || configuration == null || !configuration.equals(state.configuration)) {
+            LogUtil.d(TAG, "No usable dependency index, compiling all Java files");
+            return null;
+        }
+        if (!classesDirectory.isDirectory()) {
+            LogUtil.d(TAG, "Compiled classes are missing, compiling all Java files");
+            return null;
+        }
+
+        Map<String, File> currentSources = listSources(sourceDirectories);
+        ArrayList<String> added = new ArrayList<>();
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, File> source : currentSources.entrySet()) {
+            SourceRecord record = state.sources.get(source.getKey());
+            String hash = hasher.hash(source.getValue());
+            if (hash == null) {
+                return null;
+            } else if (record == null) {
+                added.add(source.getKey());
+            } else if (!hash.equals(record.hash)) {
+                changed.add(source.getKey());
+            }
+        }
+        for (String path : state.sources.keySet()) {
+            if (!currentSources.containsKey(path)) {
+                changed.add(path);
+            }
+        }
+
+        if (added.isEmpty() && changed.isEmpty()) {
+            LogUtil.d(TAG, "No Java files changed, but compiled classes did, compiling all Java files");
+            return null;
+        }
+        for (String path : changed) {
+            if (state.sources.get(path).hasConstants) {
+                LogUtil.d(TAG, path + " has constants which may have been inlined elsewhere, compiling all Java files");
+                return null;
+            }
+        }
+
+        Set<String> affected = getWithDependents(changed);
+        ArrayList<File> toCompile = new ArrayList<>();
+        for (String path : affected) {
+            File source = currentSources.get(path);
+            if (source != null) {
+                toCompile.add(source);
+            }
+        }
+        for (String path : added) {
+            toCompile.add(currentSources.get(path));
+        }
+        if (toCompile.size() * 2 > currentSources.size()) {
+            LogUtil.d(TAG, toCompile.size() + " of " + currentSources.size() + " Java files are affected, compiling all of them");
+            return null;
+        }
+
+        for (String path : affected) {
+            for (String className : state.sources.get(path).classes) {
+                File classFile = new File(classesDirectory, className + ".class");
+                if (classFile.exists() && !classFile.delete()) {
+                    LogUtil.w(TAG, "Failed to delete " + classFile.getAbsolutePath());
+                    return null;
+                }
+            }
+        }
+        toCompile.sort(Comparator.comparing(File::getAbsolutePath));
+        LogUtil.d(TAG, added.size() + " added and " + changed.size() + " changed or deleted Java files affect "
+                + toCompile.size() + " of " + currentSources.size() + " Java files: " + toCompile);
+        return toCompile;
+    }
+
+    private Set<String> getWithDependents(Set<String> paths) {
+        Map<String, List<String>> dependents = new HashMap<>();
+        for (Map.Entry<String, SourceRecord> source : state.sources.entrySet()) {
+            for (String dependency : source.getValue().dependencies) {
+                dependents.computeIfAbsent(dependency, key -> new ArrayList<>()).add(source.getKey());
+            }
+        }
+
+        Set<String> result = new HashSet<>(paths);
+        Deque<String> queue = new ArrayDeque<>(paths);
+        while (!queue.isEmpty()) {
+            List<String> sourceDependents = dependents.get(queue.poll());
+            if (sourceDependents == null) continue;
+            for (String dependent : sourceDependents) {
+                if (result.add(dependent)) {
+                    queue.add(dependent);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Re-indexes all compiled classes after compiling succeeded.
+     */
+    public void update(String configuration, List<File> sourceDirectories) {
+        long savedTimeMillis = System.currentTimeMillis();
+        Map<String, File> currentSources = listSources(sourceDirectories);
+
+        State newState = new State();
+        newState.configuration = configuration;
+        newState.complete = configuration != null;
+
+        Map<String, String> sourcesByClassSource = new HashMap<>();
+        for (Map.Entry<String, File> source : currentSources.entrySet()) {
+            SourceRecord record = new SourceRecord();
+            record.hash = hasher.hash(source.getValue());
+            SourceRecord oldRecord = state == null ? null : state.sources.get(source.getKey());
+            record.packageName = oldRecord != null && oldRecord.hash != null && oldRecord.hash.equals(record.hash) ?
+                    oldRecord.packageName : readPackageName(source.getValue());
+            if (record.hash == null) newState.complete = false;
+            newState.sources.put(source.getKey(), record);
+
+            String packagePath = record.packageName.replace('.', '/');
+            sourcesByClassSource.put((packagePath.isEmpty() ? "" : packagePath + "/") + source.getValue().getName(), source.getKey());
+        }
+
+        Map<String, String> sourceByClass = new HashMap<>();
+        ArrayList<ClassFileInfo> classes = new ArrayList<>();
+        for (File classFile : FileUtil.listFilesRecursively(classesDirectory, ".class")) {
+            try {
+                ClassFileInfo info = ClassFileInfo.read(classFile);
+                String packagePath = info.getPackage();
+                String source = info.sourceFile == null ? null :
+                        sourcesByClassSource.get((packagePath.isEmpty() ? "" : packagePath + "/") + info.sourceFile);
+                if (source == null) {
+                    LogUtil.w(TAG, "Don't know which Java file " + classFile.getAbsolutePath() + " was compiled from");
+                    newState.complete = false;
+                    continue;
+                }
+                sourceByClass.put(info.name, source);
+                classes.add(info);
+
+                SourceRecord record = newState.sources.get(source);
+                record.classes.add(info.name);
+                record.hasConstants |= info.hasConstants;
+            } catch (IOException e) {
+                LogUtil.e(TAG, "Failed to read " + classFile.getAbsolutePath(), e);
+                newState.complete = false;
+            }
+        }
+
+        for (ClassFileInfo info : classes) {
+            String source = sourceByClass.get(info.name);
+            SourceRecord record = newState.sources.get(source);
+            for (String reference : info.references) {
+                String dependency = sourceByClass.get(reference);
+                if (dependency != null && !dependency.equals(source) && !record.dependencies.contains(dependency)) {
+                    record.dependencies.add(dependency);
+                }
+            }
+        }
+
+        state = newState;
+        FileUtil.writeFile(indexFile.getAbsolutePath(), new Gson().toJson(state));
+        LogUtil.d(TAG, "Indexing " + classes.size() + " classes of " + currentSources.size() + " Java files took "
+                + (System.currentTimeMillis() - savedTimeMillis) + " ms");
+    }
+
+    /**
+     * Forgets everything, so that the next build compiles all Java files.
+     */
+    public void invalidate() {
+        state = null;
+        FileUtil.deleteFile(indexFile.getAbsolutePath());
+    }
+
+    private static Map<String, File> listSources(List<File> sourceDirectories) {
+        Map<String, File> sources = new HashMap<>();
+        for (File directory : sourceDirectories) {
+            if (!directory.isDirectory()) continue;
+            for (File source : FileUtil.listFilesRecursively(directory, ".java")) {
+                sources.put(source.getAbsolutePath(), source);
+            }
+        }
+        return sources;
+    }
+
+    private static String readPackageName(File source) {
+        Matcher matcher = PACKAGE_DECLARATION.matcher(FileUtil.readFile(source.getAbsolutePath()));
+        return matcher.find() ? matcher.group(1) : "";
+    }
+
+    private static class State {
+        int version = FORMAT_VERSION;
+        String configuration;
+        boolean complete;
+        HashMap<String, SourceRecord> sources = new HashMap<>();
+    }
+
+    private static class SourceRecord {
+        String hash;
+        String packageName;
+        boolean hasConstants;
+        ArrayList<String> classes = new ArrayList<>();
+        /**
+         * Source files this one references classes of.
+         */
+        ArrayList<String> dependencies = new ArrayList<>();
+    }
+}
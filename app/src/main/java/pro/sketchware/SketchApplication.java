@@ -8,6 +8,7 @@ import android.util.Log;
 
 import com.besome.sketch.tools.CollectErrorActivity;
 
+import pro.sketchware.utility.ImageCache;
 import pro.sketchware.utility.theme.ThemeManager;
 
 public class SketchApplication extends Application {
@@ -34,4 +35,12 @@ public class SketchApplication extends Application {
         super.onCreate();
         ThemeManager.applyTheme(this, ThemeManager.getCurrentTheme(this));
     }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            ImageCache.clear();
+        }
+    }
 }
@@ -46,6 +46,11 @@ public class ChatActivity extends BaseAppCompatActivity {
     // Streaming state
     private ChatMessage streamingMessage = null;
     private int streamingMessagePosition = -1;
+    /**
+     * Text streamed so far for {@link #streamingMessage}, only set as its content when needed, see
+     * {@link #syncStreamingContent()}
+     */
+    private final StringBuilder streamingContent = new StringBuilder();
     
     // Chat settings
     private boolean thinkingModeEnabled = true;
@@ -118,7 +123,7 @@ public class ChatActivity extends BaseAppCompatActivity {
     
     private void setupMessagesSection() {
         List<ChatMessage> messages = (currentConversation != null) ? currentConversation.getMessages() : new ArrayList<>();
-        messageAdapter = new ChatMessageAdapter(messages, new ChatMessageAdapter.OnMessageActionListener() {
+        messageAdapter = new ChatMessageAdapter(this, messages, new ChatMessageAdapter.OnMessageActionListener() {
             @Override
             public void onCopyMessage(ChatMessage message) {
                 copyMessageToClipboard(message);
@@ -283,6 +288,7 @@ public class ChatActivity extends BaseAppCompatActivity {
                         selectedModel
                     );
                     streamingMessage.setStreaming(true);
+                    streamingContent.setLength(0);
                     currentConversation.addMessage(streamingMessage);
                     streamingMessagePosition = currentConversation.getMessages().size() - 1;
                     updateMessagesUI();
@@ -298,11 +304,10 @@ public class ChatActivity extends BaseAppCompatActivity {
             }
             
             @Override
-            public void onAiStreamUpdate(String partialResponse, boolean isFinal) {
+            public void onAiStreamDelta(String delta) {
                 runOnUiThread(() -> {
                     if (streamingMessage != null) {
-                        streamingMessage.setContent(partialResponse);
-                        streamingMessage.setStreaming(!isFinal);
+                        streamingContent.append(delta);
                         if (streamingMessagePosition >= 0) {
 
                             LinearLayoutManager layoutManager = (LinearLayoutManager) binding.recyclerChatMessages.getLayoutManager();
@@ -315,12 +320,14 @@ public class ChatActivity extends BaseAppCompatActivity {
                                 }
                             }
 
-                            messageAdapter.notifyItemChanged(streamingMessagePosition, "STREAM_UPDATE");
+                            messageAdapter.appendStreamingContent(streamingMessage, delta, streamingMessagePosition);
 
                             if (isAtBottom) {
                                 binding.recyclerChatMessages.scrollToPosition(messageAdapter.getItemCount() - 1);
                             }
                         } else {
+                            // Rebinding renders the message's content, as the adapter isn't streaming it
+                            syncStreamingContent();
                             messageAdapter.notifyDataSetChanged();
                         }
                     }
@@ -334,6 +341,7 @@ public class ChatActivity extends BaseAppCompatActivity {
                         streamingMessage.setContent(fullResponse);
                         streamingMessage.setModelName(modelName);
                         streamingMessage.setStreaming(false);
+                        messageAdapter.finishStreaming();
                         if (streamingMessagePosition >= 0) {
                             messageAdapter.notifyItemChanged(streamingMessagePosition);
                         } else {
@@ -343,6 +351,7 @@ public class ChatActivity extends BaseAppCompatActivity {
                         // Reset streaming state
                         streamingMessage = null;
                         streamingMessagePosition = -1;
+                        streamingContent.setLength(0);
                     }
                     
                     // Update conversation title if it's the first exchange
@@ -356,11 +365,37 @@ public class ChatActivity extends BaseAppCompatActivity {
             public void onAiError(String error) {
                 runOnUiThread(() -> {
                     Toast.makeText(ChatActivity.this, "AI Error: " + error, Toast.LENGTH_LONG).show();
+                    if (streamingMessage != null) {
+                        // Keep what got streamed before the error, as a finished message
+                        syncStreamingContent();
+                        streamingMessage.setStreaming(false);
+                        messageAdapter.finishStreaming();
+                        if (streamingMessagePosition >= 0) {
+                            messageAdapter.notifyItemChanged(streamingMessagePosition);
+                        } else {
+                            messageAdapter.notifyDataSetChanged();
+                        }
+                        conversationManager.saveConversation(currentConversation);
+                        streamingMessage = null;
+                        streamingMessagePosition = -1;
+                        streamingContent.setLength(0);
+                    }
                 });
             }
         });
     }
     
+    /**
+     * Sets the text streamed so far as {@link #streamingMessage}'s content, for when it's needed before
+     * the response is complete, e.g. to copy or save it. Not done for every delta, as that would copy
+     * the whole response each time.
+     */
+    private void syncStreamingContent() {
+        if (streamingMessage != null) {
+            streamingMessage.setContent(streamingContent.toString());
+        }
+    }
+
     private void updateMessagesUI() {
         if (currentConversation.getMessages().isEmpty()) {
             binding.layoutEmptyMessages.setVisibility(View.VISIBLE);
@@ -511,6 +546,7 @@ public class ChatActivity extends BaseAppCompatActivity {
                 if (!newTitle.isEmpty()) {
                     currentConversation.setTitle(newTitle);
                     binding.toolbar.setTitle(newTitle);
+                    syncStreamingContent();
                     conversationManager.saveConversation(currentConversation);
                 }
             })
@@ -544,6 +580,7 @@ public class ChatActivity extends BaseAppCompatActivity {
     }
     
     private void copyMessageToClipboard(ChatMessage message) {
+        if (message == streamingMessage) syncStreamingContent();
         ClipboardManager clipboard = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
         ClipData clip = ClipData.newPlainText("Chat Message", message.getContent());
         clipboard.setPrimaryClip(clip);
@@ -551,6 +588,7 @@ public class ChatActivity extends BaseAppCompatActivity {
     }
     
     private void shareMessage(ChatMessage message) {
+        if (message == streamingMessage) syncStreamingContent();
         Intent shareIntent = new Intent(Intent.ACTION_SEND);
         shareIntent.setType("text/plain");
         shareIntent.putExtra(Intent.EXTRA_TEXT, message.getContent());
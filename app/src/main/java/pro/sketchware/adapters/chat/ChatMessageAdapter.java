@@ -1,7 +1,10 @@
 package pro.sketchware.adapters.chat;
 
+import android.content.Context;
+import android.text.Spannable;
 import android.view.LayoutInflater;
 import android.view.ViewGroup;
+import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
@@ -11,9 +14,11 @@ import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 
+import io.noties.markwon.Markwon;
 import pro.sketchware.databinding.ItemMessageAiBinding;
 import pro.sketchware.databinding.ItemMessageUserBinding;
 import pro.sketchware.models.chat.ChatMessage;
+import pro.sketchware.utility.chat.StreamingMarkdown;
 
 public class ChatMessageAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
     
@@ -23,15 +28,24 @@ public class ChatMessageAdapter extends RecyclerView.Adapter<RecyclerView.ViewHo
     private List<ChatMessage> messages;
     private final OnMessageActionListener listener;
     private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
+    private final Markwon markwon;
+
+    /**
+     * The message being streamed, whose content is rendered by {@link #streamingMarkdown} as it's appended
+     */
+    private ChatMessage streamingMessage;
+    private StreamingMarkdown streamingMarkdown;
     
     public interface OnMessageActionListener {
         void onCopyMessage(ChatMessage message);
         void onShareMessage(ChatMessage message);
     }
     
-    public ChatMessageAdapter(List<ChatMessage> messages, OnMessageActionListener listener) {
+    public ChatMessageAdapter(Context context, List<ChatMessage> messages, OnMessageActionListener listener) {
         this.messages = messages;
         this.listener = listener;
+        // Created right away, since messages can be streamed before the RecyclerView is attached
+        markwon = Markwon.create(context);
     }
 
     public void setMessages(List<ChatMessage> messages) {
@@ -39,6 +53,26 @@ public class ChatMessageAdapter extends RecyclerView.Adapter<RecyclerView.ViewHo
         notifyDataSetChanged();
     }
 
+    /**
+     * Appends text streamed for a message, and updates it without rendering all of its content again.
+     */
+    public void appendStreamingContent(ChatMessage message, String delta, int position) {
+        if (streamingMessage != message) {
+            streamingMessage = message;
+            streamingMarkdown = new StreamingMarkdown(markwon);
+        }
+        streamingMarkdown.append(delta);
+        notifyItemChanged(position, "STREAM_UPDATE");
+    }
+
+    /**
+     * Stops rendering the streamed message incrementally, for when its full content has been set.
+     */
+    public void finishStreaming() {
+        streamingMessage = null;
+        streamingMarkdown = null;
+    }
+
     @Override
     public int getItemViewType(int position) {
         return messages.get(position).isFromUser() ? VIEW_TYPE_USER : VIEW_TYPE_AI;
@@ -81,7 +115,7 @@ public class ChatMessageAdapter extends RecyclerView.Adapter<RecyclerView.ViewHo
             ChatMessage message = messages.get(position);
             for (Object payload : payloads) {
                 if ("STREAM_UPDATE".equals(payload)) {
-                    ((AIMessageViewHolder) holder).updateContent(message.getContent());
+                    ((AIMessageViewHolder) holder).updateContent(message);
                 }
             }
         }
@@ -112,14 +146,30 @@ public class ChatMessageAdapter extends RecyclerView.Adapter<RecyclerView.ViewHo
         public AIMessageViewHolder(ItemMessageAiBinding binding) {
             super(binding.getRoot());
             this.binding = binding;
+            // Show a streamed message's rendered content as is, instead of copying it for every update
+            binding.textMessageContent.setSpannableFactory(new Spannable.Factory() {
+                @Override
+                public Spannable newSpannable(CharSequence source) {
+                    return source instanceof Spannable spannable ? spannable : super.newSpannable(source);
+                }
+            });
         }
 
-        public void updateContent(String content) {
-            binding.textMessageContent.setText(content);
+        public void updateContent(ChatMessage message) {
+            if (message == streamingMessage) {
+                Spannable display = streamingMarkdown.getDisplay();
+                // The TextView already shows the same, updated Spannable, which it noticed changing
+                if (binding.textMessageContent.getText() != display) {
+                    binding.textMessageContent.setText(display, TextView.BufferType.SPANNABLE);
+                }
+            } else {
+                // Finished responses are rendered as Markdown too, so that they look the same as while streamed
+                markwon.setMarkdown(binding.textMessageContent, message.getContent());
+            }
         }
 
         public void bind(ChatMessage message) {
-            binding.textMessageContent.setText(message.getContent());
+            updateContent(message);
             binding.textTimestamp.setText(timeFormat.format(new Date(message.getTimestamp())));
 
             // Format model name to remove provider prefix if present
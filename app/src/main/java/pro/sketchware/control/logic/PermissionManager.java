@@ -3,6 +3,7 @@ package pro.sketchware.control.logic;
 import com.besome.sketch.beans.BlockBean;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map.Entry;
 
 import a.a.a.Jx;
@@ -11,32 +12,11 @@ import a.a.a.jq;
 
 public class PermissionManager {
 
-    private final String javaName;
-    private final String sc_id;
+    private final BlockPermissions blockPermissions;
     public boolean hasPermission = false;
 
-    public PermissionManager(String id, String javaName) {
-        this.javaName = javaName;
-        sc_id = id;
-    }
-
-    private ArrayList<String> addedPermissions() {
-        ArrayList<String> permList = new ArrayList<>();
-        for (Entry<String, ArrayList<BlockBean>> blocks : jC.a(sc_id).b(javaName).entrySet()) {
-            for (BlockBean block : blocks.getValue()) {
-                if (block.opCode.equals("addPermission")) {
-                    String firstParam = block.parameters.get(0);
-                    if (!firstParam.trim().isEmpty()) {
-                        if (firstParam.startsWith("Manifest")) {
-                            permList.add(firstParam);
-                        } else {
-                            permList.add("Manifest.permission." + firstParam);
-                        }
-                    }
-                }
-            }
-        }
-        return permList;
+    public PermissionManager(BlockPermissions blockPermissions) {
+        this.blockPermissions = blockPermissions;
     }
 
     private String formatPermission(boolean isAppCompat, String permission) {
@@ -48,26 +28,21 @@ public class PermissionManager {
     }
 
     private void addReqPermission(boolean isAppCompat, ArrayList<String> checkPerm, ArrayList<String> reqPerm) {
-        for (String permission : addedPermissions()) {
+        for (String permission : blockPermissions.added) {
             checkPerm.add(formatPermission(isAppCompat, permission));
             reqPerm.add(permission);
         }
     }
 
     private void removePermission(boolean isAppCompat, ArrayList<String> checkPerm, ArrayList<String> reqPerm) {
-        for (Entry<String, ArrayList<BlockBean>> blocks : jC.a(sc_id).b(javaName).entrySet()) {
-            for (BlockBean block : blocks.getValue()) {
-                if (block.opCode.equals("removePermission") && !block.parameters.get(0).trim().isEmpty()) {
-                    String permission = block.parameters.get(0).startsWith("Manifest") ? block.parameters.get(0) : ("Manifest.permission." + block.parameters.get(0));
-                    checkPerm.remove(formatPermission(isAppCompat, permission));
-                    reqPerm.remove(permission);
-                }
-            }
+        for (String permission : blockPermissions.removed) {
+            checkPerm.remove(formatPermission(isAppCompat, permission));
+            reqPerm.remove(permission);
         }
     }
 
     public boolean hasNewPermission() {
-        return !addedPermissions().isEmpty();
+        return !blockPermissions.added.isEmpty();
     }
 
     public String writePermission(boolean isAppCompat, int var1) {
@@ -185,4 +160,35 @@ public class PermissionManager {
             return Jx.EOL + permissionCode;
         }
     }
+
+    /**
+     * Permissions an Activity's addPermission and removePermission blocks add and remove, in block order.
+     */
+    public static class BlockPermissions {
+        private final List<String> added = new ArrayList<>();
+        private final List<String> removed = new ArrayList<>();
+
+        private BlockPermissions() {
+        }
+
+        /**
+         * Goes through an Activity's blocks once, instead of every time its permissions are needed.
+         */
+        public static BlockPermissions read(String sc_id, String javaName) {
+            BlockPermissions permissions = new BlockPermissions();
+            for (Entry<String, ArrayList<BlockBean>> blocks : jC.a(sc_id).b(javaName).entrySet()) {
+                for (BlockBean block : blocks.getValue()) {
+                    boolean isAdd = block.opCode.equals("addPermission");
+                    if (!isAdd && !block.opCode.equals("removePermission")) continue;
+
+                    String firstParam = block.parameters.get(0);
+                    if (!firstParam.trim().isEmpty()) {
+                        String permission = firstParam.startsWith("Manifest") ? firstParam : ("Manifest.permission." + firstParam);
+                        (isAdd ? permissions.added : permissions.removed).add(permission);
+                    }
+                }
+            }
+            return permissions;
+        }
+    }
 }
@@ -3,7 +3,9 @@ package pro.sketchware.dialogs;
 import static mod.hey.studios.build.BuildSettings.SETTING_ANDROID_JAR_PATH;
 import static mod.hey.studios.build.BuildSettings.SETTING_CLASSPATH;
 import static mod.hey.studios.build.BuildSettings.SETTING_DEXER;
+import static mod.hey.studios.build.BuildSettings.SETTING_DX_THREADS;
 import static mod.hey.studios.build.BuildSettings.SETTING_ENABLE_LOGCAT;
+import static mod.hey.studios.build.BuildSettings.SETTING_INCREMENTAL_BUILD;
 import static mod.hey.studios.build.BuildSettings.SETTING_JAVA_VERSION;
 import static mod.hey.studios.build.BuildSettings.SETTING_JAVA_VERSION_10;
 import static mod.hey.studios.build.BuildSettings.SETTING_JAVA_VERSION_11;
@@ -36,10 +38,12 @@ public class BuildSettingsBottomSheet extends BottomSheetDialogFragment {
     private static final int VIEW_ANDROIR_JAR_PATH = totalViews++;
     private static final int VIEW_CLASS_PATH = totalViews++;
     private static final int VIEW_DEXER = totalViews++;
+    private static final int VIEW_DX_THREADS = totalViews++;
     private static final int VIEW_JAVA_VERSION = totalViews++;
     private static final int VIEW_NO_WARNINGS = totalViews++;
     private static final int VIEW_NO_HTTP_LEGACY = totalViews++;
     private static final int VIEW_ENABLE_LOGCAT = totalViews++;
+    private static final int VIEW_INCREMENTAL_BUILD = totalViews++;
     private View[] views;
 
     private ProjectConfigLayoutBinding binding;
@@ -87,9 +91,13 @@ public class BuildSettingsBottomSheet extends BottomSheetDialogFragment {
         binding.noWarnings.setOnClickListener(v -> binding.cbNoWarnings.performClick());
         binding.noHttpLegacy.setOnClickListener(v -> binding.cbNoHttpLegacy.performClick());
         binding.enableLogcat.setOnClickListener(v -> binding.cbEnableLogcat.performClick());
+        binding.incrementalBuild.setOnClickListener(v -> binding.cbIncrementalBuild.performClick());
 
         binding.tilAndroidJar.getEditText().setText(projectSettings.getValue(SETTING_ANDROID_JAR_PATH, ""));
         binding.tilClasspath.getEditText().setText(projectSettings.getValue(SETTING_CLASSPATH, ""));
+        // Left empty unless configured, so that the default follows the device
+        binding.tilDxThreads.getEditText().setText(projectSettings.getValue(SETTING_DX_THREADS, ""));
+        binding.tilDxThreads.setPlaceholderText(String.valueOf(BuildSettings.getDefaultDxThreads()));
 
         setRadioGroupOptions(binding.rgDexer, new String[]{"Dx", "D8"}, SETTING_DEXER, "Dx");
         setRadioGroupOptions(binding.rgJavaVersion, getAvailableJavaVersions(), SETTING_JAVA_VERSION, "1.7");
@@ -97,6 +105,7 @@ public class BuildSettingsBottomSheet extends BottomSheetDialogFragment {
         setCheckboxValue(binding.cbNoWarnings, SETTING_NO_WARNINGS, true);
         setCheckboxValue(binding.cbNoHttpLegacy, SETTING_NO_HTTP_LEGACY, false);
         setCheckboxValue(binding.cbEnableLogcat, SETTING_ENABLE_LOGCAT, true);
+        setCheckboxValue(binding.cbIncrementalBuild, SETTING_INCREMENTAL_BUILD, true);
 
         binding.btnCancel.setOnClickListener(v -> dismiss());
         binding.btnSave.setOnClickListener(v -> {
@@ -115,15 +124,19 @@ public class BuildSettingsBottomSheet extends BottomSheetDialogFragment {
         binding.tilAndroidJar.getEditText().setTag(SETTING_ANDROID_JAR_PATH);
         binding.tilClasspath.getEditText().setTag(SETTING_CLASSPATH);
         binding.rgDexer.setTag(SETTING_DEXER);
+        binding.tilDxThreads.getEditText().setTag(SETTING_DX_THREADS);
         binding.rgJavaVersion.setTag(SETTING_JAVA_VERSION);
         binding.cbNoWarnings.setTag(SETTING_NO_WARNINGS);
         binding.cbNoHttpLegacy.setTag(SETTING_NO_HTTP_LEGACY);
         binding.cbEnableLogcat.setTag(SETTING_ENABLE_LOGCAT);
+        binding.cbIncrementalBuild.setTag(SETTING_INCREMENTAL_BUILD);
 
         views[VIEW_ANDROIR_JAR_PATH] = binding.tilAndroidJar.getEditText();
         views[VIEW_CLASS_PATH] = binding.tilClasspath.getEditText();
         views[VIEW_DEXER] = binding.rgDexer;
+        views[VIEW_DX_THREADS] = binding.tilDxThreads.getEditText();
         views[VIEW_ENABLE_LOGCAT] = binding.cbEnableLogcat;
+        views[VIEW_INCREMENTAL_BUILD] = binding.cbIncrementalBuild;
         views[VIEW_JAVA_VERSION] = binding.rgJavaVersion;
         views[VIEW_NO_HTTP_LEGACY] = binding.cbNoHttpLegacy;
         views[VIEW_NO_WARNINGS] = binding.cbNoWarnings;
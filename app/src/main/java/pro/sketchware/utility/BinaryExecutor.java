@@ -1,33 +1,69 @@
 package pro.sketchware.utility;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.io.Reader;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Scanner;
 
 public class BinaryExecutor {
 
     private final ProcessBuilder mProcess = new ProcessBuilder();
     private final StringWriter mWriter = new StringWriter();
+    private final StringWriter mOutput = new StringWriter();
 
     public void setCommands(ArrayList<String> arrayList) {
         mProcess.command(arrayList);
     }
 
+    /**
+     * Runs the commands and waits for them to exit. Standard output and standard error are read
+     * concurrently, so that neither pipe can fill up and block the process.
+     *
+     * @return Everything the process wrote to standard error
+     */
     public String execute() {
         try {
-            Scanner scanner = new Scanner(mProcess.start().getErrorStream());
-            while (scanner.hasNextLine()) {
-                mWriter.append(scanner.nextLine());
-                mWriter.append(System.lineSeparator());
-            }
+            Process process = mProcess.start();
+            process.getOutputStream().close();
+
+            Thread outputDrainer = new Thread(() -> drain(process.getInputStream(), mOutput), "BinaryExecutor-stdout");
+            outputDrainer.start();
+            drain(process.getErrorStream(), mWriter);
+            outputDrainer.join();
+            process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            e.printStackTrace(new PrintWriter(mWriter));
         } catch (Exception e) {
             e.printStackTrace(new PrintWriter(mWriter));
         }
         return mWriter.toString();
     }
 
+    private static void drain(InputStream stream, StringWriter writer) {
+        char[] buffer = new char[8192];
+        try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                writer.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            e.printStackTrace(new PrintWriter(writer));
+        }
+    }
+
     public String getLog() {
         return mWriter.toString();
     }
-}
\ No newline at end of file
+
+    /**
+     * @return Everything the process wrote to standard output
+     */
+    public String getOutput() {
+        return mOutput.toString();
+    }
+}
@@ -0,0 +1,168 @@
+package pro.sketchware.utility;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.util.LruCache;
+
+import com.bobur.androidsvg.SVG;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decoded project images and rasterized vectors, shared by the designer's {@link com.besome.sketch.editor.view.ViewPane},
+ * the image manager and property panels, so that refreshing a layout doesn't decode every image again.
+ * <p>
+ * Entries are keyed by the image's path, size and modification time along with the target size, so changed
+ * images are simply decoded again and outdated entries get evicted over time. The cache is limited to an
+ * eighth of the maximum heap, counted in bytes of the bitmaps.
+ * Returned bitmaps are shared and must not be modified or recycled.
+ */
+public class ImageCache {
+    /**
+     * Larger bitmaps can't be drawn by hardware rendering anyway, so images get downsampled to fit.
+     */
+    private static final int MAX_DIMENSION = 4096;
+
+    private static final LruCache<String, Bitmap> cache = new LruCache<>((int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8)) {
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getAllocationByteCount();
+        }
+    };
+
+    /**
+     * @param path        Path of a PNG, JPEG, etc. image
+     * @param scaleFactor Factor to scale the image's width and height with
+     * @return The decoded image, scaled, but no larger than {@value #MAX_DIMENSION} pixels in either dimension
+     * @throws IOException Thrown if the image couldn't be decoded
+     */
+    public static Bitmap getScaledBitmap(String path, int scaleFactor) throws IOException {
+        File file = new File(path);
+        String key = getKey("bitmap", scaleFactor + "x", file);
+        Bitmap cached = cache.get(key);
+        if (cached != null) return cached;
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        int originalWidth = options.outWidth;
+        int originalHeight = options.outHeight;
+        if (originalWidth <= 0 || originalHeight <= 0) {
+            throw new IOException("Failed to decode " + path);
+        }
+
+        int factor = Math.max(1, scaleFactor);
+        float fit = Math.min(1.0f, (float) MAX_DIMENSION / (Math.max(originalWidth, originalHeight) * factor));
+        int width = Math.max(1, Math.round(originalWidth * factor * fit));
+        int height = Math.max(1, Math.round(originalHeight * factor * fit));
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = 1;
+        while (originalWidth / (options.inSampleSize * 2) >= width && originalHeight / (options.inSampleSize * 2) >= height) {
+            options.inSampleSize *= 2;
+        }
+        Bitmap decoded = BitmapFactory.decodeFile(path, options);
+        if (decoded == null) {
+            throw new IOException("Failed to decode " + path);
+        }
+
+        Bitmap bitmap = scale(decoded, width, height);
+        cache.put(key, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * @param path Path of an SVG file
+     * @return The SVG rendered into a bitmap of exactly that size, stretched if needed
+     * @throws IOException Thrown if the SVG couldn't be read or parsed
+     */
+    public static Bitmap getSvgBitmap(String path, int width, int height) throws IOException {
+        File file = new File(path);
+        String key = getKey("svg", width + "x" + height, file);
+        Bitmap cached = cache.get(key);
+        if (cached != null) return cached;
+
+        Picture picture;
+        try (InputStream inputStream = new FileInputStream(file)) {
+            picture = SVG.getFromInputStream(inputStream).renderToPicture();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to parse " + path, e);
+        }
+
+        Bitmap bitmap = render(picture, Math.max(1, width), Math.max(1, height));
+        cache.put(key, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Renders a picture so that it covers a size, keeping its aspect ratio, and caches the result. A vector
+     * picture then stays sharp in an ImageView of that size, whatever its scale type.
+     *
+     * @param width  Width to cover, or 0 to render the picture at its own size
+     * @param height Height to cover, or 0 to render the picture at its own size
+     * @param files  Files the picture was created from; changing any of them makes the entry outdated
+     * @return The rendered picture, no larger than {@value #MAX_DIMENSION} pixels in either dimension
+     */
+    public static Bitmap getPictureBitmap(String type, int width, int height, PictureLoader loader, File... files) throws Exception {
+        String key = getKey(type, width + "x" + height, files);
+        Bitmap cached = cache.get(key);
+        if (cached != null) return cached;
+
+        Picture picture = loader.load();
+        int pictureWidth = Math.max(1, picture.getWidth());
+        int pictureHeight = Math.max(1, picture.getHeight());
+        float scale = width > 0 && height > 0
+                ? Math.max((float) width / pictureWidth, (float) height / pictureHeight) : 1.0f;
+        scale = Math.min(scale, (float) MAX_DIMENSION / Math.max(pictureWidth, pictureHeight));
+        Bitmap bitmap = render(picture, Math.max(1, Math.round(pictureWidth * scale)),
+                Math.max(1, Math.round(pictureHeight * scale)));
+        cache.put(key, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Drops all cached images, e.g. when the system is low on memory.
+     */
+    public static void clear() {
+        cache.evictAll();
+    }
+
+    private static Bitmap scale(Bitmap bitmap, int width, int height) {
+        if (bitmap.getWidth() == width && bitmap.getHeight() == height) {
+            return bitmap;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, width, height, true);
+        if (scaled != bitmap) {
+            bitmap.recycle();
+        }
+        return scaled;
+    }
+
+    private static Bitmap render(Picture picture, int width, int height) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        new Canvas(bitmap).drawPicture(picture, new Rect(0, 0, width, height));
+        return bitmap;
+    }
+
+    private static String getKey(String type, String size, File... files) {
+        StringBuilder key = new StringBuilder(type).append(':').append(size);
+        for (File file : files) {
+            key.append(':').append(file.getAbsolutePath())
+                    .append('@').append(file.length())
+                    .append('@').append(file.lastModified());
+        }
+        return key.toString();
+    }
+
+    public interface PictureLoader {
+        Picture load() throws Exception;
+    }
+}
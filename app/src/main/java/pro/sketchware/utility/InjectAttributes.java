@@ -0,0 +1,143 @@
+package pro.sketchware.utility;
+
+import android.util.Pair;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import mod.jbk.util.LogUtil;
+
+/**
+ * The attributes of a View's <code>inject</code> property, parsed once.
+ * Get them through {@link com.besome.sketch.beans.ViewBean#getInjectAttributes()},
+ * which keeps them until the property changes.
+ */
+public class InjectAttributes {
+    private static final String TAG = "InjectAttributes";
+    private static final String TOOLS_NAMESPACE = "http://schemas.android.com/tools";
+    /**
+     * Patterns of {@link #mentions(String)} by attribute name, as the same few names get checked for every View.
+     */
+    private static final Map<String, Pattern> MENTION_PATTERNS = new ConcurrentHashMap<>();
+
+    private final String inject;
+    private final List<Pair<String, String>> attributes;
+    private final Map<String, String> valuesByName;
+    private final Set<String> attributesToReplace;
+    private final Map<String, Boolean> mentions = new ConcurrentHashMap<>();
+
+    private InjectAttributes(String inject, List<Pair<String, String>> attributes, Set<String> attributesToReplace) {
+        this.inject = inject;
+        this.attributes = Collections.unmodifiableList(attributes);
+        Map<String, String> valuesByName = new HashMap<>();
+        for (Pair<String, String> attribute : attributes) {
+            valuesByName.putIfAbsent(attribute.first, attribute.second);
+        }
+        this.valuesByName = valuesByName;
+        this.attributesToReplace = Collections.unmodifiableSet(attributesToReplace);
+    }
+
+    /**
+     * @param inject The <code>inject</code> property to parse
+     * @param viewId The View's ID, to log in case the property is invalid
+     */
+    public static InjectAttributes parse(String inject, String viewId) {
+        List<Pair<String, String>> attributes = new ArrayList<>();
+        Set<String> toReplace = new HashSet<>();
+
+        if (inject != null && !inject.isEmpty()) {
+            try {
+                XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
+                factory.setNamespaceAware(true);
+                XmlPullParser parser = factory.newPullParser();
+                parser.setInput(new StringReader(
+                        "<tag xmlns:android=\"http://schemas.android.com/apk/res/android\" " +
+                                "xmlns:app=\"http://schemas.android.com/apk/res-auto\" " +
+                                "xmlns:tools=\"http://schemas.android.com/tools\"" +
+                                inject + "></tag>"));
+
+                int eventType = parser.getEventType();
+                while (eventType != XmlPullParser.END_DOCUMENT) {
+                    if (eventType == XmlPullParser.START_TAG) {
+                        for (int i = 0; i < parser.getAttributeCount(); i++) {
+                            String name = parser.getAttributeName(i);
+                            String value = parser.getAttributeValue(i);
+                            attributes.add(new Pair<>(name, value));
+                            if (TOOLS_NAMESPACE.equals(parser.getAttributeNamespace(i)) && "replace".equals(name)) {
+                                toReplace.addAll(Arrays.asList(value.split("\\s*,\\s*")));
+                            }
+                        }
+                    }
+
+                    eventType = parser.next();
+                }
+            } catch (XmlPullParserException | IOException | RuntimeException e) {
+                LogUtil.e(TAG, "Failed to parse inject property of View " + viewId, e);
+            }
+        }
+
+        return new InjectAttributes(inject, attributes, toReplace);
+    }
+
+    /**
+     * @return Whether these attributes were parsed from exactly this <code>inject</code> property
+     */
+    public boolean isParsedFrom(String inject) {
+        return this.inject == null ? inject == null : this.inject.equals(inject);
+    }
+
+    /**
+     * @return All attributes as pairs of name without namespace and value, in order
+     */
+    public List<Pair<String, String>> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * @param name The attribute's name without namespace, e.g. <code>layout_width</code>
+     */
+    public boolean contains(String name) {
+        return valuesByName.containsKey(name);
+    }
+
+    /**
+     * @param name The attribute's name without namespace, e.g. <code>layout_width</code>
+     * @return The value of the first attribute with that name, or <code>null</code> if there's none
+     */
+    public String getValue(String name) {
+        return valuesByName.get(name);
+    }
+
+    /**
+     * @return The attributes listed in <code>tools:replace</code>, e.g. <code>android:background</code>
+     */
+    public Set<String> getAttributesToReplace() {
+        return attributesToReplace;
+    }
+
+    /**
+     * Checks the raw property for <code>android:</code> or <code>app:</code> followed by a name.
+     * Longer names starting with it count too, e.g. <code>app:backgroundTint</code> for <code>background</code>.
+     */
+    public boolean mentions(String attributeName) {
+        if (inject == null || inject.isEmpty()) return false;
+        return mentions.computeIfAbsent(attributeName, name -> MENTION_PATTERNS
+                .computeIfAbsent(name, key -> Pattern.compile("(android|app) *?: *?" + key))
+                .matcher(inject)
+                .find());
+    }
+}
@@ -4,7 +4,6 @@ import android.content.Context
 import android.graphics.Bitmap
 import android.util.Log
 import android.widget.ImageView
-import androidx.core.graphics.drawable.toBitmap
 import coil.ImageLoader
 import coil.decode.SvgDecoder
 import coil.load
@@ -13,6 +12,7 @@ import org.xmlpull.v1.XmlPullParser
 import org.xmlpull.v1.XmlPullParserFactory
 import org.xmlpull.v1.XmlSerializer
 import java.io.File
+import java.io.IOException
 import java.io.StringReader
 import java.io.StringWriter
 import java.nio.file.Files
@@ -30,11 +30,24 @@ class SvgUtils(private val context: Context) {
     }
 
     fun initImageLoader() {
-        imageLoader = ImageLoader.Builder(context)
-            .components {
-                add(SvgDecoder.Factory())
-            }
-            .build()
+        imageLoader = getSharedImageLoader(context)
+    }
+
+    companion object {
+        private var sharedImageLoader: ImageLoader? = null
+
+        /**
+         * One ImageLoader for all instances, so that they share its memory cache.
+         */
+        @Synchronized
+        private fun getSharedImageLoader(context: Context): ImageLoader {
+            return sharedImageLoader ?: ImageLoader.Builder(context.applicationContext)
+                .components {
+                    add(SvgDecoder.Factory())
+                }
+                .build()
+                .also { sharedImageLoader = it }
+        }
     }
 
 
@@ -68,36 +81,22 @@ class SvgUtils(private val context: Context) {
         svgPath: String,
         scaleFactor: Float = 0.5f // Default scaling factor if none is provided
     ) {
-        // Create an ImageLoader with SVG support
-        val imageLoader = ImageLoader.Builder(context)
-            .components {
-                add(SvgDecoder.Factory())
-            }
-            .build()
-
-        // Load the SVG image and apply scaling
-        val request = ImageRequest.Builder(context)
-            .data(svgPath)
-            .target { drawable ->
-                drawable.let {
-                    // Get density scaling
-                    val densityScale =
-                        (context.resources.displayMetrics.density * scaleFactor).roundToInt()
-                    val bitmap = drawable.toBitmap()
-                    // Apply scaling to width and height
-                    val scaledBitmap = Bitmap.createScaledBitmap(
-                        bitmap,
-                        48 * densityScale,
-                        48 * densityScale,
-                        true
-                    )
-                    // Set the scaled image on the ImageView
-                    imageView.setImageBitmap(scaledBitmap)
-                }
-            }
-            .build()
+        try {
+            imageView.setImageBitmap(getScaledSvgBitmap(svgPath, scaleFactor))
+        } catch (e: IOException) {
+            Log.e("SvgUtils", "Failed to load $svgPath", e)
+        }
+    }
 
-        imageLoader.enqueue(request)
+    /**
+     * Renders an SVG into a 48 by 48 bitmap scaled with the display's density, cached in [ImageCache].
+     */
+    @Throws(IOException::class)
+    fun getScaledSvgBitmap(svgPath: String, scaleFactor: Float): Bitmap {
+        // Get density scaling
+        val densityScale =
+            (context.resources.displayMetrics.density * scaleFactor).roundToInt().coerceAtLeast(1)
+        return ImageCache.getSvgBitmap(svgPath, 48 * densityScale, 48 * densityScale)
     }
 
     fun loadWithoutQueue(imageView: ImageView, filePath: String) {
@@ -13,9 +13,9 @@ public interface AIActionListener {
     void onAiRequestCompleted();
     
     /**
-     * Called when AI streams response chunks
+     * Called when AI streams response chunks, with only the text appended since the last call
      */
-    void onAiStreamUpdate(String partialResponse, boolean isFinal);
+    void onAiStreamDelta(String delta);
     
     /**
      * Called when AI response is complete
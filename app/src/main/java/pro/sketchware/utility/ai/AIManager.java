@@ -26,7 +26,7 @@ public class AIManager {
     private AIManager(Context context) {
         this.context = context.getApplicationContext();
         this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        this.apiClient = new DeepInfraApiClient(context, null); // Will be set per request
+        this.apiClient = new DeepInfraApiClient(context);
         loadSettings();
     }
     
@@ -41,7 +41,7 @@ public class AIManager {
      * Load available models from the API
      */
     public void loadModels(ModelLoadCallback callback) {
-        new Thread(() -> {
+        DeepInfraApiClient.executor.execute(() -> {
             try {
                 List<AIModel> models = apiClient.fetchModels();
                 availableModels = models;
@@ -60,7 +60,7 @@ public class AIManager {
                     callback.onError("Failed to load models: " + e.getMessage());
                 }
             }
-        }).start();
+        });
     }
     
     /**
@@ -84,8 +84,7 @@ public class AIManager {
         if (!caps.supportsWebSearch()) webSearch = false;
         if (!caps.supportsAgent()) agentMode = false;
         
-        DeepInfraApiClient client = new DeepInfraApiClient(context, listener);
-        client.sendMessage(message, selectedModel, history, thinkingMode, webSearch, agentMode);
+        apiClient.sendMessage(message, selectedModel, history, thinkingMode, webSearch, agentMode, listener);
     }
     
     /**
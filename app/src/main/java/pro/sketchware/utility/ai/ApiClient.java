@@ -7,10 +7,11 @@ import pro.sketchware.models.chat.ChatMessage;
 public interface ApiClient {
     
     /**
-     * Send a message to the AI and get a response
+     * Send a message to the AI and get a response, reported to the listener
      */
-    void sendMessage(String message, AIModel model, List<ChatMessage> history, 
-                    boolean thinkingModeEnabled, boolean webSearchEnabled, boolean agentModeEnabled);
+    void sendMessage(String message, AIModel model, List<ChatMessage> history,
+                    boolean thinkingModeEnabled, boolean webSearchEnabled, boolean agentModeEnabled,
+                    AIActionListener actionListener);
     
     /**
      * Fetch available AI models
@@ -15,6 +15,8 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import okhttp3.MediaType;
@@ -40,25 +42,31 @@ public class DeepInfraApiClient implements ApiClient {
     private static final String SP_TS = "di_models_ts";
     private static final long DAY_MS = 24L * 60L * 60L * 1000L;
 
+    /**
+     * Shared by all requests, so that they reuse connections and OkHttp's threads
+     */
+    private static final OkHttpClient httpClient = new OkHttpClient.Builder()
+            .connectTimeout(20, TimeUnit.SECONDS)
+            .readTimeout(60, TimeUnit.SECONDS)
+            .writeTimeout(30, TimeUnit.SECONDS)
+            .build();
+    /**
+     * Runs blocking requests, instead of a new thread for each
+     */
+    static final ExecutorService executor = Executors.newCachedThreadPool();
+
     private final Context context;
-    private final AIActionListener actionListener;
-    private final OkHttpClient httpClient;
     private final Gson gson = new Gson();
 
-    public DeepInfraApiClient(Context context, AIActionListener actionListener) {
+    public DeepInfraApiClient(Context context) {
         this.context = context.getApplicationContext();
-        this.actionListener = actionListener;
-        this.httpClient = new OkHttpClient.Builder()
-                .connectTimeout(20, TimeUnit.SECONDS)
-                .readTimeout(60, TimeUnit.SECONDS)
-                .writeTimeout(30, TimeUnit.SECONDS)
-                .build();
     }
 
     @Override
-    public void sendMessage(String message, AIModel model, List<ChatMessage> history, 
-                          boolean thinkingModeEnabled, boolean webSearchEnabled, boolean agentModeEnabled) {
-        new Thread(() -> {
+    public void sendMessage(String message, AIModel model, List<ChatMessage> history,
+                          boolean thinkingModeEnabled, boolean webSearchEnabled, boolean agentModeEnabled,
+                          AIActionListener actionListener) {
+        executor.execute(() -> {
             Response response = null;
             try {
                 if (actionListener != null) actionListener.onAiRequestStarted();
@@ -76,7 +84,7 @@ public class DeepInfraApiClient implements ApiClient {
                 response = httpClient.newCall(request).execute();
                 if (response.isSuccessful() && response.body() != null) {
                     String modelDisplay = model != null ? model.getDisplayName() : (modelId != null ? modelId : "DeepInfra");
-                    streamOpenAiSse(response, modelDisplay);
+                    streamOpenAiSse(response, modelDisplay, actionListener);
                 } else {
                     if (actionListener != null) actionListener.onAiError("DeepInfra error: " + (response != null ? response.code() : -1));
                 }
@@ -87,7 +95,7 @@ public class DeepInfraApiClient implements ApiClient {
                 try { if (response != null) response.close(); } catch (Exception ignore) {}
                 if (actionListener != null) actionListener.onAiRequestCompleted();
             }
-        }).start();
+        });
     }
 
     private JsonObject buildOpenAIStyleBody(String modelId, String userMessage, List<ChatMessage> history) {
@@ -115,7 +123,7 @@ public class DeepInfraApiClient implements ApiClient {
         return root;
     }
 
-    private void streamOpenAiSse(Response response, String modelDisplayName) throws IOException {
+    private void streamOpenAiSse(Response response, String modelDisplayName, AIActionListener actionListener) throws IOException {
         BufferedSource source = response.body().source();
         try { source.timeout().timeout(60, TimeUnit.SECONDS); } catch (Exception ignore) {}
         StringBuilder eventBuf = new StringBuilder();
@@ -130,18 +138,18 @@ public class DeepInfraApiClient implements ApiClient {
             catch (java.io.InterruptedIOException timeout) { Log.w(TAG, "DeepInfra SSE read timed out"); break; }
             if (line == null) break;
             if (line.isEmpty()) {
-                handleOpenAiEvent(eventBuf.toString(), finalText, lastEmitNs, lastSentLen);
+                handleOpenAiEvent(eventBuf.toString(), finalText, lastEmitNs, lastSentLen, actionListener);
                 eventBuf.setLength(0);
                 continue;
             }
             eventBuf.append(line).append('\n');
         }
         if (eventBuf.length() > 0) {
-            handleOpenAiEvent(eventBuf.toString(), finalText, lastEmitNs, lastSentLen);
+            handleOpenAiEvent(eventBuf.toString(), finalText, lastEmitNs, lastSentLen, actionListener);
         }
         if (actionListener != null) {
             if (finalText.length() != lastSentLen[0]) {
-                actionListener.onAiStreamUpdate(finalText.toString(), false);
+                actionListener.onAiStreamDelta(finalText.substring(lastSentLen[0]));
             }
             try {
                 actionListener.onAiResponseComplete(finalText.toString(), modelDisplayName);
@@ -151,7 +159,7 @@ public class DeepInfraApiClient implements ApiClient {
         }
     }
 
-    private void handleOpenAiEvent(String rawEvent, StringBuilder finalText, long[] lastEmitNs, int[] lastSentLen) {
+    private void handleOpenAiEvent(String rawEvent, StringBuilder finalText, long[] lastEmitNs, int[] lastSentLen, AIActionListener actionListener) {
         String prefix = "data:";
         int idx = rawEvent.indexOf(prefix);
         if (idx < 0) return;
@@ -169,13 +177,13 @@ public class DeepInfraApiClient implements ApiClient {
                         JsonObject delta = choice.getAsJsonObject("delta");
                         if (delta.has("content") && !delta.get("content").isJsonNull()) {
                             finalText.append(delta.get("content").getAsString());
-                            maybeEmit(finalText, lastEmitNs, lastSentLen);
+                            maybeEmit(finalText, lastEmitNs, lastSentLen, actionListener);
                         }
                     } else if (choice.has("message") && choice.get("message").isJsonObject()) {
                         JsonObject msg = choice.getAsJsonObject("message");
                         if (msg.has("content") && !msg.get("content").isJsonNull()) {
                             finalText.append(msg.get("content").getAsString());
-                            maybeEmit(finalText, lastEmitNs, lastSentLen);
+                            maybeEmit(finalText, lastEmitNs, lastSentLen, actionListener);
                         }
                     }
                 }
@@ -185,7 +193,10 @@ public class DeepInfraApiClient implements ApiClient {
         }
     }
 
-    private void maybeEmit(StringBuilder buf, long[] lastEmitNs, int[] lastSentLen) {
+    /**
+     * Sends what's been appended since the last call, once enough time passed, enough text or a line got appended.
+     */
+    private void maybeEmit(StringBuilder buf, long[] lastEmitNs, int[] lastSentLen, AIActionListener actionListener) {
         if (actionListener == null) return;
         int len = buf.length();
         if (len == lastSentLen[0]) return;
@@ -195,7 +206,7 @@ public class DeepInfraApiClient implements ApiClient {
         boolean sizeReady = (len - lastSentLen[0]) >= 24;
         boolean boundaryReady = len > 0 && buf.charAt(len - 1) == '\n';
         if (timeReady || sizeReady || boundaryReady) {
-            actionListener.onAiStreamUpdate(buf.toString(), false);
+            actionListener.onAiStreamDelta(buf.substring(lastSentLen[0], len));
             lastEmitNs[0] = now;
             lastSentLen[0] = len;
         }
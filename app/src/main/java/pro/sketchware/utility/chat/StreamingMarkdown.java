@@ -0,0 +1,124 @@
+package pro.sketchware.utility.chat;
+
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+
+import io.noties.markwon.Markwon;
+
+/**
+ * Markdown of a response that's still being streamed, rendered incrementally.
+ * <p>
+ * Blocks that can't change anymore, i.e. everything before the last blank line outside a code block,
+ * are rendered once and kept. Only the trailing, unfinished block gets rendered again when text is
+ * appended, so streaming a long response doesn't parse all of it for every update.
+ * <p>
+ * {@link #getDisplay()} is updated in place, so a TextView showing it (without copying it) only needs
+ * to lay out what changed.
+ */
+public class StreamingMarkdown {
+    private final Markwon markwon;
+    private final StringBuilder source = new StringBuilder();
+    private final SpannableStringBuilder display = new SpannableStringBuilder();
+
+    /**
+     * Length of source text that's rendered as finished blocks
+     */
+    private int finishedLength;
+    /**
+     * Length of {@link #display} taken by the finished blocks
+     */
+    private int finishedDisplayLength;
+    /**
+     * Where scanning for finished blocks continues, always the start of a line
+     */
+    private int scannedLength;
+    private boolean inCodeBlock;
+    /**
+     * End of the last blank line outside of code blocks that's after {@link #finishedLength}, or -1
+     */
+    private int pendingBoundary = -1;
+
+    public StreamingMarkdown(Markwon markwon) {
+        this.markwon = markwon;
+    }
+
+    public void append(String delta) {
+        if (delta.isEmpty()) return;
+        source.append(delta);
+
+        int boundary = findFinishedBoundary();
+        if (boundary > finishedLength) {
+            CharSequence blocks = render(source.substring(finishedLength, boundary));
+            display.delete(finishedDisplayLength, display.length());
+            if (blocks.length() > 0) {
+                if (finishedDisplayLength > 0) display.append("\n\n");
+                display.append(blocks);
+            }
+            finishedDisplayLength = display.length();
+            finishedLength = boundary;
+        }
+
+        CharSequence tail = render(source.substring(finishedLength));
+        if (tail.length() > 0 && finishedDisplayLength > 0) {
+            SpannableStringBuilder separated = new SpannableStringBuilder("\n\n");
+            separated.append(tail);
+            tail = separated;
+        }
+        display.replace(finishedDisplayLength, display.length(), tail);
+    }
+
+    /**
+     * @return The rendered response so far, which later calls of {@link #append(String)} modify
+     */
+    public SpannableStringBuilder getDisplay() {
+        return display;
+    }
+
+    /**
+     * Scans lines appended since the last call, for blank lines that end a block.
+     *
+     * @return The end of the last blank line after which a new block has started, or {@link #finishedLength}
+     */
+    private int findFinishedBoundary() {
+        int boundary = finishedLength;
+        int lineEnd;
+        while ((lineEnd = source.indexOf("\n", scannedLength)) >= 0) {
+            int lineStart = scannedLength;
+            scannedLength = lineEnd + 1;
+
+            if (pendingBoundary >= 0 && lineStart == pendingBoundary) {
+                // A block following a blank line only finishes the one before if it isn't indented,
+                // otherwise it might be a list item's or code block's continuation
+                if (startsBlock(source.charAt(lineStart))) {
+                    boundary = pendingBoundary;
+                }
+                pendingBoundary = -1;
+            }
+
+            String line = source.substring(lineStart, lineEnd).trim();
+            if (line.startsWith("```") || line.startsWith("~~~")) {
+                inCodeBlock = !inCodeBlock;
+            } else if (line.isEmpty() && !inCodeBlock) {
+                pendingBoundary = scannedLength;
+            }
+        }
+        // The line after a blank line may have started without being complete yet
+        if (pendingBoundary >= 0 && pendingBoundary < source.length() && startsBlock(source.charAt(pendingBoundary))) {
+            boundary = pendingBoundary;
+        }
+        return boundary;
+    }
+
+    private static boolean startsBlock(char first) {
+        return first != ' ' && first != '\t' && first != '\n' && first != '\r';
+    }
+
+    private CharSequence render(String markdown) {
+        Spanned rendered = markwon.toMarkdown(markdown);
+        int end = rendered.length();
+        while (end > 0 && Character.isWhitespace(rendered.charAt(end - 1))) {
+            end--;
+        }
+        return end == rendered.length() ? rendered : rendered.subSequence(0, end);
+    }
+}
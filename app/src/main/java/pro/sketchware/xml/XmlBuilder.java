@@ -1,11 +1,29 @@
 package pro.sketchware.xml;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 
 import a.a.a.Jx;
 
 public class XmlBuilder {
 
+    /**
+     * Indentation strings by level, so that writing a node doesn't create any.
+     */
+    private static final String[] INDENTS = new String[32];
+    /**
+     * Same as {@link #INDENTS}, but each starting with a line break.
+     */
+    private static final String[] LINE_INDENTS = new String[INDENTS.length];
+
+    static {
+        for (int i = 0; i < INDENTS.length; i++) {
+            INDENTS[i] = "\t".repeat(i);
+            LINE_INDENTS[i] = "\r\n" + INDENTS[i];
+        }
+    }
+
     private final ArrayList<XmlBuilder> childNodes;
     private final boolean d;
     private final String rootElementName;
@@ -26,16 +44,12 @@ public class XmlBuilder {
         childNodes = new ArrayList<>();
     }
 
-    private String addZeroIndent() {
-        return addIndent(0);
+    private static String getIndent(int level) {
+        return level < INDENTS.length ? INDENTS[level] : "\t".repeat(level);
     }
 
-    private String addIndent(int indentSize) {
-        StringBuilder str = new StringBuilder();
-        for (int i = 0; i < indentationLevel + indentSize; i++) {
-            str.append("\t");
-        }
-        return str.toString();
+    private static String getLineIndent(int level) {
+        return level < LINE_INDENTS.length ? LINE_INDENTS[level] : "\r\n" + getIndent(level);
     }
 
     public void addNamespaceDeclaration(int position, String namespace, String attr, String value) {
@@ -60,19 +74,32 @@ public class XmlBuilder {
     }
 
     public String toCode() {
-        StringBuilder resultCode = new StringBuilder();
-        resultCode.append(addZeroIndent());
+        StringBuilder resultCode = new StringBuilder(1024);
+        try {
+            writeTo(resultCode);
+        } catch (IOException e) {
+            // StringBuilder doesn't throw
+            throw new UncheckedIOException(e);
+        }
+        return resultCode.toString();
+    }
+
+    /**
+     * Writes the same as {@link #toCode()} returns, without building Strings of child nodes.
+     */
+    public void writeTo(Appendable resultCode) throws IOException {
+        resultCode.append(getIndent(indentationLevel));
         resultCode.append("<");
         resultCode.append(rootElementName);
+        boolean attributesOnSameLine = attributes.size() <= 1 || d;
         for (AttributeBuilder attr : attributes) {
-            if (attributes.size() <= 1 || d) {
+            if (attributesOnSameLine) {
                 resultCode.append(" ");
             } else {
-                resultCode.append("\r\n");
-                resultCode.append(addIndent(1));
-                g = "\r\n" + addIndent(1);
+                g = getLineIndent(indentationLevel + 1);
+                resultCode.append(g);
             }
-            resultCode.append(attr.toCode());
+            attr.writeTo(resultCode);
         }
         if (childNodes.size() <= 0) {
             if (nodeValue == null || nodeValue.length() <= 0) {
@@ -88,15 +115,14 @@ public class XmlBuilder {
             resultCode.append(">");
             resultCode.append("\r\n");
             for (XmlBuilder xmlBuilder : childNodes) {
-                resultCode.append(xmlBuilder.toCode());
+                xmlBuilder.writeTo(resultCode);
             }
-            resultCode.append(addZeroIndent());
+            resultCode.append(getIndent(indentationLevel));
             resultCode.append("</");
             resultCode.append(rootElementName);
             resultCode.append(">");
         }
         resultCode.append("\r\n");
-        return resultCode.toString();
     }
 
     public String c() {
@@ -128,14 +154,30 @@ public class XmlBuilder {
             this.value = value;
         }
 
-        private String toCode() {
+        private void writeTo(Appendable resultCode) throws IOException {
             if (namespace != null && !namespace.isEmpty()) {
-                return namespace + ":" + attr + "=" + "\"" + value + "\"";
+                resultCode.append(namespace).append(":").append(attr).append("=\"").append(value).append("\"");
             } else if (attr == null || attr.length() <= 0) {
-                return value.replaceAll("\n", g);
+                writeWithIndentedLines(resultCode);
             } else {
-                return attr + "=" + "\"" + value + "\"";
+                resultCode.append(attr).append("=\"").append(value).append("\"");
+            }
+        }
+
+        /**
+         * Writes a raw value, indenting lines after the first one like other attributes.
+         */
+        private void writeWithIndentedLines(Appendable resultCode) throws IOException {
+            int start = 0;
+            int newline;
+            while ((newline = value.indexOf('\n', start)) != -1) {
+                if (g == null) {
+                    throw new NullPointerException("No attribute indentation to replace line breaks with");
+                }
+                resultCode.append(value, start, newline).append(g);
+                start = newline + 1;
             }
+            resultCode.append(value, start, value.length());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+package mod.agus.jcoderz.dx.merge;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import mod.agus.jcoderz.dex.Dex;
+import mod.agus.jcoderz.dx.command.dexer.DxContext;
+import mod.agus.jcoderz.dx.command.dexer.Main;
+
+/**
+ * Checks that merging DEX files on several threads writes the same bytes as the sequential merger.
+ * <p>
+ * The sample DEX files are dexed from generated "libraries", which refer to the previous library's and
+ * the same platform classes, and all contain a class of the same name, so that merging has to deduplicate
+ * IDs and drop classes.
+ */
+public class DexMergerThreadsTest {
+    private static final int LIBRARY_COUNT = 6;
+    private static final int CLASSES_PER_LIBRARY = 40;
+
+    @ClassRule
+    public static final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final List<File> samples = new ArrayList<>();
+
+    @BeforeClass
+    public static void dexSamples() throws IOException {
+        for (int library = 0; library < LIBRARY_COUNT; library++) {
+            samples.add(dexLibrary(library));
+        }
+    }
+
+    @Test
+    public void mergesTheSameOnSeveralThreads() throws IOException {
+        byte[] sequential = merge(1, false);
+        for (int threads : new int[]{2, 3, 4}) {
+            assertArrayEquals("Merged with " + threads + " threads", sequential, merge(threads, false));
+        }
+    }
+
+    @Test
+    public void compactsTheSameOnSeveralThreads() throws IOException {
+        byte[] sequential = merge(1, true);
+        assertArrayEquals(sequential, merge(4, true));
+    }
+
+    private static byte[] merge(int threads, boolean compact) throws IOException {
+        Dex[] dexes = new Dex[samples.size()];
+        for (int i = 0; i < dexes.length; i++) {
+            dexes[i] = new Dex(samples.get(i));
+        }
+        DexMerger merger = new DexMerger(dexes, CollisionPolicy.KEEP_FIRST, new DxContext());
+        merger.setThreads(threads);
+        if (compact) {
+            merger.setCompactWasteThreshold(0);
+        }
+        return merger.merge().getBytes();
+    }
+
+    private static File dexLibrary(int library) throws IOException {
+        File sourcesDirectory = temporaryFolder.newFolder("library" + library + "_sources");
+        File classesDirectory = temporaryFolder.newFolder("library" + library + "_classes");
+
+        List<String> arguments = new ArrayList<>(List.of("--release", "8", "-g", "-d", classesDirectory.getAbsolutePath(),
+                // Previous library's classes, which this one refers to
+                "-cp", new File(temporaryFolder.getRoot(), "library" + Math.max(0, library - 1) + "_classes").getAbsolutePath()));
+        arguments.add(writeSource(sourcesDirectory, "shared", "Shared",
+                "public class Shared {\n"
+                        + "    public static final String NAME = \"library" + library + "\";\n"
+                        + "    public static int id() { return " + library + "; }\n"
+                        + "}\n"));
+        for (int i = 0; i < CLASSES_PER_LIBRARY; i++) {
+            arguments.add(writeSource(sourcesDirectory, "library" + library, "Class" + i, sampleClass(library, i)));
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull("Tests need a JDK to compile sample classes", compiler);
+        assertEquals("Failed to compile library " + library, 0,
+                compiler.run(null, null, null, arguments.toArray(new String[0])));
+
+        File dex = new File(temporaryFolder.getRoot(), "library" + library + ".dex");
+        DxContext context = new DxContext(OutputStream.nullOutputStream(), System.err);
+        Main.Arguments dxArguments = new Main.Arguments(context);
+        dxArguments.parseFlags(new String[]{"--debug", "--output=" + dex.getAbsolutePath()});
+        dxArguments.fileNames = new String[]{classesDirectory.getAbsolutePath()};
+        assertEquals("Dx failed to dex library " + library, 0, new Main(context).runDx(dxArguments));
+        return dex;
+    }
+
+    /**
+     * @return Source of a class with fields, constants, annotations, switches, try/catch blocks and inner
+     * classes, which refers to classes of its own and the previous library
+     */
+    private static String sampleClass(int library, int index) {
+        String other = "library" + Math.max(0, library - 1) + ".Class" + ((index + 1) % CLASSES_PER_LIBRARY);
+        return "import java.util.ArrayList;\n"
+                + "import java.util.List;\n"
+                + "\n"
+                + "@Deprecated\n"
+                + "public class Class" + index + " implements Comparable<Class" + index + "> {\n"
+                + "    public static final long CONSTANT = " + (library * 1000L + index) + "L;\n"
+                + "    private static final String[] NAMES = {\"a" + index + "\", \"b" + library + "\", shared.Shared.NAME};\n"
+                + "    private final List<String> values = new ArrayList<>();\n"
+                + "    private int count;\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public int compareTo(Class" + index + " other) {\n"
+                + "        return Integer.compare(count, other.count);\n"
+                + "    }\n"
+                + "\n"
+                + "    public String describe(int value) throws Exception {\n"
+                + "        switch (value) {\n"
+                + "            case 0: return NAMES[0];\n"
+                + "            case 1: return NAMES[1] + " + other + ".class.getName();\n"
+                + "            case 7: return String.valueOf(shared.Shared.id() + count);\n"
+                + "            case 1000: return \"sparse\" + value;\n"
+                + "            default:\n"
+                + "                try {\n"
+                + "                    values.add(Integer.toHexString(value));\n"
+                + "                    return values.get(values.size() - 1);\n"
+                + "                } catch (IndexOutOfBoundsException | IllegalStateException e) {\n"
+                + "                    throw new Exception(\"" + library + "/" + index + "\", e);\n"
+                + "                } finally {\n"
+                + "                    count++;\n"
+                + "                }\n"
+                + "        }\n"
+                + "    }\n"
+                + "\n"
+                + "    public static class Inner" + index + " extends Class" + index + " {\n"
+                + "        public double[] values = {" + index + ".5, " + library + ".25};\n"
+                + "    }\n"
+                + "}\n";
+    }
+
+    private static String writeSource(File sourcesDirectory, String packageName, String className, String body) throws IOException {
+        File packageDirectory = new File(sourcesDirectory, packageName);
+        assertTrue(packageDirectory.isDirectory() || packageDirectory.mkdirs());
+        File source = new File(packageDirectory, className + ".java");
+        Files.write(source.toPath(), ("package " + packageName + ";\n\n" + body).getBytes(StandardCharsets.UTF_8));
+        return source.getAbsolutePath();
+    }
+}